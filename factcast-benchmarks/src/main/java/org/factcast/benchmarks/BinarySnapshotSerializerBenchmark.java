@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.factcast.factus.projection.SnapshotProjection;
+import org.factcast.factus.serializer.binary.BinarySnapshotSerializer;
+import org.openjdk.jmh.annotations.*;
+
+/** Serializing and restoring snapshots of a projection with some hundred entries. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BinarySnapshotSerializerBenchmark {
+
+  final BinarySnapshotSerializer serializer = new BinarySnapshotSerializer();
+
+  UserNames projection;
+
+  byte[] snapshot;
+
+  @Setup
+  public void setup() {
+    projection = new UserNames();
+    for (int i = 0; i < 500; i++) {
+      UUID id = UUID.randomUUID();
+      projection.names.put(id, "User " + i);
+      projection.recentlyChanged.add(id);
+    }
+    snapshot = serializer.serialize(projection);
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return serializer.serialize(projection);
+  }
+
+  @Benchmark
+  public UserNames deserialize() {
+    return serializer.deserialize(UserNames.class, snapshot);
+  }
+
+  public static class UserNames implements SnapshotProjection {
+    Map<UUID, String> names = new HashMap<>();
+
+    List<UUID> recentlyChanged = new ArrayList<>();
+  }
+}
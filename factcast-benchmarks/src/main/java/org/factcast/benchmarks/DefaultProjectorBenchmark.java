@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.factcast.core.Fact;
+import org.factcast.core.FactHeader;
+import org.factcast.core.util.FactCastJson;
+import org.factcast.factus.Handler;
+import org.factcast.factus.HandlerFor;
+import org.factcast.factus.event.DefaultEventSerializer;
+import org.factcast.factus.event.EventObject;
+import org.factcast.factus.event.Specification;
+import org.factcast.factus.projection.LocalManagedProjection;
+import org.factcast.factus.projector.DefaultProjector;
+import org.openjdk.jmh.annotations.*;
+
+/** Dispatching a fact to a projection's handler. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DefaultProjectorBenchmark {
+
+  DefaultProjector<UserNames> projector;
+
+  Fact userCreated;
+
+  Fact userDeleted;
+
+  @Setup
+  public void setup() {
+    projector =
+        new DefaultProjector<>(new DefaultEventSerializer(FactCastJson.mapper()), new UserNames());
+
+    UUID userId = UUID.randomUUID();
+    userCreated =
+        Fact.builder()
+            .ns("benchmark")
+            .type("UserCreated")
+            .version(1)
+            .aggId(userId)
+            .build("{\"userId\":\"" + userId + "\",\"name\":\"Peter Lustig\"}");
+    userDeleted =
+        Fact.builder().ns("benchmark").type("UserDeleted").version(1).aggId(userId).build("{}");
+  }
+
+  /** handler expecting a deserialized event */
+  @Benchmark
+  public void applyEvent() {
+    projector.apply(userCreated);
+  }
+
+  /** handler expecting the raw fact */
+  @Benchmark
+  public void applyFact() {
+    projector.apply(userDeleted);
+  }
+
+  @Specification(ns = "benchmark", type = "UserCreated", version = 1)
+  public static class UserCreated implements EventObject {
+    public UUID userId;
+
+    public String name;
+
+    @Override
+    public Set<UUID> aggregateIds() {
+      return Collections.singleton(userId);
+    }
+  }
+
+  public static class UserNames extends LocalManagedProjection {
+    final Map<UUID, String> names = new HashMap<>();
+
+    @Handler
+    void apply(UserCreated e) {
+      names.put(e.userId, e.name);
+    }
+
+    @HandlerFor(ns = "benchmark", type = "UserDeleted", version = 1)
+    void apply(Fact f, FactHeader h) {
+      names.remove(h.aggIds().iterator().next());
+    }
+  }
+}
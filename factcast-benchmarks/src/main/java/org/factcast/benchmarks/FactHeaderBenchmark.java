@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.factcast.core.Fact;
+import org.factcast.core.util.FactCastJson;
+import org.factcast.grpc.api.conv.ProtoConverter;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Fact;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Jackson work done for a single fact along the publish, subscribe and transformation paths.
+ *
+ * <p>Run with {@code java -jar factcast-benchmarks/target/benchmarks.jar FactHeaderBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FactHeaderBenchmark {
+
+  final ProtoConverter converter = new ProtoConverter();
+
+  String jsonHeader;
+
+  String jsonPayload;
+
+  MSG_Fact jsonProto;
+
+  MSG_Fact structuredProto;
+
+  @Setup
+  public void setup() {
+    Fact f =
+        Fact.builder()
+            .ns("benchmark")
+            .type("SomethingHappened")
+            .version(1)
+            .aggId(UUID.randomUUID())
+            .meta("_ser", "123456")
+            .meta("_ts", String.valueOf(System.currentTimeMillis()))
+            .meta("source", "FactHeaderBenchmark")
+            .build("{\"firstName\":\"Peter\",\"lastName\":\"Lustig\",\"age\":42}");
+    jsonHeader = f.jsonHeader();
+    jsonPayload = f.jsonPayload();
+    jsonProto = converter.toProto(f);
+    structuredProto = converter.toStructuredProto(f);
+  }
+
+  /** client builds a fact, server receives it and stores its header */
+  @Benchmark
+  public String publish() {
+    Fact f = Fact.builder().ns("benchmark").type("SomethingHappened").version(1).build(jsonPayload);
+    Fact received = converter.fromProto(converter.toProto(f));
+    return received.jsonHeader();
+  }
+
+  /** server sends a stored fact, client dispatches on ns/type/version and tracks the serial */
+  @Benchmark
+  public void subscribe(Blackhole bh) {
+    Fact received = converter.fromProto(converter.toProto(Fact.of(jsonHeader, jsonPayload)));
+    bh.consume(received.ns());
+    bh.consume(received.type());
+    bh.consume(received.version());
+    bh.consume(received.serial());
+  }
+
+  /** same as subscribe, but with the header transported structured */
+  @Benchmark
+  public void subscribeStructured(Blackhole bh) {
+    Fact received = converter.fromProto(structuredProto);
+    bh.consume(received.ns());
+    bh.consume(received.type());
+    bh.consume(received.version());
+    bh.consume(received.serial());
+  }
+
+  /** fact parsed from JSON, as done for every fact received in the JSON format */
+  @Benchmark
+  public Fact parse() {
+    return converter.fromProto(jsonProto);
+  }
+
+  /** header of a transformed fact, as built by the transformation service */
+  @Benchmark
+  public Fact transform() throws Exception {
+    JsonNode header = FactCastJson.readTree(jsonHeader);
+    ((ObjectNode) header).put("version", 2);
+    return Fact.of(header, FactCastJson.readTree(jsonPayload));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.spec.FactSpecMatcher;
+import org.openjdk.jmh.annotations.*;
+
+/** Matching a fact against a single FactSpec, as done for every fact in a subscription. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FactSpecMatcherBenchmark {
+
+  @Param({"ns", "type", "aggId", "meta", "script"})
+  String spec;
+
+  // distinct payloads, so that nothing can be cached per fact
+  final Fact[] facts = new Fact[1024];
+
+  int next;
+
+  Predicate<Fact> matcher;
+
+  @Setup
+  public void setup() {
+    UUID aggId = UUID.randomUUID();
+    for (int i = 0; i < facts.length; i++) {
+      facts[i] =
+          Fact.builder()
+              .ns("benchmark")
+              .type("SomethingHappened")
+              .version(1)
+              .aggId(aggId)
+              .meta("source", "FactSpecMatcherBenchmark")
+              .build("{\"firstName\":\"Peter\",\"lastName\":\"Lustig\",\"age\":" + i + "}");
+    }
+
+    FactSpec s = FactSpec.ns("benchmark");
+    switch (spec) {
+      case "type":
+        s.type("SomethingHappened").version(1);
+        break;
+      case "aggId":
+        s.type("SomethingHappened").aggId(aggId);
+        break;
+      case "meta":
+        s.type("SomethingHappened").meta("source", "FactSpecMatcherBenchmark");
+        break;
+      case "script":
+        s.type("SomethingHappened").jsFilterScript("function (h,e){ return e.age > 18 }");
+        break;
+      default:
+    }
+    matcher = FactSpecMatcher.matches(s);
+  }
+
+  @Benchmark
+  public boolean test() {
+    return matcher.test(facts[next++ & (facts.length - 1)]);
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.benchmarks;
+
+import com.github.fge.jsonschema.main.JsonSchema;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.registry.SchemaRegistry;
+import org.factcast.store.pgsql.registry.http.ValidationConstants;
+import org.factcast.store.pgsql.registry.metrics.RegistryMetricsImpl;
+import org.factcast.store.pgsql.registry.transformation.Transformation;
+import org.factcast.store.pgsql.registry.transformation.TransformationKey;
+import org.factcast.store.pgsql.registry.transformation.TransformationStoreListener;
+import org.factcast.store.pgsql.registry.validation.FactValidationError;
+import org.factcast.store.pgsql.registry.validation.FactValidator;
+import org.factcast.store.pgsql.registry.validation.schema.SchemaKey;
+import org.openjdk.jmh.annotations.*;
+
+/** Validating a published fact against its schema. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FactValidatorBenchmark {
+
+  FactValidator validator;
+
+  Fact valid;
+
+  Fact invalid;
+
+  @Setup
+  public void setup() throws Exception {
+    JsonSchema schema =
+        ValidationConstants.JSON_SCHEMA_FACTORY.getJsonSchema(
+            ValidationConstants.JACKSON.readTree(
+                "{\"type\":\"object\",\"additionalProperties\":false,"
+                    + "\"properties\":{"
+                    + "\"firstName\":{\"type\":\"string\"},"
+                    + "\"lastName\":{\"type\":\"string\"},"
+                    + "\"age\":{\"type\":\"integer\",\"minimum\":0}},"
+                    + "\"required\":[\"firstName\",\"lastName\"]}"));
+
+    PgConfigurationProperties props = new PgConfigurationProperties();
+    props.setSchemaRegistryUrl("classpath:benchmark");
+    validator =
+        new FactValidator(
+            props,
+            new FixedSchemaRegistry(schema),
+            new RegistryMetricsImpl(new SimpleMeterRegistry()));
+
+    valid =
+        Fact.builder()
+            .ns("benchmark")
+            .type("SomethingHappened")
+            .version(1)
+            .build("{\"firstName\":\"Peter\",\"lastName\":\"Lustig\",\"age\":42}");
+    invalid =
+        Fact.builder()
+            .ns("benchmark")
+            .type("SomethingHappened")
+            .version(1)
+            .build("{\"firstName\":\"Peter\",\"age\":-1}");
+  }
+
+  @Benchmark
+  public List<FactValidationError> validate() {
+    return validator.validate(valid);
+  }
+
+  @Benchmark
+  public List<FactValidationError> validateFailing() {
+    return validator.validate(invalid);
+  }
+
+  static class FixedSchemaRegistry implements SchemaRegistry {
+    final Optional<JsonSchema> schema;
+
+    FixedSchemaRegistry(JsonSchema schema) {
+      this.schema = Optional.of(schema);
+    }
+
+    @Override
+    public Optional<JsonSchema> get(SchemaKey key) {
+      return schema;
+    }
+
+    @Override
+    public List<Transformation> get(TransformationKey key) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public void fetchInitial() {}
+
+    @Override
+    public void refresh() {}
+
+    @Override
+    public void register(TransformationStoreListener listener) {}
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.benchmarks;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.Codec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.factcast.client.grpc.codec.Lz4GrpcClientCodec;
+import org.factcast.client.grpc.codec.SnappyGrpcClientCodec;
+import org.factcast.core.Fact;
+import org.factcast.grpc.api.conv.ProtoConverter;
+import org.openjdk.jmh.annotations.*;
+
+/** Compression of serialized notifications with the codecs offered by the client. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GrpcClientCodecBenchmark {
+
+  @Param({"lz4", "snappy"})
+  String codecName;
+
+  @Param({"1", "50"})
+  int factsPerMessage;
+
+  Codec codec;
+
+  byte[] message;
+
+  byte[] compressed;
+
+  @Setup
+  public void setup() throws Exception {
+    codec = "lz4".equals(codecName) ? new Lz4GrpcClientCodec() : new SnappyGrpcClientCodec();
+
+    List<Fact> facts = new ArrayList<>(factsPerMessage);
+    for (int i = 0; i < factsPerMessage; i++) {
+      facts.add(
+          Fact.builder()
+              .ns("benchmark")
+              .type("SomethingHappened")
+              .version(1)
+              .aggId(UUID.randomUUID())
+              .meta("_ser", String.valueOf(i))
+              .build(
+                  "{\"firstName\":\"Peter\",\"lastName\":\"Lustig\",\"age\":"
+                      + i
+                      + ",\"address\":{\"street\":\"Am Wald\",\"zip\":\"12345\"}}"));
+    }
+    message = new ProtoConverter().createNotificationFor(facts).toByteArray();
+    compressed = compress();
+  }
+
+  @Benchmark
+  public byte[] compress() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(message.length);
+    try (OutputStream os = codec.compress(baos)) {
+      os.write(message);
+    }
+    return baos.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] decompress() throws Exception {
+    try (InputStream is = codec.decompress(new ByteArrayInputStream(compressed))) {
+      return ByteStreams.toByteArray(is);
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.concurrent.TimeUnit;
+import org.factcast.core.util.FactCastJson;
+import org.factcast.store.pgsql.registry.transformation.SingleTransformation;
+import org.factcast.store.pgsql.registry.transformation.Transformation;
+import org.factcast.store.pgsql.registry.transformation.TransformationKey;
+import org.factcast.store.pgsql.registry.transformation.chains.NashornTransformer;
+import org.openjdk.jmh.annotations.*;
+
+/** Applying a (warm) transformation script to a payload. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NashornTransformerBenchmark {
+
+  final NashornTransformer transformer = new NashornTransformer();
+
+  Transformation transformation;
+
+  JsonNode payload;
+
+  @Setup
+  public void setup() throws Exception {
+    transformation =
+        SingleTransformation.of(
+            TransformationKey.of("benchmark", "SomethingHappened"),
+            1,
+            2,
+            "function transform(e) { e.displayName = e.firstName + ' ' + e.lastName; delete e.age }");
+    payload = FactCastJson.readTree("{\"firstName\":\"Peter\",\"lastName\":\"Lustig\",\"age\":42}");
+  }
+
+  @Benchmark
+  public JsonNode transform() throws Exception {
+    return transformer.transform(transformation, payload);
+  }
+}
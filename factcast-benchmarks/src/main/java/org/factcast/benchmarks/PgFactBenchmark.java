@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.factcast.store.pgsql.internal.PgFact;
+import org.openjdk.jmh.annotations.*;
+
+/** Creating facts from a catchup/follow ResultSet row. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PgFactBenchmark {
+
+  ResultSet row;
+
+  @Setup
+  public void setup() {
+    UUID id = UUID.randomUUID();
+    UUID aggId = UUID.randomUUID();
+    Fact f =
+        Fact.builder()
+            .id(id)
+            .ns("benchmark")
+            .type("SomethingHappened")
+            .version(1)
+            .aggId(aggId)
+            .meta("_ser", "123456")
+            .meta("_ts", "1600000000000")
+            .build("{\"firstName\":\"Peter\",\"lastName\":\"Lustig\",\"age\":42}");
+
+    Array aggIds =
+        (Array)
+            Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class[] {Array.class},
+                (p, m, a) -> new UUID[] {aggId});
+
+    Map<String, Object> columns = new HashMap<>();
+    columns.put(PgConstants.ALIAS_ID, id.toString());
+    columns.put(PgConstants.ALIAS_AGGID, aggIds);
+    columns.put(PgConstants.ALIAS_TYPE, f.type());
+    columns.put(PgConstants.ALIAS_NS, f.ns());
+    columns.put(PgConstants.COLUMN_HEADER, f.jsonHeader());
+    columns.put(PgConstants.COLUMN_PAYLOAD, f.jsonPayload());
+    columns.put(PgConstants.COLUMN_VERSION, f.version());
+
+    // a plain lookup, so that the driver's decoding does not dominate the result
+    row =
+        (ResultSet)
+            Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class[] {ResultSet.class},
+                (p, m, a) -> columns.get(a[0]));
+  }
+
+  @Benchmark
+  public Fact from() throws Exception {
+    return PgFact.from(row);
+  }
+
+  /** includes parsing the header, which is deferred until meta data is accessed */
+  @Benchmark
+  public long fromAndSerial() throws Exception {
+    return PgFact.from(row).serial();
+  }
+}
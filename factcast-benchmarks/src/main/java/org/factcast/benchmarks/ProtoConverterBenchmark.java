@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.factcast.core.Fact;
+import org.factcast.grpc.api.conv.ProtoConverter;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Fact;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Notification;
+import org.openjdk.jmh.annotations.*;
+
+/** Conversion of facts to and from their wire representation. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProtoConverterBenchmark {
+
+  final ProtoConverter converter = new ProtoConverter();
+
+  Fact fact;
+
+  MSG_Fact proto;
+
+  MSG_Fact structuredProto;
+
+  @Setup
+  public void setup() {
+    fact =
+        Fact.of(
+            Fact.builder()
+                .ns("benchmark")
+                .type("SomethingHappened")
+                .version(1)
+                .aggId(UUID.randomUUID())
+                .meta("_ser", "123456")
+                .meta("_ts", "1600000000000")
+                .build("{\"firstName\":\"Peter\",\"lastName\":\"Lustig\",\"age\":42}")
+                .jsonHeader(),
+            "{\"firstName\":\"Peter\",\"lastName\":\"Lustig\",\"age\":42}");
+    proto = converter.toProto(fact);
+    structuredProto = converter.toStructuredProto(fact);
+  }
+
+  @Benchmark
+  public MSG_Fact toProto() {
+    return converter.toProto(fact);
+  }
+
+  @Benchmark
+  public Fact fromProto() {
+    return converter.fromProto(proto);
+  }
+
+  @Benchmark
+  public MSG_Fact toStructuredProto() {
+    return converter.toStructuredProto(fact);
+  }
+
+  @Benchmark
+  public Fact fromStructuredProto() {
+    return converter.fromProto(structuredProto);
+  }
+
+  @Benchmark
+  public MSG_Notification createNotification() {
+    return converter.createNotificationFor(fact);
+  }
+}
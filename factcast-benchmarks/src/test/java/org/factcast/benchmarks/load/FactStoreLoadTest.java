@@ -0,0 +1,277 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.benchmarks.load;
+
+import static org.assertj.core.api.Assertions.*;
+
+import io.grpc.Channel;
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.client.grpc.FactCastGrpcChannelFactory;
+import org.factcast.client.grpc.FactCastGrpcClientProperties;
+import org.factcast.client.grpc.GrpcFactStore;
+import org.factcast.core.Fact;
+import org.factcast.core.FactCast;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.subscription.Subscription;
+import org.factcast.core.subscription.SubscriptionRequest;
+import org.factcast.core.subscription.observer.FactObserver;
+import org.factcast.test.FactCastExtension;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Macro benchmark of the whole stack: publishers and subscribers talk via grpc to a
+ * FactStoreGrpcService backed by the pgsql store, all running in this JVM.
+ *
+ * <p>Reports publish latency, notification latency of followers (based on the _ts the store
+ * assigned) and catchup throughput. Run with
+ *
+ * <pre>
+ * mvn -Pbenchmarks -pl factcast-benchmarks test -DskipLoadTest=false \
+ *   -Dloadtest.publishers=4 -Dloadtest.subscribers=4 -Dloadtest.facts=2500
+ * </pre>
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@ExtendWith(FactCastExtension.class)
+@Slf4j
+public class FactStoreLoadTest {
+
+  static final int PUBLISHERS = Integer.getInteger("loadtest.publishers", 4);
+
+  static final int SUBSCRIBERS = Integer.getInteger("loadtest.subscribers", 4);
+
+  static final int FACTS_PER_PUBLISHER = Integer.getInteger("loadtest.facts", 2500);
+
+  static final int TOTAL_FACTS = PUBLISHERS * FACTS_PER_PUBLISHER;
+
+  static final String NS = "loadtest";
+
+  static final PostgreSQLContainer<?> _postgres = new PostgreSQLContainer<>("postgres:11.5");
+
+  static ConfigurableApplicationContext server;
+
+  static ManagedChannel channel;
+
+  static FactCast fc;
+
+  @BeforeAll
+  static void startServer() throws Exception {
+    _postgres.start();
+
+    int port;
+    try (ServerSocket s = new ServerSocket(0)) {
+      port = s.getLocalPort();
+    }
+
+    server =
+        new SpringApplicationBuilder(LoadTestServer.class)
+            .properties(
+                "spring.datasource.url=" + _postgres.getJdbcUrl(),
+                "spring.datasource.username=" + _postgres.getUsername(),
+                "spring.datasource.password=" + _postgres.getPassword(),
+                "grpc.server.port=" + port,
+                "factcast.security.enabled=false",
+                "factcast.grpc.bandwidth.disabled=true")
+            .run();
+
+    channel = ManagedChannelBuilder.forAddress("localhost", port).usePlaintext().build();
+    GrpcFactStore store =
+        new GrpcFactStore(
+            new FixedChannelFactory(channel), Optional.empty(), new FactCastGrpcClientProperties());
+    store.initialize();
+    fc = FactCast.from(store);
+  }
+
+  @AfterAll
+  static void stopServer() {
+    if (channel != null) {
+      channel.shutdownNow();
+    }
+    if (server != null) {
+      server.close();
+    }
+    _postgres.stop();
+  }
+
+  @Test
+  void publishAndSubscribe() throws Exception {
+    // followers
+    List<LatencyRecorder> followers = new ArrayList<>();
+    List<Subscription> subscriptions = new ArrayList<>();
+    for (int i = 0; i < SUBSCRIBERS; i++) {
+      LatencyRecorder r = new LatencyRecorder(TOTAL_FACTS);
+      followers.add(r);
+      subscriptions.add(
+          fc.subscribe(SubscriptionRequest.follow(FactSpec.ns(NS)).fromNowOn(), r).awaitCatchup());
+    }
+
+    // publishers
+    ExecutorService es = Executors.newFixedThreadPool(Math.max(PUBLISHERS, SUBSCRIBERS));
+    List<Future<long[]>> publishLatencies = new ArrayList<>();
+    long start = System.nanoTime();
+    for (int p = 0; p < PUBLISHERS; p++) {
+      publishLatencies.add(es.submit(() -> publish(FACTS_PER_PUBLISHER)));
+    }
+    long[] publish = new long[0];
+    for (Future<long[]> f : publishLatencies) {
+      publish = concat(publish, f.get());
+    }
+    double publishSeconds = (System.nanoTime() - start) / 1e9;
+
+    long[] notify = new long[0];
+    for (LatencyRecorder r : followers) {
+      assertThat(r.received.await(1, TimeUnit.MINUTES)).isTrue();
+      notify = concat(notify, r.latencies);
+    }
+    for (Subscription s : subscriptions) {
+      s.close();
+    }
+
+    // catchup, concurrently from scratch
+    List<Future<Double>> catchups = new ArrayList<>();
+    for (int i = 0; i < SUBSCRIBERS; i++) {
+      catchups.add(es.submit(this::catchup));
+    }
+    double catchupFactsPerSecond = 0;
+    for (Future<Double> f : catchups) {
+      catchupFactsPerSecond += f.get();
+    }
+    es.shutdown();
+
+    log.info(
+        "\n{} publishers x {} facts, {} subscribers\n"
+            + "publish:  {} facts/sec, latency p50={}ms p99={}ms\n"
+            + "notify:   latency p50={}ms p99={}ms\n"
+            + "catchup:  {} facts/sec (all subscribers), {} facts/sec (per subscriber)",
+        PUBLISHERS,
+        FACTS_PER_PUBLISHER,
+        SUBSCRIBERS,
+        Math.round(TOTAL_FACTS / publishSeconds),
+        percentile(publish, 50) / 1e6,
+        percentile(publish, 99) / 1e6,
+        percentile(notify, 50),
+        percentile(notify, 99),
+        Math.round(catchupFactsPerSecond),
+        Math.round(catchupFactsPerSecond / SUBSCRIBERS));
+  }
+
+  /** @return latency of each publish in nanos */
+  private long[] publish(int count) {
+    long[] latencies = new long[count];
+    for (int i = 0; i < count; i++) {
+      Fact f =
+          Fact.builder()
+              .ns(NS)
+              .type("SomethingHappened")
+              .version(1)
+              .build("{\"firstName\":\"Peter\",\"lastName\":\"Lustig\",\"age\":" + i + "}");
+      long start = System.nanoTime();
+      fc.publish(f);
+      latencies[i] = System.nanoTime() - start;
+    }
+    return latencies;
+  }
+
+  /** @return facts per second */
+  @SneakyThrows
+  private double catchup() {
+    CountingObserver counter = new CountingObserver();
+    long start = System.nanoTime();
+    fc.subscribe(SubscriptionRequest.catchup(FactSpec.ns(NS)).fromScratch(), counter)
+        .awaitComplete();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    assertThat(counter.count).isEqualTo(TOTAL_FACTS);
+    return TOTAL_FACTS / seconds;
+  }
+
+  static long percentile(long[] values, int p) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    return sorted[Math.max(0, (int) Math.ceil(p / 100.0 * sorted.length) - 1)];
+  }
+
+  static long[] concat(long[] a, long[] b) {
+    long[] ret = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, ret, a.length, b.length);
+    return ret;
+  }
+
+  /** collects the notification latency (in millis) of every fact. */
+  static class LatencyRecorder implements FactObserver {
+    final long[] latencies;
+
+    final CountDownLatch received;
+
+    int count;
+
+    LatencyRecorder(int expected) {
+      latencies = new long[expected];
+      received = new CountDownLatch(1);
+    }
+
+    @Override
+    public void onNext(@NonNull Fact f) {
+      // only called from one thread per subscription
+      latencies[count++] = System.currentTimeMillis() - f.timestamp();
+      if (count == latencies.length) {
+        received.countDown();
+      }
+    }
+  }
+
+  static class CountingObserver implements FactObserver {
+    int count;
+
+    @Override
+    public void onNext(@NonNull Fact f) {
+      count++;
+    }
+  }
+
+  @RequiredArgsConstructor
+  static class FixedChannelFactory implements FactCastGrpcChannelFactory {
+    final Channel channel;
+
+    @Override
+    public Channel createChannel(String name) {
+      return channel;
+    }
+
+    @Override
+    public Channel createChannel(String name, List<ClientInterceptor> interceptors) {
+      return channel;
+    }
+
+    @Override
+    public void close() {}
+  }
+}
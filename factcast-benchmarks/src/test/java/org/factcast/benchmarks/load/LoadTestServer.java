@@ -0,0 +1,29 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.benchmarks.load;
+
+import org.factcast.spring.boot.autoconfigure.client.grpc.GrpcFactStoreAutoConfiguration;
+import org.factcast.spring.boot.autoconfigure.core.RedissonSnapshotCacheAutoConfiguration;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * pgsql store and grpc frontend, running in the same JVM as the load test.
+ *
+ * <p>The client side is created by the test itself, so that it talks to the server via grpc.
+ */
+@SpringBootApplication(
+    exclude = {GrpcFactStoreAutoConfiguration.class, RedissonSnapshotCacheAutoConfiguration.class})
+public class LoadTestServer {}
@@ -16,16 +16,14 @@
 package org.factcast.client.grpc;
 
 import io.grpc.stub.StreamObserver;
-import java.util.List;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.factcast.core.Fact;
 import org.factcast.core.subscription.Subscription;
 import org.factcast.core.subscription.SubscriptionImpl;
 import org.factcast.core.subscription.TransformationException;
-import org.factcast.grpc.api.conv.ProtoConverter;
 import org.factcast.grpc.api.gen.FactStoreProto;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Fact;
 import org.factcast.grpc.api.gen.FactStoreProto.MSG_Notification;
 
 /**
@@ -40,8 +38,6 @@
 @Slf4j
 class ClientStreamObserver implements StreamObserver<FactStoreProto.MSG_Notification> {
 
-  final ProtoConverter converter = new ProtoConverter();
-
   @NonNull final SubscriptionImpl subscription;
 
   @Override
@@ -58,7 +54,7 @@ public void onNext(MSG_Notification f) {
         break;
       case Fact:
         try {
-          subscription.notifyElement(converter.fromProto(f.getFact()));
+          subscription.notifyElement(ProtoFact.of(f.getFact()));
         } catch (TransformationException e) {
           // cannot happen on client side...
           onError(e);
@@ -66,10 +62,8 @@ public void onNext(MSG_Notification f) {
         break;
       case Facts:
         try {
-          List<? extends Fact> facts = converter.fromProto(f.getFacts());
-
-          for (Fact fact : facts) {
-            subscription.notifyElement(fact);
+          for (MSG_Fact fact : f.getFacts().getFactList()) {
+            subscription.notifyElement(ProtoFact.of(fact));
           }
 
         } catch (TransformationException e) {
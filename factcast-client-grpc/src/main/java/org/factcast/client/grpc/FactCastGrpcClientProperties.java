@@ -27,4 +27,17 @@
 public class FactCastGrpcClientProperties {
 
   private int catchupBatchsize = 50;
+
+  /**
+   * target for the serialized size of a batch. Limited by what the server offers and only used if
+   * catchupBatchsize is greater than 1. 0 means, the server decides.
+   */
+  private long catchupBatchsizeInBytes = 1024 * 1024;
+
+  /**
+   * receive id, ns, type, version and aggIds of facts in a structured header besides the JSON
+   * header, if the server supports it. Saves parsing the JSON header, unless meta-data is accessed,
+   * at the cost of sending these attributes twice.
+   */
+  private boolean structuredFacts = false;
 }
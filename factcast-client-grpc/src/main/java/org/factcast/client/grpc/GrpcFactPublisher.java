@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.client.grpc;
+
+import static io.grpc.stub.ClientCalls.*;
+
+import io.grpc.ClientCall;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Fact;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Notification;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_SubscriptionRequest;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+
+/**
+ * Publishes the facts of a remote subscription to a Reactive Streams {@link Subscriber}, using
+ * gRPC's manual flow control.
+ *
+ * <p>The next notification is only requested from the server, when the subscriber has demand and
+ * all facts of the last one have been passed on. So a slow subscriber lets the server wait, rather
+ * than filling up memory on the client. At most one notification (which may be a batch of facts) is
+ * buffered.
+ */
+@RequiredArgsConstructor
+class GrpcFactPublisher implements Publisher<Fact> {
+
+  @NonNull final Supplier<ClientCall<MSG_SubscriptionRequest, MSG_Notification>> calls;
+
+  @NonNull final MSG_SubscriptionRequest request;
+
+  @Override
+  public void subscribe(@NonNull Subscriber<? super Fact> subscriber) {
+    ClientCall<MSG_SubscriptionRequest, MSG_Notification> call = calls.get();
+    FlowControlledSubscription s = new FlowControlledSubscription(subscriber);
+    subscriber.onSubscribe(s);
+    try {
+      asyncServerStreamingCall(call, request, s);
+      s.started();
+    } catch (StatusRuntimeException e) {
+      s.onError(GrpcFactStore.wrapRetryable(e));
+    }
+  }
+
+  @Slf4j
+  @RequiredArgsConstructor
+  static class FlowControlledSubscription
+      implements org.reactivestreams.Subscription,
+          ClientResponseObserver<MSG_SubscriptionRequest, MSG_Notification> {
+
+    @NonNull final Subscriber<? super Fact> subscriber;
+
+    private final AtomicLong demand = new AtomicLong();
+
+    private final Queue<Fact> buffer = new ConcurrentLinkedQueue<>();
+
+    /** serializes the draining of the buffer, which can be triggered from both sides */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile ClientCallStreamObserver<MSG_SubscriptionRequest> requestStream;
+
+    /** messages must not be requested before the call has been started */
+    private volatile boolean started;
+
+    /** true while a notification has been requested from the server, but not yet received */
+    private volatile boolean outstanding;
+
+    private volatile boolean cancelled;
+
+    private volatile boolean done;
+
+    private volatile Throwable error;
+
+    private boolean terminated;
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<MSG_SubscriptionRequest> requestStream) {
+      requestStream.disableAutoRequestWithInitial(0);
+      this.requestStream = requestStream;
+    }
+
+    void started() {
+      started = true;
+      drain();
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        cancelCall();
+        buffer.clear();
+        error = new IllegalArgumentException("non-positive request of " + n + " (see §3.9)");
+        done = true;
+      } else {
+        demand.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      cancelCall();
+      drain();
+    }
+
+    private void cancelCall() {
+      ClientCallStreamObserver<MSG_SubscriptionRequest> rs = requestStream;
+      if (rs != null) {
+        rs.cancel("Client is no longer interested", null);
+      }
+    }
+
+    @Override
+    public void onNext(MSG_Notification n) {
+      outstanding = false;
+      switch (n.getType()) {
+        case Fact:
+          buffer.add(ProtoFact.of(n.getFact()));
+          break;
+        case Facts:
+          for (MSG_Fact f : n.getFacts().getFactList()) {
+            buffer.add(ProtoFact.of(f));
+          }
+          break;
+        case Catchup:
+          log.debug("received onCatchup signal");
+          break;
+        case Complete:
+          log.debug("received onComplete signal");
+          done = true;
+          break;
+        default:
+          error = new RuntimeException("Unrecognized notification type. THIS IS A BUG!");
+          done = true;
+          break;
+      }
+      drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      error = t;
+      done = true;
+      drain();
+    }
+
+    @Override
+    public void onCompleted() {
+      done = true;
+      drain();
+    }
+
+    private void drain() {
+      if (wip.getAndIncrement() != 0) {
+        return;
+      }
+      int missed = 1;
+      do {
+        while (!cancelled && demand.get() > 0 && !buffer.isEmpty()) {
+          Fact f = buffer.poll();
+          if (demand.get() != Long.MAX_VALUE) {
+            demand.decrementAndGet();
+          }
+          subscriber.onNext(f);
+        }
+        if (cancelled) {
+          buffer.clear();
+        } else if (buffer.isEmpty()) {
+          if (done) {
+            terminate();
+          } else if (demand.get() > 0 && !outstanding && started) {
+            outstanding = true;
+            requestStream.request(1);
+          }
+        }
+        missed = wip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private void terminate() {
+      if (!terminated) {
+        terminated = true;
+        Throwable e = error;
+        if (e != null) {
+          subscriber.onError(e);
+        } else {
+          subscriber.onComplete();
+        }
+      }
+    }
+  }
+}
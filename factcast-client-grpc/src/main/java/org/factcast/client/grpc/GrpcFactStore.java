@@ -54,6 +54,7 @@
 import org.factcast.grpc.api.gen.RemoteFactStoreGrpc;
 import org.factcast.grpc.api.gen.RemoteFactStoreGrpc.RemoteFactStoreBlockingStub;
 import org.factcast.grpc.api.gen.RemoteFactStoreGrpc.RemoteFactStoreStub;
+import org.reactivestreams.Publisher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
@@ -72,6 +73,8 @@ public class GrpcFactStore implements FactStore {
 
   private static final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.of(1, 1, 0);
 
+  private static final ProtocolVersion STRUCTURED_FACTS_VERSION = ProtocolVersion.of(1, 4, 0);
+
   private RemoteFactStoreBlockingStub blockingStub;
 
   private RemoteFactStoreStub stub;
@@ -79,6 +82,10 @@ public class GrpcFactStore implements FactStore {
   private RemoteFactStoreStub rawStub;
   private int catchupBatchSize;
 
+  private long catchupBatchSizeInBytes;
+
+  private boolean structuredFacts;
+
   private RemoteFactStoreBlockingStub rawBlockingStub;
 
   private final ProtoConverter converter = new ProtoConverter();
@@ -117,7 +124,8 @@ public GrpcFactStore(
         new FactCastGrpcClientProperties());
   }
 
-  private GrpcFactStore(
+  @VisibleForTesting
+  GrpcFactStore(
       @NonNull RemoteFactStoreBlockingStub newBlockingStub,
       @NonNull RemoteFactStoreStub newStub,
       @NonNull Optional<String> credentials,
@@ -125,6 +133,8 @@ private GrpcFactStore(
     rawBlockingStub = newBlockingStub;
     rawStub = newStub;
     catchupBatchSize = properties.getCatchupBatchsize();
+    catchupBatchSizeInBytes = properties.getCatchupBatchsizeInBytes();
+    structuredFacts = properties.isStructuredFacts();
 
     // initially use the raw ones...
     blockingStub = rawBlockingStub;
@@ -177,6 +187,27 @@ public Subscription subscribe(
     return subscription.onClose(() -> cancel(call));
   }
 
+  /**
+   * Uses gRPC's manual flow control, so that notifications are only received as fast as the
+   * subscribers request facts. The server is told so, so that it waits for slow subscribers instead
+   * of failing after a while.
+   */
+  @Override
+  @NonNull
+  public Publisher<Fact> publisher(@NonNull SubscriptionRequestTO req) {
+    Metadata meta = new Metadata();
+    meta.put(Headers.CLIENT_FLOW_CONTROL, "true");
+    RemoteFactStoreStub flowControlledStub = MetadataUtils.attachHeaders(stub, meta);
+    return new GrpcFactPublisher(
+        () ->
+            flowControlledStub
+                .getChannel()
+                .newCall(
+                    RemoteFactStoreGrpc.getSubscribeMethod(),
+                    flowControlledStub.getCallOptions().withWaitForReady()),
+        converter.toProto(req));
+  }
+
   @VisibleForTesting
   void cancel(ClientCall<MSG_SubscriptionRequest, MSG_Notification> call) {
     // cancel does not need to be retried.
@@ -210,6 +241,11 @@ public synchronized void initialize() {
       }
       logProtocolVersion(serverProtocolVersion);
       logServerVersion(serverProperties);
+      structuredFacts = negotiateStructuredFacts(structuredFacts, serverProtocolVersion);
+      catchupBatchSizeInBytes =
+          negotiateBatchSizeInBytes(
+              catchupBatchSizeInBytes,
+              serverProperties.get(Capabilities.MAX_BATCH_BYTES.toString()));
       configureCompressionAndMetaData(serverProperties.get(Capabilities.CODECS.toString()));
     }
   }
@@ -238,25 +274,62 @@ private static void logProtocolVersion(ProtocolVersion serverProtocolVersion) {
     }
   }
 
+  @VisibleForTesting
+  static boolean negotiateStructuredFacts(boolean requested, ProtocolVersion serverVersion) {
+    if (requested && !STRUCTURED_FACTS_VERSION.isCompatibleTo(serverVersion)) {
+      log.info("Server does not support structured facts, falling back to JSON");
+      return false;
+    }
+    return requested;
+  }
+
+  @VisibleForTesting
+  static long negotiateBatchSizeInBytes(long requested, String maxBatchBytesFromServer) {
+    if (maxBatchBytesFromServer == null) {
+      // server does not know about batches limited by size
+      return 0;
+    }
+    long max = Long.parseLong(maxBatchBytesFromServer);
+    long negotiated = requested <= 0 ? max : Math.min(requested, max);
+    log.debug("using batches of up to {} bytes", negotiated);
+    return negotiated;
+  }
+
   @VisibleForTesting
   void configureCompressionAndMetaData(String codecListFromServer) {
-    codecs
-        .selectFrom(codecListFromServer)
-        .ifPresent(
-            c -> {
-              log.info("configuring Codec for sending {}", c);
-              // configure compression used for sending messages and header
-              // to request compressed messages from server
-              Metadata meta = new Metadata();
-              meta.put(Headers.MESSAGE_COMPRESSION, c);
-              if (catchupBatchSize > 1) {
-                meta.put(Headers.CATCHUP_BATCHSIZE, String.valueOf(catchupBatchSize));
-              }
-              rawBlockingStub = blockingStub;
-              rawStub = stub;
-              blockingStub = MetadataUtils.attachHeaders(blockingStub.withCompression(c), meta);
-              stub = MetadataUtils.attachHeaders(stub.withCompression(c), meta);
-            });
+    // headers to request batches, structured facts and compressed messages from the server
+    Metadata meta = new Metadata();
+    if (catchupBatchSize > 1) {
+      meta.put(Headers.CATCHUP_BATCHSIZE, String.valueOf(catchupBatchSize));
+      if (catchupBatchSizeInBytes > 0) {
+        meta.put(Headers.CATCHUP_BATCH_BYTES, String.valueOf(catchupBatchSizeInBytes));
+      }
+    }
+    if (structuredFacts) {
+      meta.put(Headers.STRUCTURED_FACTS, "true");
+    }
+
+    rawBlockingStub = blockingStub;
+    rawStub = stub;
+    RemoteFactStoreBlockingStub newBlockingStub = blockingStub;
+    RemoteFactStoreStub newStub = stub;
+
+    Optional<String> codec = codecs.selectFrom(codecListFromServer);
+    if (codec.isPresent()) {
+      String c = codec.get();
+      log.info("configuring Codec for sending {}", c);
+      // configure compression used for sending messages
+      meta.put(Headers.MESSAGE_COMPRESSION, c);
+      newBlockingStub = newBlockingStub.withCompression(c);
+      newStub = newStub.withCompression(c);
+    }
+
+    if (!meta.keys().isEmpty()) {
+      newBlockingStub = MetadataUtils.attachHeaders(newBlockingStub, meta);
+      newStub = MetadataUtils.attachHeaders(newStub, meta);
+    }
+    blockingStub = newBlockingStub;
+    stub = newStub;
   }
 
   @Override
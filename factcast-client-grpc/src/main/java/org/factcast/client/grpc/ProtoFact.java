@@ -0,0 +1,240 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.client.grpc;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.factcast.core.Fact;
+import org.factcast.core.FactHeader;
+import org.factcast.core.util.FactCastJson;
+import org.factcast.grpc.api.conv.ProtoConverter;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Fact;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_FactHeader;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_UUID;
+
+/**
+ * Fact as received from the server, that keeps the protobuf message and only decodes what is
+ * actually accessed.
+ *
+ * <p>Id, ns, type, version and aggIds are taken from the structured header, if the server sent one,
+ * or otherwise picked from the JSON header with a streaming parser, that skips everything else. The
+ * complete header (needed for meta-data) and the payload are only decoded when asked for. As most
+ * consumers dispatch on ns/type/version only, this saves a lot of allocations on replays.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class ProtoFact implements Fact {
+
+  private static final JsonFactory JSON = new JsonFactory();
+
+  private static final ProtoConverter CONVERTER = new ProtoConverter();
+
+  @NonNull private final MSG_Fact msg;
+
+  private volatile HeaderFields fields;
+
+  private volatile FactHeader header;
+
+  private volatile String jsonHeader;
+
+  private volatile String jsonPayload;
+
+  static Fact of(@NonNull MSG_Fact msg) {
+    return new ProtoFact(msg);
+  }
+
+  @Override
+  public UUID id() {
+    return fields().id;
+  }
+
+  @Override
+  public String ns() {
+    return fields().ns;
+  }
+
+  @Override
+  public String type() {
+    return fields().type;
+  }
+
+  @Override
+  public int version() {
+    return fields().version;
+  }
+
+  @Override
+  public Set<UUID> aggIds() {
+    return fields().aggIds;
+  }
+
+  @Override
+  public String meta(String key) {
+    return header().meta().get(key);
+  }
+
+  @Override
+  public @NonNull FactHeader header() {
+    FactHeader h = header;
+    if (h == null) {
+      h = FactCastJson.readValue(FactHeader.class, msg.getHeader());
+      header = h;
+    }
+    return h;
+  }
+
+  @Override
+  public String jsonHeader() {
+    String s = jsonHeader;
+    if (s == null) {
+      s = msg.getHeader();
+      jsonHeader = s;
+    }
+    return s;
+  }
+
+  @Override
+  public String jsonPayload() {
+    String s = jsonPayload;
+    if (s == null) {
+      if (msg.hasStructuredHeader()) {
+        s = msg.getBinaryPayload().toStringUtf8();
+      } else {
+        s = msg.getPayload();
+      }
+      jsonPayload = s;
+    }
+    return s;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return this == o || (o instanceof ProtoFact && id().equals(((ProtoFact) o).id()));
+  }
+
+  @Override
+  public int hashCode() {
+    return id().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "ProtoFact [id=" + id() + "]";
+  }
+
+  private HeaderFields fields() {
+    HeaderFields f = fields;
+    if (f == null) {
+      if (msg.hasStructuredHeader()) {
+        f = HeaderFields.of(msg.getStructuredHeader());
+      } else {
+        f = HeaderFields.parse(msg.getHeaderBytes().newInput());
+      }
+      fields = f;
+    }
+    return f;
+  }
+
+  @RequiredArgsConstructor
+  static final class HeaderFields {
+    final UUID id;
+
+    final String ns;
+
+    final String type;
+
+    final int version;
+
+    final Set<UUID> aggIds;
+
+    static HeaderFields of(@NonNull MSG_FactHeader h) {
+      Set<UUID> aggIds = new LinkedHashSet<>();
+      for (MSG_UUID aggId : h.getAggIdsList()) {
+        aggIds.add(CONVERTER.fromProto(aggId));
+      }
+      return new HeaderFields(
+          CONVERTER.fromProto(h.getId()),
+          h.getNs(),
+          h.getType().isEmpty() ? null : h.getType(),
+          h.getVersion(),
+          aggIds);
+    }
+
+    @SneakyThrows(IOException.class)
+    static HeaderFields parse(@NonNull InputStream jsonHeader) {
+      UUID id = null;
+      String ns = null;
+      String type = null;
+      int version = 0;
+      Set<UUID> aggIds = Collections.emptySet();
+      try (JsonParser p = JSON.createParser(jsonHeader)) {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+          throw new IllegalArgumentException("Fact header is not a JSON object");
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+          String name = p.getCurrentName();
+          JsonToken value = p.nextToken();
+          if (value == JsonToken.VALUE_NULL) {
+            continue;
+          }
+          switch (name) {
+            case "id":
+              id = UUID.fromString(p.getText());
+              break;
+            case "ns":
+              ns = p.getText();
+              break;
+            case "type":
+              type = p.getText();
+              break;
+            case "version":
+              version = p.getIntValue();
+              break;
+            case "aggIds":
+              aggIds = new LinkedHashSet<>();
+              JsonToken t;
+              while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+                if (t == JsonToken.VALUE_STRING) {
+                  aggIds.add(UUID.fromString(p.getText()));
+                }
+              }
+              break;
+            default:
+              p.skipChildren();
+              break;
+          }
+        }
+      }
+      if (id == null) {
+        throw new IllegalArgumentException("id attribute missing from fact header");
+      }
+      if (ns == null || ns.trim().isEmpty()) {
+        throw new IllegalArgumentException("ns attribute missing from fact header");
+      }
+      return new HeaderFields(id, ns, type, version, aggIds);
+    }
+  }
+}
@@ -64,7 +64,7 @@ void testOnNext() {
     Fact f = Fact.of("{\"ns\":\"ns\",\"id\":\"" + UUID.randomUUID() + "\"}", "{}");
     MSG_Notification n = converter.createNotificationFor(f);
     uut.onNext(n);
-    verify(factObserver).onNext(eq(f));
+    verify(factObserver).onNext(argThat(actual -> actual.id().equals(f.id())));
   }
 
   @Test
@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.client.grpc;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import io.grpc.ClientCall;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import java.util.Arrays;
+import org.factcast.client.grpc.GrpcFactPublisher.FlowControlledSubscription;
+import org.factcast.core.Fact;
+import org.factcast.grpc.api.conv.ProtoConverter;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Notification;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_SubscriptionRequest;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Subscriber;
+
+@ExtendWith(MockitoExtension.class)
+class GrpcFactPublisherTest {
+
+  @Mock private Subscriber<Fact> subscriber;
+
+  @Mock private ClientCallStreamObserver<MSG_SubscriptionRequest> requestStream;
+
+  private final ProtoConverter conv = new ProtoConverter();
+
+  private FlowControlledSubscription uut;
+
+  @BeforeEach
+  void setup() {
+    uut = new FlowControlledSubscription(subscriber);
+    uut.beforeStart(requestStream);
+  }
+
+  @Test
+  void disablesAutoRequest() {
+    verify(requestStream).disableAutoRequestWithInitial(0);
+  }
+
+  @Test
+  void doesNotRequestBeforeStarted() {
+    uut.request(10);
+    verify(requestStream, never()).request(anyInt());
+
+    uut.started();
+    verify(requestStream).request(1);
+  }
+
+  @Test
+  void doesNotRequestWithoutDemand() {
+    uut.started();
+    verify(requestStream, never()).request(anyInt());
+  }
+
+  @Test
+  void requestsNextNotificationOnlyWhenBufferIsDrained() {
+    uut.started();
+    uut.request(1);
+    verify(requestStream, times(1)).request(1);
+
+    Fact f1 = new TestFact();
+    Fact f2 = new TestFact();
+    uut.onNext(factsNotification(f1, f2));
+
+    // one passed on, one buffered
+    verify(subscriber).onNext(withIdOf(f1));
+    verify(subscriber, never()).onNext(withIdOf(f2));
+    verify(requestStream, times(1)).request(1);
+
+    uut.request(1);
+    verify(subscriber).onNext(withIdOf(f2));
+    // buffer drained, but no demand left
+    verify(requestStream, times(1)).request(1);
+
+    uut.request(1);
+    verify(requestStream, times(2)).request(1);
+  }
+
+  @Test
+  void requestsOnlyOneNotificationAtATime() {
+    uut.started();
+    uut.request(5);
+    uut.request(5);
+    verify(requestStream, times(1)).request(1);
+
+    uut.onNext(factNotification(new TestFact()));
+    verify(requestStream, times(2)).request(1);
+  }
+
+  @Test
+  void completesAfterBufferIsDrained() {
+    uut.started();
+    uut.request(1);
+    Fact f1 = new TestFact();
+    Fact f2 = new TestFact();
+    uut.onNext(factsNotification(f1, f2));
+    uut.onNext(MSG_Notification.newBuilder().setType(MSG_Notification.Type.Complete).build());
+
+    verify(subscriber, never()).onComplete();
+
+    uut.request(1);
+    InOrder inOrder = inOrder(subscriber);
+    inOrder.verify(subscriber).onNext(withIdOf(f1));
+    inOrder.verify(subscriber).onNext(withIdOf(f2));
+    inOrder.verify(subscriber).onComplete();
+
+    uut.onCompleted();
+    verify(subscriber, times(1)).onComplete();
+  }
+
+  @Test
+  void passesErrorsOnOnce() {
+    uut.started();
+    RuntimeException e = new RuntimeException();
+    uut.onError(e);
+    uut.onError(new IllegalStateException());
+
+    verify(subscriber).onError(e);
+    verifyNoMoreInteractions(subscriber);
+  }
+
+  @Test
+  void cancelCancelsCall() {
+    uut.started();
+    uut.request(1);
+    uut.cancel();
+    verify(requestStream).cancel(anyString(), isNull());
+
+    uut.onNext(factNotification(new TestFact()));
+    uut.onError(Status.CANCELLED.asRuntimeException());
+    verifyNoInteractions(subscriber);
+  }
+
+  @Test
+  void rejectsNonPositiveRequest() {
+    uut.started();
+    uut.request(0);
+
+    verify(requestStream).cancel(anyString(), isNull());
+    verify(subscriber).onError(any(IllegalArgumentException.class));
+  }
+
+  @Test
+  void subscribesBeforeCallIsStarted() {
+    @SuppressWarnings("unchecked")
+    ClientCall<MSG_SubscriptionRequest, MSG_Notification> call = mock(ClientCall.class);
+    new GrpcFactPublisher(() -> call, MSG_SubscriptionRequest.getDefaultInstance())
+        .subscribe(subscriber);
+
+    InOrder inOrder = inOrder(subscriber, call);
+    inOrder.verify(subscriber).onSubscribe(any());
+    inOrder.verify(call).start(any(), any());
+    verify(call, never()).request(anyInt());
+  }
+
+  private static Fact withIdOf(Fact f) {
+    return argThat(actual -> actual.id().equals(f.id()));
+  }
+
+  private MSG_Notification factNotification(Fact f) {
+    return MSG_Notification.newBuilder()
+        .setType(MSG_Notification.Type.Fact)
+        .setFact(conv.toProto(f))
+        .build();
+  }
+
+  private MSG_Notification factsNotification(Fact... f) {
+    return MSG_Notification.newBuilder()
+        .setType(MSG_Notification.Type.Facts)
+        .setFacts(conv.toProto(Arrays.asList(f)))
+        .build();
+  }
+}
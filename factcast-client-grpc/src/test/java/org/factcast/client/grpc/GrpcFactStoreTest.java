@@ -36,6 +36,7 @@
 import org.factcast.core.spec.FactSpec;
 import org.factcast.core.store.RetryableException;
 import org.factcast.core.store.StateToken;
+import org.factcast.core.subscription.SubscriptionRequest;
 import org.factcast.core.subscription.SubscriptionRequestTO;
 import org.factcast.core.subscription.observer.FactObserver;
 import org.factcast.grpc.api.ConditionalPublishRequest;
@@ -92,6 +93,17 @@ void configureCompressionChooseGzipIfAvail() {
     verify(stub).withCompression("gzip");
   }
 
+  @Test
+  void configureMetaDataWithoutCompression() {
+    FactCastGrpcClientProperties props = new FactCastGrpcClientProperties();
+    props.setCatchupBatchsize(1);
+    props.setStructuredFacts(true);
+    uut = new GrpcFactStore(blockingStub, stub, Optional.empty(), props);
+    uut.configureCompressionAndMetaData("zip,lz3");
+    verify(stub, never()).withCompression(any());
+    verify(stub).withInterceptors(any());
+  }
+
   @Test
   void configureCompressionSkipCompression() {
     uut.configureCompressionAndMetaData("zip,lz3,lz4, lz99");
@@ -306,6 +318,38 @@ void testSubscribeNullParameters() {
     expectNPE(() -> uut.subscribe(null, null));
   }
 
+  @Test
+  void testNegotiateStructuredFacts() {
+    assertTrue(GrpcFactStore.negotiateStructuredFacts(true, ProtocolVersion.of(1, 4, 0)));
+    assertTrue(GrpcFactStore.negotiateStructuredFacts(true, ProtocolVersion.of(1, 5, 2)));
+    assertFalse(GrpcFactStore.negotiateStructuredFacts(true, ProtocolVersion.of(1, 1, 0)));
+    assertFalse(GrpcFactStore.negotiateStructuredFacts(false, ProtocolVersion.of(1, 4, 0)));
+  }
+
+  @Test
+  void testNegotiateBatchSizeInBytes() {
+    assertEquals(0, GrpcFactStore.negotiateBatchSizeInBytes(1000, null));
+    assertEquals(1000, GrpcFactStore.negotiateBatchSizeInBytes(1000, "5000"));
+    assertEquals(5000, GrpcFactStore.negotiateBatchSizeInBytes(10000, "5000"));
+    assertEquals(5000, GrpcFactStore.negotiateBatchSizeInBytes(0, "5000"));
+  }
+
+  @Test
+  void testPublisherNullParameters() {
+    expectNPE(() -> uut.publisher(null));
+  }
+
+  @Test
+  void testPublisherAttachesFlowControlHeader() {
+    val req =
+        SubscriptionRequestTO.forFacts(
+            SubscriptionRequest.follow(FactSpec.ns("foo")).fromScratch());
+
+    assertThat(uut.publisher(req)).isInstanceOf(GrpcFactPublisher.class);
+
+    verify(stub).withInterceptors(any());
+  }
+
   @Test
   void testSerialOfNullParameters() {
     expectNPE(() -> uut.serialOf(null));
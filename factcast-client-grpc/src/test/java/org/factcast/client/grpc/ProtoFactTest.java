@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.client.grpc;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.google.protobuf.ByteString;
+import java.util.UUID;
+import org.factcast.core.Fact;
+import org.factcast.grpc.api.conv.ProtoConverter;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Fact;
+import org.junit.jupiter.api.*;
+
+class ProtoFactTest {
+
+  final ProtoConverter conv = new ProtoConverter();
+
+  final UUID aggId = UUID.randomUUID();
+
+  final Fact probe =
+      Fact.builder()
+          .ns("ns")
+          .type("type")
+          .version(2)
+          .aggId(aggId)
+          .meta("_ser", "42")
+          .meta("foo", "bar")
+          .build("{\"x\":1}");
+
+  @Test
+  void picksFieldsFromJsonHeader() {
+    Fact uut = ProtoFact.of(conv.toProto(probe));
+
+    assertThat(uut.id()).isEqualTo(probe.id());
+    assertThat(uut.ns()).isEqualTo("ns");
+    assertThat(uut.type()).isEqualTo("type");
+    assertThat(uut.version()).isEqualTo(2);
+    assertThat(uut.aggIds()).containsExactly(aggId);
+    assertThat(uut.serial()).isEqualTo(42);
+    assertThat(uut.meta("foo")).isEqualTo("bar");
+    assertThat(uut.jsonHeader()).isEqualTo(probe.jsonHeader());
+    assertThat(uut.jsonPayload()).isEqualTo(probe.jsonPayload());
+    assertThat(uut.header().meta()).isEqualTo(probe.header().meta());
+  }
+
+  @Test
+  void picksFieldsFromStructuredHeader() {
+    Fact uut = ProtoFact.of(conv.toStructuredProto(probe));
+
+    assertThat(uut.id()).isEqualTo(probe.id());
+    assertThat(uut.ns()).isEqualTo("ns");
+    assertThat(uut.type()).isEqualTo("type");
+    assertThat(uut.version()).isEqualTo(2);
+    assertThat(uut.aggIds()).containsExactly(aggId);
+    assertThat(uut.serial()).isEqualTo(42);
+    assertThat(uut.jsonPayload()).isEqualTo(probe.jsonPayload());
+    assertThat(uut.meta("foo")).isEqualTo("bar");
+    assertThat(uut.jsonHeader()).isEqualTo(probe.jsonHeader());
+  }
+
+  @Test
+  void doesNotParseJsonHeaderForStructuredFields() {
+    MSG_Fact msg = conv.toStructuredProto(probe).toBuilder().setHeader("not even json").build();
+    Fact uut = ProtoFact.of(msg);
+
+    assertThat(uut.id()).isEqualTo(probe.id());
+    assertThat(uut.ns()).isEqualTo("ns");
+    assertThat(uut.aggIds()).containsExactly(aggId);
+  }
+
+  @Test
+  void skipsUnknownAndNullAttributes() {
+    UUID id = UUID.randomUUID();
+    String header =
+        "{\"meta\":{\"a\":{\"b\":[1,2]}},\"id\":\""
+            + id
+            + "\",\"type\":null,\"aggIds\":[null],\"custom\":[{\"ns\":\"wrong\"}],\"ns\":\"ns\"}";
+
+    Fact uut = ProtoFact.of(msg(header));
+
+    assertThat(uut.id()).isEqualTo(id);
+    assertThat(uut.ns()).isEqualTo("ns");
+    assertThat(uut.type()).isNull();
+    assertThat(uut.version()).isZero();
+    assertThat(uut.aggIds()).isEmpty();
+  }
+
+  @Test
+  void failsOnMissingId() {
+    Fact uut = ProtoFact.of(msg("{\"ns\":\"ns\"}"));
+    assertThatThrownBy(uut::ns).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void failsOnMissingNs() {
+    Fact uut = ProtoFact.of(msg("{\"id\":\"" + UUID.randomUUID() + "\"}"));
+    assertThatThrownBy(uut::id).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void equalsById() {
+    MSG_Fact msg = conv.toProto(probe);
+    assertThat(ProtoFact.of(msg)).isEqualTo(ProtoFact.of(msg)).isNotEqualTo(probe);
+    assertThat(ProtoFact.of(msg).hashCode()).isEqualTo(probe.id().hashCode());
+  }
+
+  private static MSG_Fact msg(String header) {
+    return MSG_Fact.newBuilder()
+        .setHeaderBytes(ByteString.copyFromUtf8(header))
+        .setPayload("{}")
+        .build();
+  }
+}
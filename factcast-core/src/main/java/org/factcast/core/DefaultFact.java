@@ -15,6 +15,7 @@
  */
 package org.factcast.core;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
@@ -28,9 +29,12 @@
 import org.factcast.core.util.FactCastJson;
 
 /**
- * Note: creating an instance involves deserializing the header from JS. This is probably not
+ * Note: creating an instance from JSON involves deserializing the header. This is probably not
  * optimal considering performance. If you extend FactCast, consider creating a dedicated Fact Impl.
  *
+ * <p>Instances created from a {@link FactHeader} only serialize it to JSON, when jsonHeader is
+ * actually requested. Instances created from a JSON tree do not parse the header text again.
+ *
  * <p>For caching purposes, this thing should be Externalizable.
  *
  * @author uwe.schaefer@prisma-capacity.eu
@@ -44,7 +48,8 @@ public String toString() {
     return "DefaultFact [id=" + deserializedHeader.id() + "]";
   }
 
-  @Getter String jsonHeader;
+  // lazily serialized, if created from a FactHeader
+  volatile String jsonHeader;
 
   @Getter String jsonPayload;
 
@@ -58,6 +63,14 @@ public static Fact of(@NonNull String jsonHeader, @NonNull String jsonPayload) {
     return new DefaultFact(jsonHeader, jsonPayload);
   }
 
+  /** uses the already parsed header, rather than parsing its text again. */
+  public static Fact ofTree(@NonNull JsonNode jsonHeader, @NonNull JsonNode jsonPayload) {
+    return new DefaultFact(
+        FactCastJson.treeToValue(jsonHeader, FactHeader.class),
+        jsonHeader.toString(),
+        jsonPayload.toString());
+  }
+
   @Override
   public @NonNull FactHeader header() {
     return deserializedHeader;
@@ -70,13 +83,31 @@ protected DefaultFact(String jsonHeader, String jsonPayload) {
     init(jsonHeader);
   }
 
+  /**
+   * copies the given header, as it is only serialized on demand and the caller might still change
+   * it.
+   */
   public DefaultFact(@NonNull FactHeader header, @NonNull String payload) {
+    this(header.copy(), null, payload);
+  }
+
+  private DefaultFact(@NonNull FactHeader header, String jsonHeader, @NonNull String payload) {
     deserializedHeader = header;
+    this.jsonHeader = jsonHeader;
     jsonPayload = payload;
-    jsonHeader = FactCastJson.writeValueAsString(header);
     validate();
   }
 
+  @Override
+  public String jsonHeader() {
+    String h = jsonHeader;
+    if (h == null) {
+      h = FactCastJson.writeValueAsString(deserializedHeader);
+      jsonHeader = h;
+    }
+    return h;
+  }
+
   private void init(String jsonHeader) {
     deserializedHeader = FactCastJson.readValue(FactHeader.class, jsonHeader);
     validate();
@@ -84,13 +115,13 @@ private void init(String jsonHeader) {
 
   private void validate() {
     if (deserializedHeader.id() == null) {
-      throw new IllegalArgumentException("id attribute missing from " + jsonHeader);
+      throw new IllegalArgumentException("id attribute missing from " + jsonHeader());
     }
     if (deserializedHeader.ns() == null || deserializedHeader.ns().trim().isEmpty()) {
-      throw new IllegalArgumentException("ns attribute missing from " + jsonHeader);
+      throw new IllegalArgumentException("ns attribute missing from " + jsonHeader());
     }
     if (deserializedHeader.version() < 0)
-      throw new IllegalArgumentException("version attribute is not valid " + jsonHeader);
+      throw new IllegalArgumentException("version attribute is not valid " + jsonHeader());
   }
 
   @Override
@@ -101,7 +132,7 @@ public String meta(String key) {
   @Override
   public void writeExternal(ObjectOutput out) throws IOException {
     // write only header & payload
-    out.writeUTF(jsonHeader);
+    out.writeUTF(jsonHeader());
     out.writeUTF(jsonPayload);
   }
 
@@ -32,6 +32,7 @@
 import org.factcast.core.subscription.SubscriptionRequestTO;
 import org.factcast.core.subscription.TransformationException;
 import org.factcast.core.subscription.observer.FactObserver;
+import org.reactivestreams.Publisher;
 
 /**
  * Default impl for FactCast used by FactCast.from* methods.
@@ -50,6 +51,12 @@ public Subscription subscribeEphemeral(
     return store.subscribe(SubscriptionRequestTO.forFacts(req), observer);
   }
 
+  @Override
+  @NonNull
+  public Publisher<Fact> publisher(@NonNull SubscriptionRequest req) {
+    return store.publisher(SubscriptionRequestTO.forFacts(req));
+  }
+
   @Override
   public void publish(@NonNull List<? extends Fact> factsToPublish) {
     FactValidation.validateOnPublish(factsToPublish);
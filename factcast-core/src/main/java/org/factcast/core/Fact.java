@@ -76,7 +76,7 @@ static Fact of(@NonNull String jsonHeader, @NonNull String jsonPayload) {
   }
 
   static Fact of(@NonNull JsonNode jsonHeader, @NonNull JsonNode jsonPayload) {
-    return DefaultFact.of(jsonHeader.toString(), jsonPayload.toString());
+    return DefaultFact.ofTree(jsonHeader, jsonPayload);
   }
 
   default boolean before(Fact other) {
@@ -141,6 +141,7 @@ public Fact build(String payload) {
       if (payload == null || payload.trim().isEmpty()) {
         pl = "{}";
       }
+      // copies the header, so that the builder can be reused
       return new DefaultFact(header, pl);
     }
   }
@@ -37,4 +37,16 @@ public class FactHeader {
   @JsonProperty Set<UUID> aggIds = new HashSet<>();
 
   @JsonProperty final Map<String, String> meta = new HashMap<>();
+
+  /** @return a copy, that does not share any mutable state with this header */
+  FactHeader copy() {
+    FactHeader c = new FactHeader();
+    c.id = id;
+    c.ns = ns;
+    c.type = type;
+    c.version = version;
+    c.aggIds = new HashSet<>(aggIds);
+    c.meta.putAll(meta);
+    return c;
+  }
 }
@@ -24,6 +24,8 @@
 import org.factcast.core.subscription.SubscriptionRequest;
 import org.factcast.core.subscription.TransformationException;
 import org.factcast.core.subscription.observer.FactObserver;
+import org.factcast.core.subscription.reactive.BlockingFactPublisher;
+import org.reactivestreams.Publisher;
 
 /**
  * A read-only interface to a FactCast, that only offers subscription and Fact-by-id lookup.
@@ -40,6 +42,17 @@ public interface ReadFactCast {
   Subscription subscribeEphemeral(
       @NonNull SubscriptionRequest request, @NonNull FactObserver observer);
 
+  /**
+   * Same as subscribeEphemeral, but with backpressure: facts are only read as fast as the
+   * subscribers of the returned publisher request them. Every subscriber gets its own subscription.
+   *
+   * <p>By default, the thread delivering the facts waits while there is no demand.
+   */
+  @NonNull
+  default Publisher<Fact> publisher(@NonNull SubscriptionRequest request) {
+    return new BlockingFactPublisher(this, request);
+  }
+
   @Deprecated
   // will be removed soon.
   @NonNull
@@ -15,13 +15,14 @@
  */
 package org.factcast.core.spec;
 
-import com.fasterxml.jackson.databind.util.LRUMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import javax.script.Compilable;
+import javax.script.Invocable;
 import javax.script.ScriptEngine;
 import lombok.Generated;
 import lombok.NonNull;
@@ -35,8 +36,6 @@
  */
 public final class FactSpecMatcher implements Predicate<Fact> {
 
-  private static final LRUMap<FilterScript, ScriptEngine> scriptEngineCache = new LRUMap<>(10, 200);
-
   @NonNull final String ns;
 
   final Integer version;
@@ -49,7 +48,8 @@ public final class FactSpecMatcher implements Predicate<Fact> {
 
   final FilterScript script;
 
-  final ScriptEngine scriptEngine;
+  /** compiled once per matcher, null if there is no script */
+  final Invocable scriptFunction;
 
   private static final Supplier<ScriptEngine> jsScriptEngineSupplier =
       new JavaScriptEngineSupplier();
@@ -66,7 +66,8 @@ public FactSpecMatcher(@NonNull FactSpec spec) {
     aggId = spec.aggId();
     meta = spec.meta();
     script = spec.filterScript();
-    scriptEngine = getEngine(script);
+    // fails early on unsupported or broken scripts
+    scriptFunction = script == null ? null : compile(script);
   }
 
   @Override
@@ -117,31 +118,34 @@ protected boolean aggIdMatch(Fact t) {
   @SneakyThrows
   @Generated
   protected boolean scriptMatch(Fact t) {
-    if (script == null) {
+    if (scriptFunction == null) {
       return true;
     }
-    return (Boolean) scriptEngine.eval("test(" + t.jsonHeader() + "," + t.jsonPayload() + ")");
+    // script engines must not be used concurrently
+    synchronized (scriptFunction) {
+      return (Boolean)
+          scriptFunction.invokeFunction("parseAndTest", t.jsonHeader(), t.jsonPayload());
+    }
   }
 
   @SneakyThrows
   @Generated
-  private static synchronized ScriptEngine getEngine(FilterScript filterScript) {
-    if (filterScript == null) {
-      return null;
-    }
-
+  private static Invocable compile(FilterScript filterScript) {
     // TODO: currently only supports language js:
     if ("js".equals(filterScript.languageIdentifier())) {
-
-      ScriptEngine cachedEngine = scriptEngineCache.get(filterScript);
-      if (cachedEngine != null) {
-        return cachedEngine;
-      } else {
-        ScriptEngine engine = jsScriptEngineSupplier.get();
-        engine.eval("var test=" + filterScript.source());
-        scriptEngineCache.put(filterScript, engine);
-        return engine;
+      ScriptEngine engine;
+      synchronized (jsScriptEngineSupplier) {
+        // creating engines is not guaranteed to be threadsafe
+        engine = jsScriptEngineSupplier.get();
       }
+      // compiled once, so that per fact only header and payload need to be parsed
+      ((Compilable) engine)
+          .compile(
+              "var test="
+                  + filterScript.source()
+                  + ";\nfunction parseAndTest(h,p){ return test(JSON.parse(h),JSON.parse(p)) }")
+          .eval();
+      return (Invocable) engine;
     } else {
       // TODO really?
       throw new IllegalArgumentException(
@@ -25,6 +25,8 @@
 import org.factcast.core.subscription.SubscriptionRequestTO;
 import org.factcast.core.subscription.TransformationException;
 import org.factcast.core.subscription.observer.FactObserver;
+import org.factcast.core.subscription.reactive.BlockingFactPublisher;
+import org.reactivestreams.Publisher;
 
 /**
  * A read/Write FactStore.
@@ -45,6 +47,15 @@ public interface FactStore {
   @NonNull
   Subscription subscribe(@NonNull SubscriptionRequestTO request, @NonNull FactObserver observer);
 
+  /**
+   * @return a publisher, that subscribes anew for every subscriber, and reads facts only as far as
+   *     they are requested
+   */
+  @NonNull
+  default Publisher<Fact> publisher(@NonNull SubscriptionRequestTO request) {
+    return new BlockingFactPublisher(this, request);
+  }
+
   @NonNull
   OptionalLong serialOf(@NonNull UUID l);
 
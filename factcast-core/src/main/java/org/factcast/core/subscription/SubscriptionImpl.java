@@ -162,6 +162,22 @@ public void notifyElement(@NonNull Fact e) throws TransformationException {
     }
   }
 
+  /**
+   * Transforms the given Fact the way {@link #notifyElement(Fact)} would, without notifying the
+   * observer. Use {@link #notifyTransformedElement(Fact)} to pass the result on.
+   */
+  @NonNull
+  public Fact transform(@NonNull Fact e) throws TransformationException {
+    return transformers.transformIfNecessary(e);
+  }
+
+  /** Notifies the observer of a Fact that already went through {@link #transform(Fact)}. */
+  public void notifyTransformedElement(@NonNull Fact e) {
+    if (!closed.get()) {
+      observer.onNext(e);
+    }
+  }
+
   public SubscriptionImpl onClose(Runnable e) {
     onClose = e;
     return this;
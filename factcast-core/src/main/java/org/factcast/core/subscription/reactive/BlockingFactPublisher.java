@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.core.subscription.reactive;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.core.ReadFactCast;
+import org.factcast.core.store.FactStore;
+import org.factcast.core.subscription.Subscription;
+import org.factcast.core.subscription.SubscriptionRequest;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.observer.FactObserver;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+
+/**
+ * Publishes the facts of a {@link FactStore} or {@link ReadFactCast} subscription to a Reactive
+ * Streams {@link Subscriber}.
+ *
+ * <p>The thread delivering the facts waits while the subscriber has no outstanding demand, so that
+ * the store reads no further ahead than requested. If there is no demand for longer than
+ * maxWaitForDemand (default 10 minutes), the store subscription is closed and the subscriber is
+ * signalled a {@link TimeoutException}, so that an abandoned subscriber does not hold the
+ * delivering thread forever. Every subscriber gets its own subscription. The catchup signal is not
+ * passed on.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class BlockingFactPublisher implements Publisher<Fact> {
+
+  static final Duration DEFAULT_MAX_WAIT_FOR_DEMAND = Duration.ofMinutes(10);
+
+  /** subscribes the given observer anew */
+  @NonNull final Function<FactObserver, Subscription> subscribe;
+
+  @NonNull final Duration maxWaitForDemand;
+
+  public BlockingFactPublisher(@NonNull FactStore store, @NonNull SubscriptionRequestTO request) {
+    this(store, request, DEFAULT_MAX_WAIT_FOR_DEMAND);
+  }
+
+  public BlockingFactPublisher(
+      @NonNull FactStore store,
+      @NonNull SubscriptionRequestTO request,
+      @NonNull Duration maxWaitForDemand) {
+    this(o -> store.subscribe(request, o), maxWaitForDemand);
+  }
+
+  /** Publishes ephemeral subscriptions of the given FactCast. */
+  public BlockingFactPublisher(@NonNull ReadFactCast fc, @NonNull SubscriptionRequest request) {
+    this(o -> fc.subscribeEphemeral(request, o), DEFAULT_MAX_WAIT_FOR_DEMAND);
+  }
+
+  @Override
+  public void subscribe(@NonNull Subscriber<? super Fact> subscriber) {
+    DemandSubscription s = new DemandSubscription(subscriber, maxWaitForDemand.toMillis());
+    subscriber.onSubscribe(s);
+    s.start(subscribe);
+  }
+
+  @Slf4j
+  @RequiredArgsConstructor
+  static class DemandSubscription implements org.reactivestreams.Subscription, FactObserver {
+
+    @NonNull final Subscriber<? super Fact> subscriber;
+
+    final long maxWaitForDemandInMillis;
+
+    private final AtomicLong demand = new AtomicLong();
+
+    private final Object lock = new Object();
+
+    private final AtomicBoolean terminated = new AtomicBoolean();
+
+    private volatile boolean cancelled;
+
+    private volatile Subscription subscription;
+
+    void start(@NonNull Function<FactObserver, Subscription> subscribe) {
+      try {
+        subscription = subscribe.apply(this);
+      } catch (RuntimeException e) {
+        onError(e);
+        return;
+      }
+      if (cancelled) {
+        close();
+      }
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        cancel();
+        if (terminated.compareAndSet(false, true)) {
+          subscriber.onError(
+              new IllegalArgumentException("non-positive request of " + n + " (see §3.9)"));
+        }
+        return;
+      }
+      demand.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+      synchronized (lock) {
+        lock.notifyAll();
+      }
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      synchronized (lock) {
+        lock.notifyAll();
+      }
+      close();
+    }
+
+    private void close() {
+      Subscription s = subscription;
+      if (s != null) {
+        try {
+          s.close();
+        } catch (Exception e) {
+          log.debug("While closing subscription: {}", e.getMessage());
+        }
+      }
+    }
+
+    @Override
+    public void onNext(@NonNull Fact element) {
+      if (!awaitDemand()) {
+        cancel();
+        if (terminated.compareAndSet(false, true)) {
+          subscriber.onError(
+              new TimeoutException(
+                  "no demand within " + maxWaitForDemandInMillis + "ms, subscription closed"));
+        }
+      }
+      if (cancelled) {
+        // stops the store from delivering any further
+        throw new CancellationException("cancelled by subscriber");
+      }
+      if (demand.get() != Long.MAX_VALUE) {
+        demand.decrementAndGet();
+      }
+      subscriber.onNext(element);
+    }
+
+    /** @return false, if there was neither demand nor cancellation within maxWaitForDemand */
+    private boolean awaitDemand() {
+      long deadline = System.currentTimeMillis() + maxWaitForDemandInMillis;
+      synchronized (lock) {
+        while (demand.get() == 0 && !cancelled) {
+          long remaining = deadline - System.currentTimeMillis();
+          if (remaining <= 0) {
+            return false;
+          }
+          try {
+            lock.wait(remaining);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+          }
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public void onComplete() {
+      if (!cancelled && terminated.compareAndSet(false, true)) {
+        subscriber.onComplete();
+      }
+    }
+
+    @Override
+    public void onError(@NonNull Throwable exception) {
+      if (!cancelled && terminated.compareAndSet(false, true)) {
+        subscriber.onError(exception);
+      }
+    }
+  }
+}
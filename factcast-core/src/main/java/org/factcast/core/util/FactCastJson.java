@@ -136,6 +136,11 @@ public static <T> JsonNode valueToTree(T object) {
     return objectMapper.valueToTree(object);
   }
 
+  @SneakyThrows
+  public static <T> T treeToValue(@NonNull JsonNode tree, @NonNull Class<T> type) {
+    return objectMapper.treeToValue(tree, type);
+  }
+
   public static JsonNode readTree(String json) throws JsonProcessingException {
     return objectMapper.readTree(json);
   }
@@ -40,6 +40,7 @@
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Publisher;
 
 @ExtendWith(MockitoExtension.class)
 public class DefaultFactCastTest {
@@ -54,6 +55,16 @@ public class DefaultFactCastTest {
 
   @Captor private ArgumentCaptor<List<Fact>> cfacts;
 
+  @Test
+  void testPublisher() {
+    Publisher<Fact> publisher = mock(Publisher.class);
+    when(store.publisher(csr.capture())).thenReturn(publisher);
+
+    assertSame(
+        publisher, uut.publisher(SubscriptionRequest.follow(FactSpec.ns("foo")).fromScratch()));
+    assertThat(csr.getValue().specs()).containsExactly(FactSpec.ns("foo"));
+  }
+
   @Test
   void testSubscribeEphemeral() {
     when(store.subscribe(csr.capture(), any())).thenReturn(mock(Subscription.class));
@@ -21,6 +21,7 @@
 import java.io.*;
 import java.util.UUID;
 import lombok.val;
+import org.factcast.core.util.FactCastJson;
 import org.junit.jupiter.api.*;
 
 public class DefaultFactTest {
@@ -220,11 +221,66 @@ void testToString() {
     assertEquals("DefaultFact [id=" + id.toString() + "]", fact.toString());
   }
 
+  @Test
+  void testJsonHeaderSerializedOnDemand() {
+    FactHeader fh = new FactHeader();
+    fh.id(UUID.randomUUID()).ns("foo").version(2);
+    val f = new DefaultFact(fh, "{}");
+
+    String json = f.jsonHeader();
+
+    assertSame(json, f.jsonHeader());
+    assertEquals(fh.id(), Fact.of(json, "{}").id());
+    assertEquals(2, Fact.of(json, "{}").version());
+  }
+
+  @Test
+  void testOfTree() throws Exception {
+    UUID id = UUID.randomUUID();
+    String header = "{\"id\":\"" + id + "\",\"ns\":\"ns\",\"custom\":1,\"meta\":{\"_ser\":3}}";
+    Fact f =
+        DefaultFact.ofTree(
+            FactCastJson.readTree(header), FactCastJson.readTree("{\"foo\":\"bar\"}"));
+
+    assertEquals(id, f.id());
+    assertEquals(3, f.serial());
+    assertEquals(header, f.jsonHeader());
+    assertEquals("{\"foo\":\"bar\"}", f.jsonPayload());
+  }
+
+  @Test
+  void testOfTreeValidates() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            DefaultFact.ofTree(
+                FactCastJson.readTree("{\"ns\":\"ns\"}"), FactCastJson.readTree("{}")));
+  }
+
   @Test
   void testHeader() {
     FactHeader fh = new FactHeader();
     fh.id(UUID.randomUUID()).ns("foo");
     val f = new DefaultFact(fh, "{}");
-    assertSame(fh, f.header());
+    assertNotSame(fh, f.header());
+    assertEquals(fh.id(), f.header().id());
+    assertEquals("foo", f.header().ns());
+  }
+
+  @Test
+  void testHeaderIsCopied() {
+    FactHeader fh = new FactHeader();
+    fh.id(UUID.randomUUID()).ns("foo");
+    fh.meta().put("foo", "bar");
+    val f = new DefaultFact(fh, "{}");
+
+    fh.ns("changed");
+    fh.meta().put("foo", "changed");
+    fh.aggIds().add(UUID.randomUUID());
+
+    assertEquals("foo", f.ns());
+    assertEquals("bar", f.meta("foo"));
+    assertTrue(f.aggIds().isEmpty());
+    assertEquals("foo", Fact.of(f.jsonHeader(), "{}").ns());
   }
 }
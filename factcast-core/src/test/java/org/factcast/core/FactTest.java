@@ -220,4 +220,24 @@ public void testEmptyPayload() {
     assertThat(Fact.builder().build("").jsonPayload()).isEqualTo("{}");
     assertThat(Fact.builder().build("   ").jsonPayload()).isEqualTo("{}");
   }
+
+  @Test
+  public void testReusingBuilderDoesNotChangeBuiltFacts() {
+    UUID aggId = UUID.randomUUID();
+    Fact.Builder builder = Fact.builder().ns("a").type("t").aggId(aggId).meta("foo", "bar");
+    Fact f = builder.buildWithoutPayload();
+
+    builder.ns("b").type("u").version(2).aggId(UUID.randomUUID()).meta("foo", "baz");
+    Fact other = builder.buildWithoutPayload();
+
+    assertThat(f.ns()).isEqualTo("a");
+    assertThat(f.type()).isEqualTo("t");
+    assertThat(f.aggIds()).containsExactly(aggId);
+    assertThat(f.meta("foo")).isEqualTo("bar");
+    Fact parsed = Fact.of(f.jsonHeader(), f.jsonPayload());
+    assertThat(parsed.ns()).isEqualTo("a");
+    assertThat(parsed.meta("foo")).isEqualTo("bar");
+    assertThat(other.ns()).isEqualTo("b");
+    assertThat(other.aggIds()).hasSize(2);
+  }
 }
@@ -16,10 +16,14 @@
 package org.factcast.core;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.*;
 
+import org.factcast.core.spec.FactSpec;
 import org.factcast.core.store.FactStore;
+import org.factcast.core.subscription.SubscriptionRequest;
+import org.factcast.core.subscription.observer.FactObserver;
 import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
 
 public class ReadFactCastTest {
 
@@ -28,4 +32,14 @@ void testRetryValidatesMaxAttempts() {
     FactStore store = mock(FactStore.class);
     assertThrows(IllegalArgumentException.class, () -> FactCast.fromReadOnly(store).retry(-42));
   }
+
+  @Test
+  void testPublisherSubscribesEphemeralByDefault() {
+    ReadFactCast fc = mock(ReadFactCast.class, CALLS_REAL_METHODS);
+    SubscriptionRequest req = SubscriptionRequest.follow(FactSpec.ns("foo")).fromScratch();
+
+    fc.publisher(req).subscribe(mock(Subscriber.class));
+
+    verify(fc).subscribeEphemeral(same(req), any(FactObserver.class));
+  }
 }
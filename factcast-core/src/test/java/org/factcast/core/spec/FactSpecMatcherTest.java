@@ -17,8 +17,13 @@
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
 import org.factcast.core.Fact;
 import org.factcast.core.TestFact;
@@ -183,6 +188,43 @@ void testMatchesByScript() {
     assertFalse(p.test(new TestFact().ns("1")));
   }
 
+  @Test
+  void testMatchesByScriptOnNestedPayload() {
+    String script = "function (h,p) { return p.items.length == 2 && p.items[1].id == 'b' }";
+    Predicate<Fact> p = FactSpecMatcher.matches(FactSpec.ns("1").jsFilterScript(script));
+    assertTrue(
+        p.test(new TestFact().ns("1").jsonPayload("{\"items\":[{\"id\":\"a\"},{\"id\":\"b\"}]}")));
+    assertFalse(p.test(new TestFact().ns("1").jsonPayload("{\"items\":[{\"id\":\"a\"}]}")));
+  }
+
+  @Test
+  void testMatchesByScriptConcurrently() throws Exception {
+    String script = "function (h,p) { return p.test % 2 == 0 }";
+    Predicate<Fact> p = FactSpecMatcher.matches(FactSpec.ns("1").jsFilterScript(script));
+    ExecutorService es = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        results.add(
+            es.submit(
+                () -> {
+                  int matches = 0;
+                  for (int i = 0; i < 100; i++) {
+                    if (p.test(new TestFact().ns("1").jsonPayload("{\"test\":" + i + "}"))) {
+                      matches++;
+                    }
+                  }
+                  return matches;
+                }));
+      }
+      for (Future<Integer> r : results) {
+        assertEquals(50, r.get());
+      }
+    } finally {
+      es.shutdown();
+    }
+  }
+
   @Test
   void testFactSpecMatcherNullConstructor() {
     Assertions.assertThrows(NullPointerException.class, () -> new FactSpecMatcher(null));
@@ -219,4 +219,24 @@ public void testCloseThrowsException() {
     // this must return without exceptions
     uut.notifyComplete();
   }
+
+  @Test
+  void testTransformThenNotifyTransformed() throws TransformationException {
+    Fact f = new TestFact();
+    Fact transformed = new TestFact();
+    when(factTransformers.transformIfNecessary(f)).thenReturn(transformed);
+
+    uut.notifyTransformedElement(uut.transform(f));
+
+    verify(factTransformers, times(1)).transformIfNecessary(f);
+    verify(observer).onNext(transformed);
+  }
+
+  @Test
+  void testNotifyTransformedElementIgnoredAfterClose() {
+    uut.close();
+    uut.notifyTransformedElement(new TestFact());
+
+    verify(observer, never()).onNext(any());
+  }
 }
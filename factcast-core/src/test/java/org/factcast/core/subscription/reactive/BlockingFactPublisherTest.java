@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.core.subscription.reactive;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.NonNull;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.store.FactStore;
+import org.factcast.core.subscription.Subscription;
+import org.factcast.core.subscription.SubscriptionRequest;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.observer.FactObserver;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Subscriber;
+
+@ExtendWith(MockitoExtension.class)
+class BlockingFactPublisherTest {
+
+  @Mock private @NonNull FactStore store;
+  @Mock private @NonNull Subscription subscription;
+  @Mock private @NonNull Subscriber<Fact> subscriber;
+
+  private final SubscriptionRequestTO req =
+      SubscriptionRequestTO.forFacts(SubscriptionRequest.follow(FactSpec.ns("foo")).fromScratch());
+
+  private final Fact fact = Fact.builder().ns("foo").buildWithoutPayload();
+
+  private org.reactivestreams.Subscription rs;
+
+  private FactObserver observer;
+
+  private void subscribe() {
+    subscribe(new BlockingFactPublisher(store, req));
+  }
+
+  private void subscribe(BlockingFactPublisher publisher) {
+    ArgumentCaptor<FactObserver> o = ArgumentCaptor.forClass(FactObserver.class);
+    when(store.subscribe(same(req), o.capture())).thenReturn(subscription);
+    ArgumentCaptor<org.reactivestreams.Subscription> s =
+        ArgumentCaptor.forClass(org.reactivestreams.Subscription.class);
+
+    publisher.subscribe(subscriber);
+
+    verify(subscriber).onSubscribe(s.capture());
+    rs = s.getValue();
+    observer = o.getValue();
+  }
+
+  @Test
+  void passesRequestedFacts() {
+    subscribe();
+    rs.request(2);
+
+    observer.onNext(fact);
+    observer.onNext(fact);
+
+    verify(subscriber, times(2)).onNext(fact);
+  }
+
+  @Test
+  void blocksDeliveryWithoutDemand() throws Exception {
+    subscribe();
+    CompletableFuture<Void> delivery = CompletableFuture.runAsync(() -> observer.onNext(fact));
+
+    Thread.sleep(100);
+    assertThat(delivery).isNotDone();
+    verify(subscriber, never()).onNext(any());
+
+    rs.request(1);
+    delivery.get(10, TimeUnit.SECONDS);
+    verify(subscriber).onNext(fact);
+  }
+
+  @Test
+  void cancelClosesSubscriptionAndStopsDelivery() throws Exception {
+    subscribe();
+    CompletableFuture<Void> delivery = CompletableFuture.runAsync(() -> observer.onNext(fact));
+
+    rs.cancel();
+
+    verify(subscription).close();
+    assertThatThrownBy(() -> delivery.get(10, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(CancellationException.class);
+    verify(subscriber, never()).onNext(any());
+  }
+
+  @Test
+  void givesUpWithoutDemand() throws Exception {
+    subscribe(new BlockingFactPublisher(store, req, Duration.ofMillis(50)));
+    CompletableFuture<Void> delivery = CompletableFuture.runAsync(() -> observer.onNext(fact));
+
+    assertThatThrownBy(() -> delivery.get(10, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(CancellationException.class);
+    verify(subscription).close();
+    verify(subscriber).onError(any(TimeoutException.class));
+    verify(subscriber, never()).onNext(any());
+
+    // the store's subsequent error is not passed on
+    observer.onError(new IllegalStateException());
+    verify(subscriber, times(1)).onError(any());
+  }
+
+  @Test
+  void rejectsNonPositiveRequests() throws Exception {
+    subscribe();
+
+    rs.request(0);
+
+    verify(subscriber).onError(any(IllegalArgumentException.class));
+    verify(subscription).close();
+  }
+
+  @Test
+  void unboundedDemandDoesNotOverflow() {
+    subscribe();
+    rs.request(Long.MAX_VALUE);
+    rs.request(Long.MAX_VALUE);
+
+    observer.onNext(fact);
+    observer.onNext(fact);
+
+    verify(subscriber, times(2)).onNext(fact);
+  }
+
+  @Test
+  void signalsTerminationOnce() {
+    subscribe();
+
+    observer.onComplete();
+    observer.onError(new IllegalStateException());
+
+    verify(subscriber).onComplete();
+    verify(subscriber, never()).onError(any());
+  }
+
+  @Test
+  void signalsFailingSubscribe() {
+    IllegalStateException e = new IllegalStateException();
+    when(store.subscribe(any(), any())).thenThrow(e);
+
+    new BlockingFactPublisher(store, req).subscribe(subscriber);
+
+    verify(subscriber).onError(e);
+  }
+}
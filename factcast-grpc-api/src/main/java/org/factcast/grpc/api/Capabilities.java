@@ -17,7 +17,9 @@
 
 public enum Capabilities {
   FACTCAST_IMPL_VERSION,
-  CODECS;
+  CODECS,
+  /** max serialized size of a batch of facts, the server is willing to produce */
+  MAX_BATCH_BYTES;
 
   @Override
   public String toString() {
@@ -22,9 +22,29 @@ public class Headers {
 
   private static final String GRPC_CATCHUP_BATCHSIZE = "fc-cbat";
 
+  private static final String GRPC_CATCHUP_BATCH_BYTES = "fc-cbatb";
+
+  private static final String GRPC_CLIENT_FLOW_CONTROL = "fc-flowctl";
+
+  private static final String GRPC_STRUCTURED_FACTS = "fc-sfacts";
+
   public static final Metadata.Key<String> MESSAGE_COMPRESSION =
       Metadata.Key.of(Headers.GRPC_COMPRESSION_HEADER, Metadata.ASCII_STRING_MARSHALLER);
 
   public static final Metadata.Key<String> CATCHUP_BATCHSIZE =
       Metadata.Key.of(Headers.GRPC_CATCHUP_BATCHSIZE, Metadata.ASCII_STRING_MARSHALLER);
+
+  /**
+   * max serialized size of a batch, limited by the server's {@link Capabilities#MAX_BATCH_BYTES}
+   */
+  public static final Metadata.Key<String> CATCHUP_BATCH_BYTES =
+      Metadata.Key.of(Headers.GRPC_CATCHUP_BATCH_BYTES, Metadata.ASCII_STRING_MARSHALLER);
+
+  /** set by clients that want to receive facts with a structured header (protocol version 1.4) */
+  public static final Metadata.Key<String> STRUCTURED_FACTS =
+      Metadata.Key.of(Headers.GRPC_STRUCTURED_FACTS, Metadata.ASCII_STRING_MARSHALLER);
+
+  /** set by clients that only request notifications as fast as they can process them */
+  public static final Metadata.Key<String> CLIENT_FLOW_CONTROL =
+      Metadata.Key.of(Headers.GRPC_CLIENT_FLOW_CONTROL, Metadata.ASCII_STRING_MARSHALLER);
 }
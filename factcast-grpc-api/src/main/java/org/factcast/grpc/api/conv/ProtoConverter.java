@@ -71,6 +71,19 @@ public MSG_Notification createNotificationFor(List<Fact> stagedFacts) {
     return builder.build();
   }
 
+  @NonNull
+  public MSG_Notification createNotificationFor(@NonNull MSG_Fact fact) {
+    return MSG_Notification.newBuilder().setType(MSG_Notification.Type.Fact).setFact(fact).build();
+  }
+
+  @NonNull
+  public MSG_Notification createNotificationFor(@NonNull MSG_Facts facts) {
+    return MSG_Notification.newBuilder()
+        .setType(MSG_Notification.Type.Facts)
+        .setFacts(facts)
+        .build();
+  }
+
   @NonNull
   public MSG_Notification createNotificationFor(@NonNull UUID id) {
     MSG_Notification.Builder builder =
@@ -123,9 +136,36 @@ public IdAndVersion fromProto(MSG_UUID_AND_VERSION request) {
   }
 
   public Fact fromProto(MSG_Fact protoFact) {
+    if (protoFact.hasStructuredHeader()) {
+      return Fact.of(protoFact.getHeader(), protoFact.getBinaryPayload().toStringUtf8());
+    }
     return Fact.of(protoFact.getHeader(), protoFact.getPayload());
   }
 
+  /**
+   * Adds the attributes needed for dispatching (id, ns, type, version and aggIds) as a structured
+   * message, and the payload as bytes, so that the receiver only needs to parse the JSON header if
+   * it accesses further attributes like meta-data. The JSON header is sent as is, so that the
+   * sender does not need to parse it either, and no attributes are lost. Only understood by clients
+   * since protocol version 1.4.
+   */
+  @NonNull
+  public MSG_Fact toStructuredProto(@NonNull Fact f) {
+    MSG_FactHeader.Builder h =
+        MSG_FactHeader.newBuilder().setId(toProto(f.id())).setNs(f.ns()).setVersion(f.version());
+    if (f.type() != null) {
+      h.setType(f.type());
+    }
+    for (UUID aggId : f.aggIds()) {
+      h.addAggIds(toProto(aggId));
+    }
+    return MSG_Fact.newBuilder()
+        .setHeader(f.jsonHeader())
+        .setStructuredHeader(h)
+        .setBinaryPayload(ByteString.copyFromUtf8(f.jsonPayload()))
+        .build();
+  }
+
   @NonNull
   public MSG_Fact toProto(@NonNull Fact factMark) {
     MSG_Fact.Builder proto = MSG_Fact.newBuilder();
@@ -201,6 +201,82 @@ void testCreateNotificationForList() {
     assertEquals(probe2.ns(), uut.fromProto(n.getFacts().getFact(1)).ns());
   }
 
+  @Test
+  void testStructuredFactRoundtrip() {
+    UUID aggId1 = UUID.randomUUID();
+    UUID aggId2 = UUID.randomUUID();
+    Fact probe =
+        Fact.builder()
+            .ns("ns")
+            .type("type")
+            .version(3)
+            .aggId(aggId1)
+            .aggId(aggId2)
+            .meta("_ser", "42")
+            .meta("foo", "bar")
+            .build("{\"a\":\"\u00e4\u00f6\u00fc\"}");
+
+    MSG_Fact proto = uut.toStructuredProto(probe);
+    assertEquals(probe.jsonHeader(), proto.getHeader());
+    assertTrue(proto.getPayload().isEmpty());
+
+    Fact copy = uut.fromProto(proto);
+    assertEquals(probe.id(), copy.id());
+    assertEquals("ns", copy.ns());
+    assertEquals("type", copy.type());
+    assertEquals(3, copy.version());
+    assertEquals(Sets.newHashSet(aggId1, aggId2), copy.aggIds());
+    assertEquals(42, copy.serial());
+    assertEquals("bar", copy.meta("foo"));
+    assertEquals(probe.jsonPayload(), copy.jsonPayload());
+    assertEquals(probe.header().meta(), copy.header().meta());
+  }
+
+  @Test
+  void testStructuredFactKeepsHeaderAsIs() {
+    String header =
+        "{\"id\":\""
+            + UUID.randomUUID()
+            + "\",\"ns\":\"ns\",\"type\":\"type\",\"custom\":{\"x\":1},\"meta\":{\"_ser\":\"7\"}}";
+    Fact probe = Fact.of(header, "{}");
+
+    MSG_Fact proto = uut.toStructuredProto(probe);
+
+    assertEquals(header, proto.getHeader());
+    assertEquals("type", proto.getStructuredHeader().getType());
+    assertEquals(header, uut.fromProto(proto).jsonHeader());
+  }
+
+  @Test
+  void testStructuredFactWithoutType() {
+    Fact probe = Fact.builder().ns("ns").buildWithoutPayload();
+
+    Fact copy = uut.fromProto(uut.toStructuredProto(probe));
+
+    assertNull(copy.type());
+    assertTrue(copy.aggIds().isEmpty());
+    assertEquals("{}", copy.jsonPayload());
+  }
+
+  @Test
+  void testCreateNotificationForProtoFact() {
+    TestFact probe = new TestFact().ns("123");
+    MSG_Notification n = uut.createNotificationFor(uut.toProto((Fact) probe));
+    assertEquals(Type.Fact, n.getType());
+    assertEquals(probe.ns(), uut.fromProto(n.getFact()).ns());
+  }
+
+  @Test
+  void testCreateNotificationForFacts() {
+    TestFact probe1 = new TestFact().ns("123");
+    TestFact probe2 = new TestFact().ns("456");
+    MSG_Notification n = uut.createNotificationFor(uut.toProto(Lists.newArrayList(probe1, probe2)));
+    assertNotNull(n);
+    assertEquals(Type.Facts, n.getType());
+    assertEquals(probe1.ns(), uut.fromProto(n.getFacts().getFact(0)).ns());
+    assertEquals(probe2.ns(), uut.fromProto(n.getFacts().getFact(1)).ns());
+  }
+
   @Test
   void testCreateNotificationForUUID() {
     UUID probe = UUID.randomUUID();
@@ -25,8 +25,11 @@
  * StreamObserver impl that blocks if the Stream to the consumer is not in writeable state to
  * provide a basic backpressure alike property.
  *
- * <p>Note it the consumer stream is not writeable, the {@link BlockingStreamObserver} will retry
- * RETRY_COUNT (default 60) times after WAIT_TIME (default 1000) millis
+ * <p>Note it the consumer stream is not writeable, the {@link BlockingStreamObserver} will wait for
+ * it to become ready again for up to maxWaitInMillis (default RETRY_COUNT times WAIT_TIME millis,
+ * i.e. one minute). Consumers that use flow control on their own are given more time, as they
+ * legitimately pause. In either case, a consumer that does not come back in time fails the
+ * subscription with a {@link TransportLayerException}, so that it cannot hold a thread forever.
  *
  * @param <T>
  * @author <uwe.schaefer@prisma-capacity.eu>
@@ -44,9 +47,18 @@
 
   private final String id;
 
+  /** how long to wait for the consumer to become ready, before giving up */
+  private final long maxWaitInMillis;
+
   BlockingStreamObserver(@NonNull String id, @NonNull ServerCallStreamObserver<T> delegate) {
+    this(id, delegate, (long) RETRY_COUNT * WAIT_TIME);
+  }
+
+  BlockingStreamObserver(
+      @NonNull String id, @NonNull ServerCallStreamObserver<T> delegate, long maxWaitInMillis) {
     this.id = id;
     this.delegate = delegate;
+    this.maxWaitInMillis = maxWaitInMillis;
     this.delegate.setOnReadyHandler(this::wakeup);
     this.delegate.setOnCancelHandler(this::wakeup);
   }
@@ -59,28 +71,28 @@ void wakeup() {
     }
   }
 
+  /** @return true, if onNext would not block, because the consumer is ready or has cancelled */
+  boolean isReady() {
+    return delegate.isReady() || delegate.isCancelled();
+  }
+
   @Override
   public void onNext(T value) {
     if (!delegate.isCancelled()) {
       synchronized (lock) {
         if (!delegate.isReady()) {
-          for (int i = 1; i <= RETRY_COUNT; i++) {
-            log.trace("{} channel not ready. Slow client? Attempt: {}/{}", id, i, RETRY_COUNT);
+          long deadline = System.currentTimeMillis() + maxWaitInMillis;
+          for (int i = 1; !delegate.isReady() && !delegate.isCancelled(); i++) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+              throw new TransportLayerException("channel not coming back.");
+            }
+            log.trace("{} channel not ready. Slow client? Attempt: {}", id, i);
             try {
-              lock.wait(WAIT_TIME);
+              lock.wait(Math.min(remaining, WAIT_TIME));
             } catch (InterruptedException meh) {
               // ignore
             }
-            if (delegate.isReady()) {
-              break;
-            }
-            if (delegate.isCancelled()) {
-              // channel was cancelled.
-              break;
-            }
-          }
-          if (!delegate.isReady() && !delegate.isCancelled()) {
-            throw new TransportLayerException("channel not coming back.");
           }
         }
         if (!delegate.isCancelled()) delegate.onNext(value);
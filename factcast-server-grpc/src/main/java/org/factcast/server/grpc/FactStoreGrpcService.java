@@ -20,6 +20,7 @@
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.Bucket4j;
@@ -36,9 +37,13 @@
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -65,6 +70,7 @@
 import org.factcast.grpc.api.gen.RemoteFactStoreGrpc.RemoteFactStoreImplBase;
 import org.factcast.server.grpc.auth.FactCastAuthority;
 import org.factcast.server.grpc.auth.FactCastUser;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -80,9 +86,9 @@
 @RequiredArgsConstructor
 @GrpcService
 @SuppressWarnings("all")
-public class FactStoreGrpcService extends RemoteFactStoreImplBase {
+public class FactStoreGrpcService extends RemoteFactStoreImplBase implements DisposableBean {
 
-  static final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.of(1, 1, 0);
+  static final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.of(1, 4, 0);
 
   static final AtomicLong subscriptionIdStore = new AtomicLong();
 
@@ -95,11 +101,26 @@ public class FactStoreGrpcService extends RemoteFactStoreImplBase {
 
   final ProtoConverter converter = new ProtoConverter();
 
+  /** flushes batches of facts after catchup, once no more facts came in */
+  @Getter(AccessLevel.PACKAGE)
+  final ScheduledExecutorService followFlushScheduler =
+      Executors.newScheduledThreadPool(
+          Runtime.getRuntime().availableProcessors(),
+          new ThreadFactoryBuilder()
+              .setNameFormat("factcast-follow-flush-%d")
+              .setDaemon(true)
+              .build());
+
   @VisibleForTesting
   protected FactStoreGrpcService(FactStore store, GrpcRequestMetadata grpcRequestMetadata) {
     this(store, grpcRequestMetadata, new GrpcLimitProperties());
   }
 
+  @Override
+  public void destroy() {
+    followFlushScheduler.shutdownNow();
+  }
+
   @Override
   @Secured(FactCastAuthority.AUTHENTICATED)
   public void publish(@NonNull MSG_Facts request, StreamObserver<MSG_Empty> responseObserver) {
@@ -144,14 +165,25 @@ public void subscribe(
 
         resetDebugInfo(req);
         BlockingStreamObserver<MSG_Notification> resp =
-            new BlockingStreamObserver<>(
-                req.toString(), (ServerCallStreamObserver) responseObserver);
+            grpcRequestMetadata.clientFlowControl()
+                ? new BlockingStreamObserver<>(
+                    req.toString(),
+                    (ServerCallStreamObserver) responseObserver,
+                    grpcLimitProperties.maxWaitForFlowControlledClientInMillis())
+                : new BlockingStreamObserver<>(
+                    req.toString(), (ServerCallStreamObserver) responseObserver);
 
         Subscription sub =
             store.subscribe(
                 req,
                 new GrpcObserverAdapter(
-                    req.toString(), resp, grpcRequestMetadata.catchupBatch().orElse(1)));
+                    req.toString(),
+                    resp,
+                    grpcRequestMetadata.catchupBatch().orElse(1),
+                    batchSizeInBytes(),
+                    grpcRequestMetadata.structuredFacts(),
+                    followFlushScheduler,
+                    grpcLimitProperties.followBatchWindowInMillis()));
 
         ((ServerCallStreamObserver<MSG_Notification>) responseObserver)
             .setOnCancelHandler(
@@ -173,6 +205,13 @@ public void subscribe(
     }
   }
 
+  /** what the client asked for, but never more than configured */
+  @VisibleForTesting
+  long batchSizeInBytes() {
+    long max = grpcLimitProperties.maxBatchSizeInBytes();
+    return Math.min(grpcRequestMetadata.catchupBatchBytes().orElse(max), max);
+  }
+
   private final LoadingCache<String, Bucket> subscriptionTrail =
       CacheBuilder.newBuilder()
           .maximumSize(100000)
@@ -261,6 +300,9 @@ private Map<String, String> collectProperties() {
     HashMap<String, String> properties = new HashMap<>();
     retrieveImplementationVersion(properties);
     properties.put(Capabilities.CODECS.toString(), codecs.available());
+    properties.put(
+        Capabilities.MAX_BATCH_BYTES.toString(),
+        String.valueOf(grpcLimitProperties.maxBatchSizeInBytes()));
     log.info("handshake properties: {} ", properties);
     return properties;
   }
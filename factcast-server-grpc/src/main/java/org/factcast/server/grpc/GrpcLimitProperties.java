@@ -34,6 +34,25 @@ public class GrpcLimitProperties {
 
   private boolean disabled = false;
 
+  /**
+   * facts arriving after catchup within this time of the last message are batched, rather than sent
+   * one by one. Only applies to clients that requested batches (catchup-batchsize > 1). 0 disables
+   * batching after catchup.
+   */
+  private long followBatchWindowInMillis = 5;
+
+  /**
+   * upper bound for the serialized size of a batch of facts, offered to clients during handshake.
+   * Defaults to 3MiB, which is well below GRPC's default max message size of 4MiB.
+   */
+  private long maxBatchSizeInBytes = 3 * 1024 * 1024;
+
+  /**
+   * how long to wait for a client using flow control to request further messages, before its
+   * subscription is failed. Defaults to 10 minutes.
+   */
+  private long maxWaitForFlowControlledClientInMillis = 10 * 60 * 1000;
+
   // Spring needs classic setters
   public void setInitialNumberOfFollowRequestsAllowedPerClient(
       int initialNumberOfFollowRequestsAllowedPerClient) {
@@ -62,4 +81,17 @@ public void setNumberOfCatchupRequestsAllowedPerClientPerMinute(
   public void setDisabled(boolean disabled) {
     this.disabled = disabled;
   }
+
+  public void setFollowBatchWindowInMillis(long followBatchWindowInMillis) {
+    this.followBatchWindowInMillis = followBatchWindowInMillis;
+  }
+
+  public void setMaxBatchSizeInBytes(long maxBatchSizeInBytes) {
+    this.maxBatchSizeInBytes = maxBatchSizeInBytes;
+  }
+
+  public void setMaxWaitForFlowControlledClientInMillis(
+      long maxWaitForFlowControlledClientInMillis) {
+    this.maxWaitForFlowControlledClientInMillis = maxWaitForFlowControlledClientInMillis;
+  }
 }
@@ -18,22 +18,33 @@
 import com.google.common.annotations.VisibleForTesting;
 import io.grpc.stub.StreamObserver;
 import java.util.ArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.factcast.core.Fact;
 import org.factcast.core.subscription.observer.FactObserver;
 import org.factcast.grpc.api.conv.ProtoConverter;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Fact;
+import org.factcast.grpc.api.gen.FactStoreProto.MSG_Facts;
 import org.factcast.grpc.api.gen.FactStoreProto.MSG_Notification;
 
 /**
  * FactObserver implementation, that translates observer Events to transport layer messages.
  *
+ * <p>During catchup, facts are sent in batches of catchupBatchSize. If the client also negotiated
+ * batchSizeInBytes, a batch is sent before its serialized facts would exceed that size, so that
+ * batches of large facts stay below the max message size. After catchup, facts are sent immediately
+ * as long as they come in one by one. If they arrive within followBatchWindow of the last message
+ * though, they are batched (with the same limits) until the window has passed, so that a burst of
+ * facts does not end up in a message (and a flush) per fact.
+ *
  * @author <uwe.schaefer@prisma-capacity.eu>
  */
 @Slf4j
-@RequiredArgsConstructor
 class GrpcObserverAdapter implements FactObserver {
 
   private final ProtoConverter converter = new ProtoConverter();
@@ -43,22 +54,72 @@ class GrpcObserverAdapter implements FactObserver {
   @NonNull private final StreamObserver<MSG_Notification> observer;
   @NonNull private final int catchupBatchSize;
 
+  /** 0 if batches are not limited by size */
+  private final long batchSizeInBytes;
+
+  /** if true, facts are sent with a structured header rather than as JSON */
+  private final boolean structuredFacts;
+
   @VisibleForTesting
   GrpcObserverAdapter(String id, StreamObserver<MSG_Notification> observer) {
     this(id, observer, 1);
   }
 
-  private final ArrayList<Fact> stagedFacts;
+  /**
+   * guards staging and sending, so that messages keep their order. The subscription's thread may
+   * block on it while the consumer is slow, so the followFlushScheduler only ever tries to acquire
+   * it.
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /** guarded by lock */
+  private final ArrayList<MSG_Fact> stagedFacts;
+
+  /** serialized size of stagedFacts, guarded by lock */
+  private long stagedBytes;
+
   private final AtomicBoolean caughtUp = new AtomicBoolean(false);
 
+  /** null if facts are not batched after catchup */
+  private final ScheduledExecutorService followFlushScheduler;
+
+  private final long followBatchWindowInNanos;
+
+  /** guarded by lock */
+  private long lastSent;
+
+  /** guarded by lock */
+  private ScheduledFuture<?> scheduledFlush;
+
   public GrpcObserverAdapter(
       @NonNull String id,
       @NonNull StreamObserver<MSG_Notification> observer,
       @NonNull int catchupBatchSize) {
+    this(id, observer, catchupBatchSize, 0, false, null, 0);
+  }
+
+  public GrpcObserverAdapter(
+      @NonNull String id,
+      @NonNull StreamObserver<MSG_Notification> observer,
+      @NonNull int catchupBatchSize,
+      long batchSizeInBytes,
+      boolean structuredFacts,
+      ScheduledExecutorService followFlushScheduler,
+      long followBatchWindowInMillis) {
     this.id = id;
     this.observer = observer;
     this.catchupBatchSize = catchupBatchSize;
+    this.batchSizeInBytes = Math.max(0, batchSizeInBytes);
+    this.structuredFacts = structuredFacts;
     stagedFacts = new ArrayList<>(catchupBatchSize);
+    if (catchupBatchSize > 1 && followFlushScheduler != null && followBatchWindowInMillis > 0) {
+      this.followFlushScheduler = followFlushScheduler;
+      followBatchWindowInNanos = TimeUnit.MILLISECONDS.toNanos(followBatchWindowInMillis);
+      lastSent = System.nanoTime() - followBatchWindowInNanos;
+    } else {
+      this.followFlushScheduler = null;
+      followBatchWindowInNanos = 0;
+    }
   }
 
   @Override
@@ -94,23 +155,124 @@ public void onCatchup() {
   }
 
   private void flush() {
-    // yes, it is threadsafe
-    if (!stagedFacts.isEmpty()) {
-      log.trace("{} flushing batch of {} facts", id, stagedFacts.size());
-      observer.onNext(converter.createNotificationFor(stagedFacts));
-      stagedFacts.clear();
+    lock.lock();
+    try {
+      if (scheduledFlush != null) {
+        scheduledFlush.cancel(false);
+        scheduledFlush = null;
+      }
+      if (!stagedFacts.isEmpty()) {
+        log.trace("{} flushing batch of {} facts", id, stagedFacts.size());
+        MSG_Notification batch =
+            converter.createNotificationFor(MSG_Facts.newBuilder().addAllFact(stagedFacts).build());
+        // cleared before sending, so that a broken stream does not leave the facts to be retried
+        stagedFacts.clear();
+        stagedBytes = 0;
+        lastSent = System.nanoTime();
+        observer.onNext(batch);
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
   public void onNext(Fact element) {
     if (catchupBatchSize > 1 && !caughtUp.get()) {
-      if (stagedFacts.size() >= catchupBatchSize) {
-        flush();
+      lock.lock();
+      try {
+        stage(element);
+      } finally {
+        lock.unlock();
       }
-      stagedFacts.add(element);
+    } else if (followFlushScheduler != null) {
+      onNextAfterCatchup(element);
     } else {
-      observer.onNext(converter.createNotificationFor(element));
+      observer.onNext(converter.createNotificationFor(toProto(element)));
     }
   }
+
+  private void onNextAfterCatchup(Fact element) {
+    lock.lock();
+    try {
+      long now = System.nanoTime();
+      if (stagedFacts.isEmpty() && now - lastSent >= followBatchWindowInNanos) {
+        // idle, no reason to wait for more
+        observer.onNext(converter.createNotificationFor(toProto(element)));
+        lastSent = now;
+      } else {
+        stage(element);
+        if (isFull()) {
+          flush();
+        } else if (scheduledFlush == null) {
+          scheduledFlush =
+              followFlushScheduler.schedule(
+                  this::flushScheduled, followBatchWindowInNanos, TimeUnit.NANOSECONDS);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** needs to be called while holding the lock */
+  private void stage(Fact element) {
+    MSG_Fact f = toProto(element);
+    int size = f.getSerializedSize();
+    boolean wouldOverflow = batchSizeInBytes > 0 && stagedBytes + size > batchSizeInBytes;
+    if (!stagedFacts.isEmpty() && (isFull() || wouldOverflow)) {
+      flush();
+    }
+    stagedFacts.add(f);
+    stagedBytes += size;
+  }
+
+  private MSG_Fact toProto(Fact f) {
+    return structuredFacts ? converter.toStructuredProto(f) : converter.toProto(f);
+  }
+
+  private boolean isFull() {
+    return stagedFacts.size() >= catchupBatchSize
+        || (batchSizeInBytes > 0 && stagedBytes >= batchSizeInBytes);
+  }
+
+  /**
+   * runs on the shared followFlushScheduler, so it must not block: if the subscription's thread is
+   * busy sending or the consumer is not ready, the flush is retried later, unless the
+   * subscription's next fact flushes the batch in the meantime.
+   */
+  private void flushScheduled() {
+    try {
+      if (!lock.tryLock()) {
+        log.trace("{} subscription busy, postponing flush", id);
+        // cannot touch scheduledFlush without the lock, and need not, as it is only used to cancel
+        followFlushScheduler.schedule(
+            this::flushScheduled, followBatchWindowInNanos, TimeUnit.NANOSECONDS);
+        return;
+      }
+      try {
+        if (stagedFacts.isEmpty()) {
+          return;
+        }
+        if (!isReady()) {
+          log.trace("{} consumer not ready, postponing flush", id);
+          scheduledFlush =
+              followFlushScheduler.schedule(
+                  this::flushScheduled, followBatchWindowInNanos, TimeUnit.NANOSECONDS);
+          return;
+        }
+        flush();
+      } finally {
+        lock.unlock();
+      }
+    } catch (Throwable e) {
+      // the subscription will learn about a broken stream on its next write
+      log.debug("{} scheduled flush failed: {}", id, e.getMessage());
+    }
+  }
+
+  private boolean isReady() {
+    return !(observer instanceof BlockingStreamObserver)
+        || ((BlockingStreamObserver<MSG_Notification>) observer).isReady();
+  }
 }
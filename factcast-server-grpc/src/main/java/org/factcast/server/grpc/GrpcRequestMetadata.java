@@ -18,6 +18,7 @@
 import io.grpc.Metadata;
 import java.util.Objects;
 import java.util.OptionalInt;
+import java.util.OptionalLong;
 import java.util.stream.Stream;
 import lombok.Data;
 import org.factcast.grpc.api.Headers;
@@ -32,4 +33,19 @@ OptionalInt catchupBatch() {
         .mapToInt(Integer::parseInt)
         .findFirst();
   }
+
+  OptionalLong catchupBatchBytes() {
+    return Stream.of(headers.get(Headers.CATCHUP_BATCH_BYTES))
+        .filter(Objects::nonNull)
+        .mapToLong(Long::parseLong)
+        .findFirst();
+  }
+
+  boolean structuredFacts() {
+    return Boolean.parseBoolean(headers.get(Headers.STRUCTURED_FACTS));
+  }
+
+  boolean clientFlowControl() {
+    return Boolean.parseBoolean(headers.get(Headers.CLIENT_FLOW_CONTROL));
+  }
 }
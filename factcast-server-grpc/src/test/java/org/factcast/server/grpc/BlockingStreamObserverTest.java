@@ -22,6 +22,8 @@
 import io.grpc.stub.ServerCallStreamObserver;
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.val;
 import org.junit.jupiter.api.*;
@@ -99,6 +101,37 @@ void testOnNextNotReadyThenCancelled() throws Exception {
     verify(delegate, never()).onNext(any());
   }
 
+  @Test
+  void testOnNextWaitsForFlowControlledConsumer() throws Exception {
+    uut = new BlockingStreamObserver<>("foo", delegate, 600_000);
+    AtomicBoolean ready = new AtomicBoolean(false);
+    when(delegate.isReady()).thenAnswer(i -> ready.get());
+    CompletableFuture<Void> onNextCall = CompletableFuture.runAsync(() -> uut.onNext(new Object()));
+    // well beyond RETRY_COUNT wakeups without the consumer being ready
+    for (int i = 0; i < 120; i++) {
+      Thread.sleep(1);
+      uut.wakeup();
+    }
+    Thread.sleep(30);
+    assertFalse(onNextCall.isDone());
+    ready.set(true);
+    uut.wakeup();
+    onNextCall.get(1, TimeUnit.SECONDS);
+    verify(delegate).onNext(any());
+  }
+
+  @Test
+  void testOnNextGivesUpOnFlowControlledConsumerEventually() throws Exception {
+    uut = new BlockingStreamObserver<>("foo", delegate, 50);
+    when(delegate.isReady()).thenReturn(false);
+    CompletableFuture<Void> onNextCall = CompletableFuture.runAsync(() -> uut.onNext(new Object()));
+
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> onNextCall.get(10, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof TransportLayerException);
+    verify(delegate, never()).onNext(any());
+  }
+
   public static void expectNPE(Runnable r) {
     expect(r, NullPointerException.class, IllegalArgumentException.class);
   }
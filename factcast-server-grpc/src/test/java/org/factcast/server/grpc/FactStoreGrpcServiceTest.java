@@ -477,6 +477,34 @@ public void testHandshake() {
     verify(so).onNext(any(MSG_ServerConfig.class));
   }
 
+  @Test
+  public void testHandshakeOffersMaxBatchBytes() {
+    StreamObserver<MSG_ServerConfig> so = mock(StreamObserver.class);
+    ArgumentCaptor<MSG_ServerConfig> cfg = ArgumentCaptor.forClass(MSG_ServerConfig.class);
+    uut.handshake(conv.empty(), so);
+
+    verify(so).onNext(cfg.capture());
+    assertEquals(
+        String.valueOf(new GrpcLimitProperties().maxBatchSizeInBytes()),
+        conv.fromProto(cfg.getValue()).properties().get(Capabilities.MAX_BATCH_BYTES.toString()));
+  }
+
+  @Test
+  public void testBatchSizeInBytesLimitedByServer() {
+    GrpcLimitProperties props = new GrpcLimitProperties();
+    props.setMaxBatchSizeInBytes(1000);
+    uut = new FactStoreGrpcService(backend, meta, props);
+
+    when(meta.catchupBatchBytes()).thenReturn(OptionalLong.empty());
+    assertEquals(1000, uut.batchSizeInBytes());
+
+    when(meta.catchupBatchBytes()).thenReturn(OptionalLong.of(500));
+    assertEquals(500, uut.batchSizeInBytes());
+
+    when(meta.catchupBatchBytes()).thenReturn(OptionalLong.of(5000));
+    assertEquals(1000, uut.batchSizeInBytes());
+  }
+
   @Test
   public void testRetrieveImplementationVersion() {
     uut = spy(uut);
@@ -878,4 +906,11 @@ void setSnapshotWithException() {
     verify(backend).setSnapshot(snap);
     verify(obs).onError(any(TestException.class));
   }
+
+  @Test
+  void destroyShutsDownFollowFlushScheduler() {
+    uut.destroy();
+
+    assertTrue(uut.followFlushScheduler().isShutdown());
+  }
 }
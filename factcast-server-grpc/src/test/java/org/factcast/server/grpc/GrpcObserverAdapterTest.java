@@ -19,8 +19,15 @@
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import com.google.common.base.Strings;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import lombok.val;
 import org.factcast.core.Fact;
@@ -41,6 +48,8 @@ public class GrpcObserverAdapterTest {
 
   @Mock private Function<Fact, MSG_Notification> projection;
 
+  @Mock private ScheduledExecutorService scheduler;
+
   @Captor private ArgumentCaptor<MSG_Notification> msg;
 
   @Test
@@ -89,6 +98,227 @@ void testOnNext() {
     assertEquals(f.id(), conv.fromProto(msg.getValue().getFact()).id());
   }
 
+  @Test
+  void testOnNextAfterCatchupSendsImmediatelyWhenIdle() {
+    GrpcObserverAdapter uut =
+        new GrpcObserverAdapter("foo", observer, 10, 0, false, scheduler, 1000);
+    doNothing().when(observer).onNext(msg.capture());
+    uut.onCatchup();
+
+    uut.onNext(Fact.builder().ns("test").build("{}"));
+
+    verify(observer, times(2)).onNext(any());
+    assertEquals(MSG_Notification.Type.Fact, msg.getValue().getType());
+    verifyNoInteractions(scheduler);
+  }
+
+  @Test
+  void testOnNextAfterCatchupBatchesBurst() {
+    ProtoConverter conv = new ProtoConverter();
+    GrpcObserverAdapter uut =
+        new GrpcObserverAdapter("foo", observer, 10, 0, false, scheduler, 1000);
+    doNothing().when(observer).onNext(msg.capture());
+    ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass(Runnable.class);
+    doReturn(mock(ScheduledFuture.class))
+        .when(scheduler)
+        .schedule(flush.capture(), anyLong(), any());
+    uut.onCatchup();
+    uut.onNext(Fact.builder().ns("test").build("{}"));
+
+    Fact f1 = Fact.builder().ns("test").build("{}");
+    Fact f2 = Fact.builder().ns("test").build("{}");
+    uut.onNext(f1);
+    uut.onNext(f2);
+
+    // catchup and the first fact
+    verify(observer, times(2)).onNext(any());
+    verify(scheduler, times(1)).schedule(any(Runnable.class), anyLong(), any());
+
+    flush.getValue().run();
+
+    verify(observer, times(3)).onNext(any());
+    assertEquals(MSG_Notification.Type.Facts, msg.getValue().getType());
+    val facts = conv.fromProto(msg.getValue().getFacts());
+    assertEquals(2, facts.size());
+    assertEquals(f1.id(), facts.get(0).id());
+    assertEquals(f2.id(), facts.get(1).id());
+  }
+
+  @Test
+  void testScheduledFlushIsPostponedWhileConsumerIsNotReady() {
+    ServerCallStreamObserver<MSG_Notification> call = mock(ServerCallStreamObserver.class);
+    BlockingStreamObserver<MSG_Notification> blocking =
+        spy(new BlockingStreamObserver<>("foo", call));
+    GrpcObserverAdapter uut =
+        new GrpcObserverAdapter("foo", blocking, 10, 0, false, scheduler, 1000);
+    when(call.isReady()).thenReturn(true);
+    ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass(Runnable.class);
+    doReturn(mock(ScheduledFuture.class))
+        .when(scheduler)
+        .schedule(flush.capture(), anyLong(), any());
+    uut.onCatchup();
+    uut.onNext(Fact.builder().ns("test").build("{}"));
+    uut.onNext(Fact.builder().ns("test").build("{}"));
+
+    when(call.isReady()).thenReturn(false);
+    flush.getValue().run();
+
+    // not sent, but retried later
+    verify(blocking, times(2)).onNext(any());
+    verify(scheduler, times(2)).schedule(any(Runnable.class), anyLong(), any());
+
+    when(call.isReady()).thenReturn(true);
+    flush.getValue().run();
+
+    verify(blocking, times(3)).onNext(any());
+    verify(call, times(3)).onNext(any());
+  }
+
+  @Test
+  void testScheduledFlushDoesNotWaitForSendingSubscription() throws Exception {
+    GrpcObserverAdapter uut =
+        new GrpcObserverAdapter("foo", observer, 2, 0, false, scheduler, 1000);
+    ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass(Runnable.class);
+    doReturn(mock(ScheduledFuture.class))
+        .when(scheduler)
+        .schedule(flush.capture(), anyLong(), any());
+    uut.onCatchup();
+    uut.onNext(Fact.builder().ns("test").build("{}"));
+    uut.onNext(Fact.builder().ns("test").build("{}"));
+
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(
+            i -> {
+              sending.countDown();
+              release.await();
+              return null;
+            })
+        .when(observer)
+        .onNext(any());
+    // fills the batch, so that the subscription's thread blocks sending it
+    CompletableFuture<Void> subscription =
+        CompletableFuture.runAsync(() -> uut.onNext(Fact.builder().ns("test").build("{}")));
+    assertTrue(sending.await(10, TimeUnit.SECONDS));
+
+    CompletableFuture.runAsync(flush.getValue()).get(10, TimeUnit.SECONDS);
+
+    // retried later instead of waiting
+    verify(scheduler, times(2)).schedule(any(Runnable.class), anyLong(), any());
+    release.countDown();
+    subscription.get(10, TimeUnit.SECONDS);
+    verify(observer, times(3)).onNext(any());
+  }
+
+  @Test
+  void testOnNextAfterCatchupFlushesFullBatch() {
+    GrpcObserverAdapter uut =
+        new GrpcObserverAdapter("foo", observer, 3, 0, false, scheduler, 1000);
+    doNothing().when(observer).onNext(msg.capture());
+    ScheduledFuture<?> scheduledFlush = mock(ScheduledFuture.class);
+    doReturn(scheduledFlush).when(scheduler).schedule(any(Runnable.class), anyLong(), any());
+    uut.onCatchup();
+    uut.onNext(Fact.builder().ns("test").build("{}"));
+
+    for (int i = 0; i < 3; i++) {
+      uut.onNext(Fact.builder().ns("test").build("{}"));
+    }
+
+    verify(observer, times(3)).onNext(any());
+    assertEquals(MSG_Notification.Type.Facts, msg.getValue().getType());
+    assertEquals(3, msg.getValue().getFacts().getFactCount());
+    verify(scheduledFlush).cancel(false);
+  }
+
+  @Test
+  void testOnCompleteFlushesBatchAfterCatchup() {
+    GrpcObserverAdapter uut =
+        new GrpcObserverAdapter("foo", observer, 10, 0, false, scheduler, 1000);
+    doNothing().when(observer).onNext(msg.capture());
+    ScheduledFuture<?> scheduledFlush = mock(ScheduledFuture.class);
+    doReturn(scheduledFlush).when(scheduler).schedule(any(Runnable.class), anyLong(), any());
+    uut.onCatchup();
+    uut.onNext(Fact.builder().ns("test").build("{}"));
+    uut.onNext(Fact.builder().ns("test").build("{}"));
+
+    uut.onComplete();
+
+    val types = msg.getAllValues().stream().map(MSG_Notification::getType).toArray();
+    assertArrayEquals(
+        new Object[] {
+          MSG_Notification.Type.Catchup,
+          MSG_Notification.Type.Fact,
+          MSG_Notification.Type.Facts,
+          MSG_Notification.Type.Complete
+        },
+        types);
+    verify(scheduledFlush).cancel(false);
+  }
+
+  @Test
+  void testNoBatchingAfterCatchupWithoutBatchSize() {
+    GrpcObserverAdapter uut =
+        new GrpcObserverAdapter("foo", observer, 1, 0, false, scheduler, 1000);
+    uut.onCatchup();
+    uut.onNext(Fact.builder().ns("test").build("{}"));
+    uut.onNext(Fact.builder().ns("test").build("{}"));
+
+    verify(observer, times(3)).onNext(any());
+    verifyNoInteractions(scheduler);
+  }
+
+  @Test
+  void testOnNextStructuredFacts() {
+    ProtoConverter conv = new ProtoConverter();
+    GrpcObserverAdapter uut = new GrpcObserverAdapter("foo", observer, 1, 0, true, null, 0);
+    doNothing().when(observer).onNext(msg.capture());
+    Fact f = Fact.builder().ns("test").build("{}");
+
+    uut.onNext(f);
+
+    assertTrue(msg.getValue().getFact().hasStructuredHeader());
+    assertEquals(f.id(), conv.fromProto(msg.getValue().getFact()).id());
+  }
+
+  @Test
+  void testCatchupBatchLimitedBySize() {
+    Fact f = Fact.builder().ns("test").build("{\"a\":\"" + Strings.repeat("x", 1000) + "\"}");
+    int size = new ProtoConverter().toProto(f).getSerializedSize();
+    // room for two facts, but not for three
+    GrpcObserverAdapter uut =
+        new GrpcObserverAdapter("foo", observer, 100, size * 3 - 1, false, null, 0);
+    doNothing().when(observer).onNext(msg.capture());
+
+    for (int i = 0; i < 5; i++) {
+      uut.onNext(Fact.builder().ns("test").build(f.jsonPayload()));
+    }
+    uut.onCatchup();
+
+    val counts =
+        msg.getAllValues().stream()
+            .filter(m -> m.getType() == MSG_Notification.Type.Facts)
+            .mapToInt(m -> m.getFacts().getFactCount())
+            .toArray();
+    assertArrayEquals(new int[] {2, 2, 1}, counts);
+  }
+
+  @Test
+  void testCatchupBatchSendsFactLargerThanLimit() {
+    GrpcObserverAdapter uut = new GrpcObserverAdapter("foo", observer, 100, 10, false, null, 0);
+    doNothing().when(observer).onNext(msg.capture());
+
+    uut.onNext(Fact.builder().ns("test").build("{}"));
+    uut.onNext(Fact.builder().ns("test").build("{}"));
+    uut.onCatchup();
+
+    val counts =
+        msg.getAllValues().stream()
+            .filter(m -> m.getType() == MSG_Notification.Type.Facts)
+            .mapToInt(m -> m.getFacts().getFactCount())
+            .toArray();
+    assertArrayEquals(new int[] {1, 1}, counts);
+  }
+
   public static void expectNPE(Runnable r) {
     expect(r, NullPointerException.class, IllegalArgumentException.class);
   }
@@ -22,7 +22,9 @@
  */
 public enum CatchupStrategy {
   PAGED,
-  FETCHING;
+  FETCHING,
+  KEYSET,
+  PARALLEL;
 
   @SuppressWarnings("SameReturnValue")
   public static CatchupStrategy getDefault() {
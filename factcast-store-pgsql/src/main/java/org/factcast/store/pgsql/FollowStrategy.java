@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql;
+
+/**
+ * Defines how following subscriptions learn about new facts, as well as the default, if none is
+ * specified.
+ *
+ * <p>QUERYING lets every subscription run its own query, whenever new facts have been published.
+ * SHARED reads new facts once for all following subscriptions and matches them in memory, so that
+ * the load on the database depends on the publishing rate rather than the number of subscriptions.
+ */
+public enum FollowStrategy {
+  QUERYING,
+  SHARED;
+
+  @SuppressWarnings("SameReturnValue")
+  public static FollowStrategy getDefault() {
+    return QUERYING;
+  }
+}
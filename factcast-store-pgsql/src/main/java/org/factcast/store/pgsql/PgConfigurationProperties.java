@@ -48,13 +48,107 @@
   @Autowired private ApplicationContext appContext;
 
   /**
-   * defines the number of Facts being retrieved with one Page Query for PageStrategy.PAGED, or
-   * respectively the fetchSize when using PageStrategy.FETCHING
+   * defines the number of Facts being retrieved with one Page Query for PageStrategy.PAGED and
+   * PageStrategy.KEYSET, or respectively the fetchSize when using PageStrategy.FETCHING
    */
   int pageSize = 50;
   /** Defines the Strategy used for Paging in the Catchup Phase. */
   CatchupStrategy catchupStrategy = CatchupStrategy.getDefault();
 
+  /**
+   * The maximum number of connections catchups use at the same time. Further catchups wait for a
+   * connection to be returned to the pool.
+   */
+  int catchupConnectionPoolSize = 20;
+
+  /** How long a catchup waits for a connection from the pool, before it fails. */
+  int catchupConnectionMaxWaitInMillis = 60_000;
+
+  /**
+   * If greater than 0, catchups read, transform and send facts in separate threads, with up to this
+   * many facts queued between each of them. 0 does all of it in the reading thread.
+   */
+  int catchupPipelineDepth = 0;
+
+  /**
+   * The number of catchups that run pipelined at the same time, each using two threads of a pool of
+   * twice that size. Further catchups run without a pipeline.
+   */
+  int catchupPipelineConcurrency = 16;
+
+  /** The number of chunks CatchupStrategy.PARALLEL fetches at the same time. */
+  int catchupParallelism = 4;
+
+  /** The number of serials CatchupStrategy.PARALLEL puts in one chunk. */
+  long catchupParallelChunkSize = 1_000_000;
+
+  /**
+   * The size of the facts CatchupStrategy.PARALLEL buffers per chunk, while waiting for the chunks
+   * before it to be delivered.
+   */
+  int catchupParallelBufferSizeInMegabytes = 8;
+
+  /**
+   * If greater than 0, the serials of the facts matching the specs of catchups from scratch are
+   * cached, so that further catchups of the same specs do not need to scan the fact table again.
+   * This is the maximum number of serials held (8 bytes each). Specs matching more facts are not
+   * cached.
+   */
+  long catchupCacheMaxSerials = 0;
+
+  /** How long the serials of the facts matching a list of specs are cached. */
+  int catchupCacheExpiryInMinutes = 10;
+
+  /**
+   * If set, facts are mirrored into memory-mapped segment files in this directory, so that catchups
+   * of specs constrained by namespace only read them from local disk, and only the most recent
+   * facts from the database.
+   */
+  String factSegmentCacheDirectory = null;
+
+  /** The size of one segment file of the fact segment cache, at most 2047. */
+  int factSegmentSizeInMegabytes = 64;
+
+  /**
+   * The maximum size of all segment files of the fact segment cache. If exceeded, the oldest
+   * segments are deleted, and catchups starting before the remaining ones read from the database.
+   */
+  long factSegmentCacheMaxSizeInMegabytes = 10_240;
+
+  /** The delay between two runs appending new facts to the fact segment cache. */
+  long factSegmentCacheFillDelayInMillis = 1000;
+
+  /**
+   * Defines the Strategy used to coordinate concurrent publications. EXCLUSIVE serializes all
+   * publishing transactions, CONCURRENT allows them to run in parallel while readers stop at a safe
+   * high-water mark. All nodes sharing a database must use the same strategy.
+   */
+  PublishStrategy publishStrategy = PublishStrategy.getDefault();
+
+  /** Defines the Strategy used to pass new facts to subscriptions in follow mode. */
+  FollowStrategy followStrategy = FollowStrategy.getDefault();
+
+  /**
+   * Defines the threads subscriptions are connected and caught up on. Subscriptions in follow mode
+   * run their queries on separate threads, so that they never wait for these.
+   */
+  SubscriptionExecutionStrategy subscriptionExecutionStrategy =
+      SubscriptionExecutionStrategy.getDefault();
+
+  /**
+   * The number of subscriptions connecting or catching up at the same time, when using the BOUNDED
+   * subscriptionExecutionStrategy. Queries in follow mode do not count against this limit.
+   */
+  int subscriptionExecutorPoolSize = 200;
+
+  /**
+   * If greater than 0, the fact table is range-partitioned by serial, with this number of facts per
+   * partition. An existing, unpartitioned fact table is converted on startup, which takes a while
+   * on large stores. Once partitioned, setting this back to 0 just stops creating new partitions.
+   * (Defaults to 0)
+   */
+  long partitionSize = 0;
+
   /**
    * Optional URL to a Schema Registry. If this is null, validation will be disabled and a warning
    * will be issued. (Defaults to null) Currently a String type due to the fact that "classpath:" is
@@ -129,6 +223,20 @@
    */
   int factNotificationNewConnectionWaitTimeInMillis = 100;
 
+  /**
+   * The number of threads passing notifications about inserted facts on to subscriptions, and
+   * running the delayed queries of following subscriptions. Notifications arriving while a
+   * subscription is still busy with the last one are coalesced.
+   */
+  int factNotificationDispatchThreads = 8;
+
+  /**
+   * The latest serial is kept in memory and updated from database notifications. This is the
+   * interval in which it is additionally refreshed from the database, in case a notification got
+   * lost.
+   */
+  long latestSerialRefreshRateInMillis = 5000;
+
   /**
    * If this is set to true, all process-internal caches are bypassed (unless they are essential,
    * like schemareg). That makes it possible to wipe the database between integration tests in order
@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql;
+
+/**
+ * Defines how concurrent publications are coordinated, as well as the default, if none is
+ * specified.
+ *
+ * <p>EXCLUSIVE serializes all publications using a global advisory lock. CONCURRENT lets unrelated
+ * publications run in parallel and makes readers stop at a safe high-water mark instead, so that
+ * facts are still observed in serial order.
+ *
+ * <p>Note that all nodes using the same database need to use the same strategy.
+ */
+public enum PublishStrategy {
+  EXCLUSIVE,
+  CONCURRENT;
+
+  @SuppressWarnings("SameReturnValue")
+  public static PublishStrategy getDefault() {
+    return EXCLUSIVE;
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql;
+
+/**
+ * Defines the threads subscriptions are connected and caught up on, as well as the default, if none
+ * is specified.
+ *
+ * <p>BOUNDED uses a dedicated pool of a fixed size, further subscriptions wait for a thread.
+ * Queries in follow mode run on a separate, unbounded pool, which has at most one thread per
+ * subscription in follow mode. VIRTUAL runs every subscription on its own virtual thread, so that
+ * subscriptions blocked by slow clients cost next to nothing. It needs a Java runtime supporting
+ * virtual threads, and falls back to a dedicated, unbounded pool of platform threads otherwise.
+ */
+public enum SubscriptionExecutionStrategy {
+  BOUNDED,
+  VIRTUAL;
+
+  @SuppressWarnings("SameReturnValue")
+  public static SubscriptionExecutionStrategy getDefault() {
+    return BOUNDED;
+  }
+}
@@ -15,22 +15,30 @@
  */
 package org.factcast.store.pgsql.internal;
 
-import com.google.common.eventbus.Subscribe;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
 import org.factcast.store.pgsql.internal.listen.PgListener.FactInsertionEvent;
+import org.factcast.store.pgsql.internal.listen.PgNotificationDispatcher;
 
 /**
  * Executes a given runnable if triggered, but ignores all subsequent triggers for maxDelayInMillis.
  *
+ * <p>The query runs on the given executor rather than on the threads notifications are dispatched
+ * on, so that a subscription blocked by a slow consumer only delays itself. Triggers arriving while
+ * the query is queued or running are coalesced into one more run.
+ *
  * @author uwe.schaefer@prisma-capacity.eu
  */
 @SuppressWarnings("UnstableApiUsage")
 @Slf4j
-class CondensedQueryExecutor {
+class CondensedQueryExecutor implements PgNotificationDispatcher.Listener {
 
   private final long maxDelayInMillis;
 
@@ -38,56 +46,98 @@ class CondensedQueryExecutor {
 
   private final Supplier<Boolean> connectionStateSupplier;
 
-  private Timer timer = new Timer(CondensedQueryExecutor.class.getSimpleName() + ".timer", true);
+  /** in-memory equivalent of the query, or null if every notification should trigger it */
+  private final Predicate<Fact> matcher;
+
+  /** shared by all executors, so that the number of threads does not grow with subscriptions */
+  private final ScheduledExecutorService scheduler;
+
+  /** runs the query, which might block while the consumer is slow */
+  private final Executor executor;
 
   private final AtomicBoolean currentlyScheduled = new AtomicBoolean(false);
 
+  private final AtomicBoolean runRequested = new AtomicBoolean(false);
+
+  private final AtomicBoolean running = new AtomicBoolean(false);
+
+  private volatile ScheduledFuture<?> scheduledQuery;
+
   CondensedQueryExecutor(
       long maxDelayInMillis,
       PgSynchronizedQuery target,
       Supplier<Boolean> connectionStateSupplier,
-      Timer timer) {
+      Predicate<Fact> matcher,
+      ScheduledExecutorService scheduler,
+      Executor executor) {
     this.maxDelayInMillis = maxDelayInMillis;
     this.target = target;
     this.connectionStateSupplier = connectionStateSupplier;
-    this.timer = timer;
+    this.matcher = matcher;
+    this.scheduler = scheduler;
+    this.executor = executor;
   }
 
-  public CondensedQueryExecutor(
+  CondensedQueryExecutor(
       long maxDelayInMillis,
       PgSynchronizedQuery target,
-      Supplier<Boolean> connectionStateSupplier) {
-    this.maxDelayInMillis = maxDelayInMillis;
-    this.target = target;
-    this.connectionStateSupplier = connectionStateSupplier;
+      Supplier<Boolean> connectionStateSupplier,
+      ScheduledExecutorService scheduler,
+      Executor executor) {
+    this(maxDelayInMillis, target, connectionStateSupplier, null, scheduler, executor);
   }
 
   public void trigger() {
     if (connectionStateSupplier.get()) {
       if (maxDelayInMillis < 1) {
-        runTarget();
+        requestRun();
       } else if (!currentlyScheduled.getAndSet(true)) {
-        timer.schedule(
-            new TimerTask() {
-
-              @Override
-              public void run() {
-                currentlyScheduled.set(false);
-                try {
-                  CondensedQueryExecutor.this.runTarget();
-                } catch (Throwable e) {
-                  log.error("Scheduled query failed, closing: {}", e.getMessage());
-                }
-              }
-            },
-            maxDelayInMillis);
+        scheduledQuery =
+            scheduler.schedule(
+                () -> {
+                  currentlyScheduled.set(false);
+                  requestRun();
+                },
+                maxDelayInMillis,
+                TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  /** hands the query over to the executor, unless it is queued or running already */
+  private void requestRun() {
+    runRequested.set(true);
+    if (!running.getAndSet(true)) {
+      try {
+        executor.execute(this::runRequested);
+      } catch (RuntimeException e) {
+        running.set(false);
+        log.error("Cannot run query: {}", e.getMessage());
       }
     }
   }
 
-  // called by the EventBus
-  @Subscribe
+  private void runRequested() {
+    do {
+      while (runRequested.getAndSet(false)) {
+        runTarget();
+      }
+      running.set(false);
+      // a run might have been requested after the last one
+    } while (runRequested.get() && !running.getAndSet(true));
+  }
+
+  @Override
   public void onEvent(FactInsertionEvent ev) {
+    // if the query is bounded, even a notification about facts that do not match might move the
+    // high-water mark past a matching fact committed earlier, so that none can be skipped
+    if (matcher != null
+        && !ev.facts().isEmpty()
+        && !target.bounded()
+        && ev.facts().stream().noneMatch(matcher)) {
+      log.trace("skipping query, none of the {} inserted facts match", ev.facts().size());
+      return;
+    }
     trigger();
   }
 
@@ -102,8 +152,10 @@ protected synchronized void runTarget() {
 
   public void cancel() {
     currentlyScheduled.set(true);
-    timer.cancel();
-    timer.purge();
+    ScheduledFuture<?> f = scheduledQuery;
+    if (f != null) {
+      f.cancel(false);
+    }
     // make sure, the final run did not flip again
     currentlyScheduled.set(true);
   }
@@ -65,26 +65,58 @@ public class PgConstants {
 
   private static final String ALIAS_VERSION = "version";
 
+  /**
+   * id, ns, type, version and aggIds are extracted from the header into columns of the same name by
+   * a trigger on insert.
+   */
   public static final String PROJECTION_FACT =
       String.join(
           ", ",
           COLUMN_SER,
           COLUMN_HEADER,
           COLUMN_PAYLOAD,
-          fromHeader(ALIAS_ID),
-          fromHeader(ALIAS_AGGID),
-          fromHeader(ALIAS_NS),
-          fromHeader(ALIAS_TYPE),
-          fromHeader(ALIAS_VERSION));
-
+          ALIAS_ID,
+          ALIAS_AGGID,
+          ALIAS_NS,
+          ALIAS_TYPE,
+          ALIAS_VERSION);
+
+  public static final String SEQUENCE_FACT_SER = "fact_ser_seq";
+
+  /**
+   * inserts a fact while assigning its serial from the sequence and enriching the header's meta
+   * with _ser and _ts in the very same statement, so that every fact is written exactly once.
+   *
+   * <p>Parameters are header (1) and payload (2), like a plain insert.
+   */
   public static final String INSERT_FACT =
       "INSERT INTO "
           + TABLE_FACT
           + "("
+          + COLUMN_SER
+          + ","
           + COLUMN_HEADER
           + ","
           + COLUMN_PAYLOAD
-          + ") VALUES (cast(? as jsonb),cast (? as jsonb))";
+          + ") SELECT n."
+          + COLUMN_SER
+          + ", jsonb_set( n."
+          + COLUMN_HEADER
+          + " , '{meta}' , COALESCE(n."
+          + COLUMN_HEADER
+          + "->'meta','{}') || jsonb_build_object('_ser', n."
+          + COLUMN_SER
+          + ", '_ts', (EXTRACT(EPOCH FROM now()::timestamptz(3))*1000)::bigint) , true), n."
+          + COLUMN_PAYLOAD
+          + " FROM (SELECT cast(? as jsonb) AS "
+          + COLUMN_HEADER
+          + ", cast(? as jsonb) AS "
+          + COLUMN_PAYLOAD
+          + ", nextval('"
+          + SEQUENCE_FACT_SER
+          + "') AS "
+          + COLUMN_SER
+          + ") AS n";
 
   public static final String INSERT_TOKEN =
       "INSERT INTO "
@@ -96,17 +128,36 @@ public class PgConstants {
   public static final String DELETE_TOKEN = "DELETE FROM " + TABLE_TOKENSTORE + " WHERE token=?";
 
   public static final String SELECT_BY_ID =
-      "SELECT "
-          + PROJECTION_FACT
-          + " FROM "
-          + TABLE_FACT
-          + " WHERE "
-          + COLUMN_HEADER
-          + " @> cast (? as jsonb)";
+      "SELECT " + PROJECTION_FACT + " FROM " + TABLE_FACT + " WHERE " + ALIAS_ID + "=?";
 
   public static final String SELECT_LATEST_SER =
       "SELECT max(" + COLUMN_SER + ") FROM " + TABLE_FACT;
 
+  /**
+   * marks the last serial allocated before the current transaction takes its own ones (two int
+   * advisory lock, so that it does not collide with {@link
+   * org.factcast.store.pgsql.internal.lock.AdvisoryLocks})
+   */
+  public static final String LOCK_SERIAL_MARK =
+      "SELECT pg_advisory_xact_lock_shared((mark >> 31)::int, (mark & 2147483647)::int) FROM "
+          + "(SELECT CASE WHEN is_called THEN last_value ELSE last_value - 1 END AS mark FROM "
+          + SEQUENCE_FACT_SER
+          + ") AS s";
+
+  /**
+   * the highest serial, that readers can pass without risking to miss a fact that is still being
+   * published concurrently. The latest visible serial is read from the statement's snapshot, which
+   * is taken before the marks of running transactions are read from pg_locks.
+   */
+  public static final String SELECT_SAFE_HIGH_WATER_MARK =
+      "SELECT LEAST((SELECT COALESCE(max("
+          + COLUMN_SER
+          + "),0) FROM "
+          + TABLE_FACT
+          + "), (SELECT min((classid::bigint << 31) + objid::bigint) FROM pg_locks "
+          + "WHERE locktype='advisory' AND objsubid=2 "
+          + "AND database=(SELECT oid FROM pg_database WHERE datname=current_database())))";
+
   public static final //
   String SELECT_FACT_FROM_CATCHUP = //
       "SELECT "
@@ -135,6 +186,53 @@ public class PgConstants {
           + COLUMN_SER
           + " ASC";
 
+  /** parameters are the serial to start after, the upper bound (inclusive) and the limit */
+  public static final String SELECT_FACTS_AFTER =
+      "SELECT "
+          + PROJECTION_FACT
+          + " FROM "
+          + TABLE_FACT
+          + " WHERE "
+          + COLUMN_SER
+          + ">? AND "
+          + COLUMN_SER
+          + "<=? ORDER BY "
+          + COLUMN_SER
+          + " ASC LIMIT ?";
+
+  /**
+   * average size in bytes of header and payload of the latest facts. Parameters are the upper bound
+   * (inclusive) and the number of facts to consider.
+   */
+  public static final String SELECT_AVERAGE_FACT_SIZE =
+      "SELECT avg(octet_length("
+          + COLUMN_HEADER
+          + "::text) + octet_length("
+          + COLUMN_PAYLOAD
+          + "::text)) FROM (SELECT "
+          + COLUMN_HEADER
+          + ", "
+          + COLUMN_PAYLOAD
+          + " FROM "
+          + TABLE_FACT
+          + " WHERE "
+          + COLUMN_SER
+          + "<=? ORDER BY "
+          + COLUMN_SER
+          + " DESC LIMIT ?) AS latest";
+
+  /** parameter is an array of the serials to select */
+  public static final String SELECT_FACTS_BY_SERIALS =
+      "SELECT "
+          + PROJECTION_FACT
+          + " FROM "
+          + TABLE_FACT
+          + " WHERE "
+          + COLUMN_SER
+          + "=ANY(?) ORDER BY "
+          + COLUMN_SER
+          + " ASC";
+
   public static final //
   String SELECT_LATEST_FACTID_FOR_AGGID = //
       "SELECT "
@@ -147,8 +245,10 @@ public class PgConstants {
           + //
           " @> cast (? as jsonb) ORDER BY ser DESC LIMIT 1";
 
-  public static final String SELECT_BY_HEADER_JSON =
-      "SELECT " + COLUMN_SER + " FROM " + TABLE_FACT + " WHERE " + COLUMN_HEADER + " @> ?::jsonb";
+  /** see db/changelog/factcast/partitioning/factPartitioning.sql */
+  public static final String PARTITION_FACT_TABLE = "SELECT partitionFactTable(?)";
+
+  public static final String CREATE_FACT_PARTITIONS = "SELECT createFactPartitions(?)";
 
   public static final String LISTEN_SQL = "LISTEN " + CHANNEL_NAME;
 
@@ -160,68 +260,35 @@ public class PgConstants {
 
   public static final String LISTEN_ROUNDTRIP_CHANNEL_SQL = "LISTEN " + ROUNDTRIP_CHANNEL_NAME;
 
-  public static final String UPDATE_FACT_SERIALS =
-      "update "
-          + TABLE_FACT
-          + " set "
-          + COLUMN_HEADER
-          + "= jsonb_set( "
-          + COLUMN_HEADER
-          + " , '{meta}' , COALESCE("
-          + COLUMN_HEADER
-          + "->'meta','{}') || concat('{\"_ser\":', "
-          + COLUMN_SER
-          + " ,', \"_ts\":', EXTRACT(EPOCH FROM now()::timestamptz(3))*1000, '}' )::jsonb , true) WHERE header @> ?::jsonb";
-
   public static final String SELECT_DISTINCT_NAMESPACE =
       "SELECT DISTINCT("
-          + COLUMN_HEADER
-          + "->>'"
           + ALIAS_NS
-          + "') "
+          + ") "
           + ALIAS_NS
           + " FROM "
           + TABLE_FACT
           + " WHERE "
-          + COLUMN_HEADER
-          + "->>'"
           + ALIAS_NS
-          + "' IS NOT NULL";
+          + " IS NOT NULL";
 
   public static final String SELECT_DISTINCT_TYPE_IN_NAMESPACE =
       "SELECT DISTINCT("
-          + COLUMN_HEADER
-          + "->>'"
           + ALIAS_TYPE
-          + "') "
+          + ") "
           + " FROM "
           + TABLE_FACT
-          + " WHERE ("
-          + COLUMN_HEADER
-          + "->>'"
+          + " WHERE "
           + ALIAS_NS
-          + "')=? AND ( "
-          + COLUMN_HEADER
-          + "->>'"
+          + "=? AND "
           + ALIAS_TYPE
-          + "') IS NOT NULL";
+          + " IS NOT NULL";
 
   public static final String SELECT_SER_BY_ID =
-      "SELECT "
-          + COLUMN_SER
-          + " FROM "
-          + TABLE_FACT
-          + " WHERE "
-          + COLUMN_HEADER
-          + " @> cast (? as jsonb)";
+      "SELECT " + COLUMN_SER + " FROM " + TABLE_FACT + " WHERE " + ALIAS_ID + "=?";
 
   public static final String SELECT_STATE_FROM_TOKEN =
       "SELECT " + COLUMN_STATE + " FROM " + TABLE_TOKENSTORE + " WHERE " + COLUMN_TOKEN + "=?";
 
   public static final String SELECT_NS_FROM_TOKEN =
       "SELECT " + COLUMN_NAMESPACE + " FROM " + TABLE_TOKENSTORE + " WHERE " + COLUMN_TOKEN + "=?";
-
-  private static String fromHeader(String attributeName) {
-    return PgConstants.COLUMN_HEADER + "->>'" + attributeName + "' AS " + attributeName;
-  }
 }
@@ -18,6 +18,7 @@
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.annotations.VisibleForTesting;
+import java.sql.Array;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
@@ -85,23 +86,23 @@ private static class Meta {
 
   public static Fact from(ResultSet resultSet) throws SQLException {
     String id = resultSet.getString(PgConstants.ALIAS_ID);
-    String aggId = resultSet.getString(PgConstants.ALIAS_AGGID);
+    Array aggIds = resultSet.getArray(PgConstants.ALIAS_AGGID);
     String type = resultSet.getString(PgConstants.ALIAS_TYPE);
     String ns = resultSet.getString(PgConstants.ALIAS_NS);
     String jsonHeader = resultSet.getString(PgConstants.COLUMN_HEADER);
     String jsonPayload = resultSet.getString(PgConstants.COLUMN_PAYLOAD);
     int version = resultSet.getInt(PgConstants.COLUMN_VERSION);
     return new PgFact(
-        UUID.fromString(id), ns, type, version, toUUIDArray(aggId), jsonHeader, jsonPayload);
+        UUID.fromString(id), ns, type, version, toUUIDArray(aggIds), jsonHeader, jsonPayload);
   }
 
   @VisibleForTesting
-  static Set<UUID> toUUIDArray(String aggIdArrayAsString) {
+  static Set<UUID> toUUIDArray(Array aggIdArray) throws SQLException {
     Set<UUID> set = new LinkedHashSet<>();
-    if (aggIdArrayAsString != null && aggIdArrayAsString.trim().length() > 2) {
-      UUID[] readValue = FactCastJson.readValue(UUID[].class, aggIdArrayAsString);
-      if (readValue != null) {
-        set.addAll(Arrays.asList(readValue));
+    if (aggIdArray != null) {
+      UUID[] value = (UUID[]) aggIdArray.getArray();
+      if (value != null) {
+        set.addAll(Arrays.asList(value));
       }
     }
     return set;
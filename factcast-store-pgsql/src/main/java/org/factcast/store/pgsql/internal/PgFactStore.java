@@ -38,6 +38,7 @@
 import org.factcast.core.subscription.observer.FactObserver;
 import org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.OP;
 import org.factcast.store.pgsql.internal.lock.FactTableWriteLock;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
 import org.factcast.store.pgsql.internal.query.PgQueryBuilder;
 import org.factcast.store.pgsql.internal.snapcache.PgSnapshotCache;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -73,6 +74,8 @@ public class PgFactStore extends AbstractFactStore {
 
   @NonNull private final PgSnapshotCache snapCache;
 
+  @NonNull private final PgLatestSerialFetcher fetcher;
+
   @Autowired
   public PgFactStore(
       @NonNull JdbcTemplate jdbcTemplate,
@@ -81,6 +84,7 @@ public PgFactStore(
       @NonNull FactTableWriteLock lock,
       @NonNull FactTransformerService factTransformerService,
       @NonNull PgSnapshotCache snapCache,
+      @NonNull PgLatestSerialFetcher fetcher,
       @NonNull PgMetrics metrics) {
     super(tokenStore);
 
@@ -88,6 +92,7 @@ public PgFactStore(
     this.subscriptionFactory = subscriptionFactory;
     this.lock = lock;
     this.snapCache = snapCache;
+    this.fetcher = fetcher;
     this.metrics = metrics;
     this.factTransformerService = factTransformerService;
   }
@@ -98,10 +103,7 @@ public PgFactStore(
         OP.FETCH_BY_ID,
         () ->
             jdbcTemplate
-                .query(
-                    PgConstants.SELECT_BY_ID,
-                    new Object[] {"{\"id\":\"" + id + "\"}"},
-                    this::extractFactFromResultSet)
+                .query(PgConstants.SELECT_BY_ID, new Object[] {id}, this::extractFactFromResultSet)
                 .stream()
                 .findFirst());
   }
@@ -126,7 +128,7 @@ public void publish(@NonNull List<? extends Fact> factsToPublish) {
         OP.PUBLISH,
         () -> {
           try {
-            lock.aquireExclusiveTXLock();
+            lock.aquireInsertTXLock();
 
             List<Fact> copiedListOfFacts = Lists.newArrayList(factsToPublish);
             final int numberOfFactsToPublish = factsToPublish.size();
@@ -134,6 +136,7 @@ public void publish(@NonNull List<? extends Fact> factsToPublish) {
                 "Inserting {} fact(s){}",
                 numberOfFactsToPublish,
                 numberOfFactsToPublish > BATCH_SIZE ? " in batches of " + BATCH_SIZE : "");
+            // serials are added to the headers by the insert itself
             jdbcTemplate.batchUpdate(
                 PgConstants.INSERT_FACT,
                 copiedListOfFacts,
@@ -142,15 +145,6 @@ public void publish(@NonNull List<? extends Fact> factsToPublish) {
                   statement.setString(1, fact.jsonHeader());
                   statement.setString(2, fact.jsonPayload());
                 });
-            // add serials to headers
-            jdbcTemplate.batchUpdate(
-                PgConstants.UPDATE_FACT_SERIALS,
-                copiedListOfFacts,
-                BATCH_SIZE,
-                (statement, fact) -> {
-                  final String idMatch = "{\"id\":\"" + fact.id() + "\"}";
-                  statement.setString(1, idMatch);
-                });
 
           } catch (DuplicateKeyException dupkey) {
             throw new IllegalArgumentException(dupkey.getMessage());
@@ -184,9 +178,7 @@ private String extractStringFromResultSet(
           try {
             Long res =
                 jdbcTemplate.queryForObject(
-                    PgConstants.SELECT_SER_BY_ID,
-                    new Object[] {"{\"id\":\"" + l + "\"}"},
-                    Long.class);
+                    PgConstants.SELECT_SER_BY_ID, new Object[] {l}, Long.class);
 
             if (res != null && res > 0) {
               return OptionalLong.of(res);
@@ -238,7 +230,7 @@ protected State getStateFor(@NonNull List<FactSpec> specs) {
     return metrics.time(
         OP.GET_STATE_FOR,
         () -> {
-          PgQueryBuilder pgQueryBuilder = new PgQueryBuilder(specs);
+          PgQueryBuilder pgQueryBuilder = new PgQueryBuilder(specs, fetcher.upperBound());
           String stateSQL = pgQueryBuilder.createStateSQL();
           PreparedStatementSetter statementSetter =
               pgQueryBuilder.createStatementSetter(new AtomicLong(0));
@@ -15,12 +15,11 @@
  */
 package org.factcast.store.pgsql.internal;
 
-import com.google.common.eventbus.AsyncEventBus;
-import com.google.common.eventbus.EventBus;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
 import javax.sql.DataSource;
+import liquibase.integration.spring.SpringLiquibase;
 import lombok.NonNull;
 import net.javacrumbs.shedlock.core.LockProvider;
 import net.javacrumbs.shedlock.provider.jdbctemplate.JdbcTemplateLockProvider;
@@ -30,19 +29,33 @@
 import org.factcast.core.subscription.FactTransformerService;
 import org.factcast.core.subscription.FactTransformersFactory;
 import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupConnectionPool;
 import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.catchup.cache.PgCachingCatchUpFactory;
+import org.factcast.store.pgsql.internal.catchup.cache.PgCatchupCache;
 import org.factcast.store.pgsql.internal.catchup.fetching.PgFetchingCatchUpFactory;
+import org.factcast.store.pgsql.internal.catchup.keyset.PgKeysetCatchUpFactory;
 import org.factcast.store.pgsql.internal.catchup.paged.PgPagedCatchUpFactory;
+import org.factcast.store.pgsql.internal.catchup.parallel.PgParallelCatchUpFactory;
+import org.factcast.store.pgsql.internal.catchup.pipelined.PgPipelinedCatchUpFactory;
+import org.factcast.store.pgsql.internal.catchup.segment.PgSegmentCatchUpFactory;
 import org.factcast.store.pgsql.internal.listen.PgConnectionSupplier;
 import org.factcast.store.pgsql.internal.listen.PgConnectionTester;
 import org.factcast.store.pgsql.internal.listen.PgListener;
+import org.factcast.store.pgsql.internal.listen.PgNotificationDispatcher;
 import org.factcast.store.pgsql.internal.lock.AdvisoryWriteLock;
+import org.factcast.store.pgsql.internal.lock.ConcurrentAdvisoryWriteLock;
 import org.factcast.store.pgsql.internal.lock.FactTableWriteLock;
+import org.factcast.store.pgsql.internal.partition.PgFactPartitioner;
+import org.factcast.store.pgsql.internal.query.PgCachedLatestSerialFetcher;
 import org.factcast.store.pgsql.internal.query.PgFactIdToSerialMapper;
+import org.factcast.store.pgsql.internal.query.PgHighWaterMarkFetcher;
 import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.factcast.store.pgsql.internal.segment.PgFactSegmentCache;
 import org.factcast.store.pgsql.internal.snapcache.PgSnapshotCache;
 import org.factcast.store.pgsql.internal.snapcache.PgSnapshotCacheConfiguration;
 import org.factcast.store.pgsql.registry.SchemaRegistryConfiguration;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -67,25 +80,58 @@
 public class PgFactStoreInternalConfiguration {
 
   @Bean
-  @ConditionalOnMissingBean(EventBus.class)
-  public EventBus eventBus() {
-    return new AsyncEventBus(getClass().getSimpleName(), Executors.newCachedThreadPool());
+  public PgNotificationDispatcher pgNotificationDispatcher(
+      PgConfigurationProperties props, PgMetrics metrics) {
+    return new PgNotificationDispatcher(props.getFactNotificationDispatchThreads(), metrics);
   }
 
   @Bean
   public PgCatchupFactory pgCatchupFactory(
       PgConfigurationProperties props,
-      PgConnectionSupplier supp,
-      PgFactIdToSerialMapper serMapper) {
-    // noinspection SwitchStatementWithTooFewBranches
+      PgCatchupConnectionPool pool,
+      PgLatestSerialFetcher fetcher,
+      PgMetrics metrics,
+      PgFactSegmentCache segmentCache) {
+    PgCatchupFactory factory;
     switch (props.getCatchupStrategy()) {
       case PAGED:
-        return new PgPagedCatchUpFactory(supp, props);
+        factory = new PgPagedCatchUpFactory(pool, props, fetcher);
+        break;
       case FETCHING:
-        return new PgFetchingCatchUpFactory(supp, props);
+        factory = new PgFetchingCatchUpFactory(pool, props, fetcher);
+        break;
+      case KEYSET:
+        factory = new PgKeysetCatchUpFactory(pool, props, fetcher);
+        break;
+      case PARALLEL:
+        factory = new PgParallelCatchUpFactory(pool, props, fetcher);
+        break;
       default:
         throw new IllegalArgumentException("Unmapped Strategy: " + props.getCatchupStrategy());
     }
+    if (props.getCatchupCacheMaxSerials() > 0 && !props.isIntegrationTestMode()) {
+      PgCatchupCache cache =
+          new PgCatchupCache(
+              props.getCatchupCacheMaxSerials(), props.getCatchupCacheExpiryInMinutes(), metrics);
+      factory = new PgCachingCatchUpFactory(factory, cache, pool, props, fetcher);
+    }
+    if (segmentCache.isEnabled()) {
+      factory = new PgSegmentCatchUpFactory(factory, segmentCache);
+    }
+    if (props.getCatchupPipelineDepth() > 0) {
+      return new PgPipelinedCatchUpFactory(
+          factory, props.getCatchupPipelineDepth(), props.getCatchupPipelineConcurrency());
+    }
+    return factory;
+  }
+
+  @Bean
+  public PgFactPartitioner pgFactPartitioner(
+      JdbcTemplate jdbcTemplate,
+      PgConfigurationProperties props,
+      PgMetrics pgMetrics,
+      @Autowired(required = false) SpringLiquibase unused) {
+    return new PgFactPartitioner(jdbcTemplate, pgMetrics, props.getPartitionSize());
   }
 
   @Bean
@@ -101,6 +147,7 @@ public FactStore factStore(
       FactTableWriteLock lock,
       FactTransformerService factTransformerService,
       PgSnapshotCache snapCache,
+      PgLatestSerialFetcher pgLatestSerialFetcher,
       PgMetrics pgMetrics) {
     return new PgFactStore(
         jdbcTemplate,
@@ -109,24 +156,59 @@ public FactStore factStore(
         lock,
         factTransformerService,
         snapCache,
+        pgLatestSerialFetcher,
         pgMetrics);
   }
 
   @Bean
   public PgSubscriptionFactory pgSubscriptionFactory(
       JdbcTemplate jdbcTemplate,
-      EventBus eventBus,
+      PgNotificationDispatcher dispatcher,
       PgFactIdToSerialMapper pgFactIdToSerialMapper,
       PgLatestSerialFetcher pgLatestSerialFetcher,
       PgCatchupFactory pgCatchupFactory,
-      FactTransformersFactory transformerFactory) {
+      FactTransformersFactory transformerFactory,
+      PgConfigurationProperties props) {
+    ExecutorService executor;
+    ExecutorService followExecutor;
+    switch (props.getSubscriptionExecutionStrategy()) {
+      case BOUNDED:
+        executor =
+            PgSubscriptionFactory.newBoundedExecutor(props.getSubscriptionExecutorPoolSize());
+        followExecutor = PgSubscriptionFactory.newFollowExecutor();
+        break;
+      case VIRTUAL:
+        executor = PgSubscriptionFactory.newVirtualThreadExecutor();
+        followExecutor = executor;
+        break;
+      default:
+        throw new IllegalArgumentException(
+            "Unmapped Strategy: " + props.getSubscriptionExecutionStrategy());
+    }
+    PgTailReader tailReader;
+    switch (props.getFollowStrategy()) {
+      case QUERYING:
+        tailReader = null;
+        break;
+      case SHARED:
+        tailReader =
+            new PgTailReader(
+                jdbcTemplate, pgLatestSerialFetcher, props.getPageSize(), followExecutor);
+        dispatcher.register(tailReader);
+        break;
+      default:
+        throw new IllegalArgumentException("Unmapped Strategy: " + props.getFollowStrategy());
+    }
     return new PgSubscriptionFactory(
         jdbcTemplate,
-        eventBus,
+        dispatcher,
         pgFactIdToSerialMapper,
         pgLatestSerialFetcher,
         pgCatchupFactory,
-        transformerFactory);
+        transformerFactory,
+        tailReader,
+        executor,
+        followExecutor);
   }
 
   @Bean
@@ -134,6 +216,18 @@ public PgConnectionSupplier pgConnectionSupplier(DataSource ds) {
     return new PgConnectionSupplier(ds);
   }
 
+  @Bean
+  public PgFactSegmentCache pgFactSegmentCache(
+      JdbcTemplate jdbcTemplate, PgConfigurationProperties props, PgLatestSerialFetcher fetcher) {
+    return new PgFactSegmentCache(jdbcTemplate, props, fetcher);
+  }
+
+  @Bean
+  public PgCatchupConnectionPool pgCatchupConnectionPool(
+      DataSource ds, PgConfigurationProperties props, PgMetrics metrics) {
+    return new PgCatchupConnectionPool(ds, props, metrics);
+  }
+
   @Bean
   public PgConnectionTester pgConnectionTester() {
     return new PgConnectionTester();
@@ -142,10 +236,10 @@ public PgConnectionTester pgConnectionTester() {
   @Bean
   public PgListener pgListener(
       @NonNull PgConnectionSupplier pgConnectionSupplier,
-      @NonNull EventBus eventBus,
+      @NonNull PgNotificationDispatcher dispatcher,
       @NonNull PgConfigurationProperties props,
       PgMetrics metrics) {
-    return new PgListener(pgConnectionSupplier, eventBus, props, metrics);
+    return new PgListener(pgConnectionSupplier, dispatcher, props, metrics);
   }
 
   @Bean
@@ -154,8 +248,27 @@ public PgFactIdToSerialMapper pgFactIdToSerialMapper(JdbcTemplate jdbcTemplate)
   }
 
   @Bean
-  public PgLatestSerialFetcher pgLatestSerialFetcher(JdbcTemplate jdbcTemplate) {
-    return new PgLatestSerialFetcher(jdbcTemplate);
+  public PgLatestSerialFetcher pgLatestSerialFetcher(
+      JdbcTemplate jdbcTemplate,
+      PgConfigurationProperties props,
+      PgNotificationDispatcher dispatcher) {
+    PgLatestSerialFetcher fetcher;
+    switch (props.getPublishStrategy()) {
+      case EXCLUSIVE:
+        fetcher = new PgLatestSerialFetcher(jdbcTemplate);
+        break;
+      case CONCURRENT:
+        fetcher = new PgHighWaterMarkFetcher(jdbcTemplate);
+        break;
+      default:
+        throw new IllegalArgumentException("Unmapped Strategy: " + props.getPublishStrategy());
+    }
+    if (props.isIntegrationTestMode()) {
+      return fetcher;
+    }
+    PgCachedLatestSerialFetcher cached = new PgCachedLatestSerialFetcher(jdbcTemplate, fetcher);
+    dispatcher.register(cached);
+    return cached;
   }
 
   @Bean
@@ -164,8 +277,15 @@ public PgTokenStore pgTokenStore(JdbcTemplate jdbcTemplate) {
   }
 
   @Bean
-  public FactTableWriteLock factTableWriteLock(JdbcTemplate tpl) {
-    return new AdvisoryWriteLock(tpl);
+  public FactTableWriteLock factTableWriteLock(JdbcTemplate tpl, PgConfigurationProperties props) {
+    switch (props.getPublishStrategy()) {
+      case EXCLUSIVE:
+        return new AdvisoryWriteLock(tpl);
+      case CONCURRENT:
+        return new ConcurrentAdvisoryWriteLock(tpl);
+      default:
+        throw new IllegalArgumentException("Unmapped Strategy: " + props.getPublishStrategy());
+    }
   }
 
   @Bean
@@ -15,12 +15,12 @@
  */
 package org.factcast.store.pgsql.internal;
 
-import com.google.common.eventbus.EventBus;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -30,6 +30,7 @@
 import org.factcast.core.subscription.SubscriptionRequestTO;
 import org.factcast.core.subscription.TransformationException;
 import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.listen.PgNotificationDispatcher;
 import org.factcast.store.pgsql.internal.query.PgFactIdToSerialMapper;
 import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
 import org.factcast.store.pgsql.internal.query.PgQueryBuilder;
@@ -50,7 +51,7 @@ public class PgFactStream {
 
   final JdbcTemplate jdbcTemplate;
 
-  final EventBus eventBus;
+  final PgNotificationDispatcher dispatcher;
 
   final PgFactIdToSerialMapper idToSerMapper;
 
@@ -64,8 +65,16 @@ public class PgFactStream {
 
   final PgCatchupFactory pgCatchupFactory;
 
+  /** if null, this stream queries for new facts on its own in follow mode */
+  final PgTailReader tailReader;
+
+  /** runs the queries in follow mode */
+  final Executor executor;
+
   CondensedQueryExecutor condensedExecutor;
 
+  TailFollower tailFollower;
+
   SubscriptionRequestTO request;
 
   PgPostQueryMatcher postQueryMatcher;
@@ -73,15 +82,22 @@ public class PgFactStream {
   void connect(@NonNull SubscriptionRequestTO request) {
     this.request = request;
     log.debug("{} connecting subscription {}", request, request.dump());
-    postQueryMatcher = new PgPostQueryMatcher(request);
-    PgQueryBuilder q = new PgQueryBuilder(request.specs());
-    initializeSerialToStartAfter();
-    String sql = q.createSQL();
-    PreparedStatementSetter setter = q.createStatementSetter(serial);
-    RowCallbackHandler rsHandler = new FactRowCallbackHandler(subscription, postQueryMatcher);
-    PgSynchronizedQuery query =
-        new PgSynchronizedQuery(jdbcTemplate, sql, setter, rsHandler, serial, fetcher);
-    catchupAndFollow(request, subscription, query);
+    try {
+      postQueryMatcher = new PgPostQueryMatcher(request);
+      PgQueryBuilder q = new PgQueryBuilder(request.specs(), fetcher.upperBound());
+      initializeSerialToStartAfter();
+      String sql = q.createSQL();
+      PreparedStatementSetter setter = q.createStatementSetter(serial);
+      RowCallbackHandler rsHandler = new FactRowCallbackHandler(subscription, postQueryMatcher);
+      PgSynchronizedQuery query =
+          new PgSynchronizedQuery(jdbcTemplate, sql, setter, rsHandler, serial, fetcher);
+      catchupAndFollow(request, subscription, query);
+    } catch (Throwable e) {
+      // connect runs asynchronously, so that nobody else would tell the client, for instance if
+      // there was no catchup connection available in time
+      log.warn("{} failed to connect: {}", request, e.getMessage());
+      subscription.notifyError(e);
+    }
   }
 
   private void initializeSerialToStartAfter() {
@@ -106,6 +122,11 @@ private void catchupAndFollow(
     if (isConnected())
       if (request.continuous()) {
         log.debug("{} entering follow mode", request);
+        if (tailReader != null) {
+          tailFollower = new TailFollower();
+          tailReader.register(tailFollower);
+          return;
+        }
         long delayInMs;
         if (request.maxBatchDelayInMs() < 1) {
           // ok, instant query after NOTIFY
@@ -126,8 +147,15 @@ private void catchupAndFollow(
               delayInMs,
               request.maxBatchDelayInMs());
         }
-        condensedExecutor = new CondensedQueryExecutor(delayInMs, query, this::isConnected);
-        eventBus.register(condensedExecutor);
+        condensedExecutor =
+            new CondensedQueryExecutor(
+                delayInMs,
+                query,
+                this::isConnected,
+                new PgQueryBuilder(request.specs()).createPredicate(),
+                dispatcher.scheduler(),
+                executor);
+        dispatcher.register(condensedExecutor);
         // catchup phase 3 – make sure, we did not miss any fact due to
         // slow registration
         condensedExecutor.trigger();
@@ -155,8 +183,12 @@ private boolean isConnected() {
   public synchronized void close() {
     log.trace("{} disconnecting ", request);
     disconnected.set(true);
+    if (tailFollower != null) {
+      tailReader.unregister(tailFollower);
+      tailFollower = null;
+    }
     if (condensedExecutor != null) {
-      eventBus.unregister(condensedExecutor);
+      dispatcher.unregister(condensedExecutor);
       condensedExecutor.cancel();
       condensedExecutor = null;
     }
@@ -179,26 +211,10 @@ public void processRow(ResultSet rs) throws SQLException {
               "ResultSet already closed. We should not have got here. THIS IS A BUG!");
         }
         Fact f = PgFact.from(rs);
-        final UUID factId = f.id();
         if (postQueryMatcher.test(f)) {
           try {
-            subscription.notifyElement(f);
-            log.trace("{} notifyElement called with id={}", request, factId);
-          } catch (MissingTransformationInformation | TransformationException e) {
-            log.warn("{} transformation error: {}", request, e.getMessage());
-            subscription.notifyError(e);
-            throw new RuntimeException(e);
+            notifyElement(f);
           } catch (Throwable e) {
-            // debug level, because it happens regularly on
-            // disconnecting clients.
-            // TODO add sid
-            log.debug("{} exception from subscription: {}", request, e.getMessage());
-            try {
-              subscription.close();
-            } catch (Exception e1) {
-              // TODO add sid
-              log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
-            }
             // close result set in order to release DB resources as
             // early as possible
             rs.close();
@@ -206,10 +222,74 @@ public void processRow(ResultSet rs) throws SQLException {
           }
         } else {
           // TODO add sid
-          log.trace("{} filtered id={}", request, factId);
+          log.trace("{} filtered id={}", request, f.id());
         }
         serial.set(rs.getLong(PgConstants.COLUMN_SER));
       }
     }
   }
+
+  private void notifyElement(Fact f) {
+    try {
+      subscription.notifyElement(f);
+      log.trace("{} notifyElement called with id={}", request, f.id());
+    } catch (MissingTransformationInformation | TransformationException e) {
+      log.warn("{} transformation error: {}", request, e.getMessage());
+      subscription.notifyError(e);
+      throw new RuntimeException(e);
+    } catch (Throwable e) {
+      // debug level, because it happens regularly on
+      // disconnecting clients.
+      // TODO add sid
+      log.debug("{} exception from subscription: {}", request, e.getMessage());
+      try {
+        subscription.close();
+      } catch (Exception e1) {
+        // TODO add sid
+        log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
+      }
+      throw e;
+    }
+  }
+
+  /** receives new facts from the {@link PgTailReader} */
+  class TailFollower implements PgTailReader.Follower {
+
+    final Predicate<Fact> queryMatcher = new PgQueryBuilder(request.specs()).createPredicate();
+
+    @Override
+    public AtomicLong serial() {
+      return serial;
+    }
+
+    @Override
+    public boolean isConnected() {
+      return PgFactStream.this.isConnected();
+    }
+
+    @Override
+    public boolean test(Fact f) {
+      return queryMatcher.test(f) && postQueryMatcher.test(f);
+    }
+
+    @Override
+    public boolean mightMatch(Fact f) {
+      return queryMatcher.test(f);
+    }
+
+    @Override
+    public void notify(Fact f) {
+      notifyElement(f);
+    }
+
+    @Override
+    public void catchupTo(long ser) {
+      PgQueryBuilder q = new PgQueryBuilder(request.specs(), () -> ser);
+      jdbcTemplate.query(
+          q.createSQL(),
+          q.createStatementSetter(serial),
+          new FactRowCallbackHandler(subscription, postQueryMatcher));
+      serial.set(Math.max(ser, serial.get()));
+    }
+  }
 }
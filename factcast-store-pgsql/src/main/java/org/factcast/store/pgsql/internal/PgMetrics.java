@@ -16,15 +16,18 @@
 package org.factcast.store.pgsql.internal;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.Timer.Sample;
 import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.GAUGE;
 import org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.OP;
 
 @Slf4j
@@ -113,12 +116,23 @@ public Timer timer(@NonNull OP operation) {
     return timer(operation, StoreMetrics.TAG_EXCEPTION_VALUE_NONE);
   }
 
+  public <T> void gauge(@NonNull GAUGE gauge, @NonNull T obj, @NonNull ToDoubleFunction<T> f) {
+    Gauge.builder(StoreMetrics.GAUGE_METRIC_NAME, obj, f)
+        .tags(
+            Tags.of(
+                Tag.of(StoreMetrics.TAG_STORE_KEY, StoreMetrics.TAG_STORE_VALUE),
+                Tag.of(StoreMetrics.TAG_GAUGE_KEY, gauge.gauge())))
+        .register(registry);
+  }
+
   public static class StoreMetrics {
 
     static final String DURATION_METRIC_NAME = "factcast.store.operations.duration";
 
     static final String COUNTER_METRIC_NAME = "factcast.store.operations";
 
+    static final String GAUGE_METRIC_NAME = "factcast.store.gauges";
+
     static final String TAG_STORE_KEY = "store";
 
     static final String TAG_STORE_VALUE = "pgsql";
@@ -129,6 +143,8 @@ public static class StoreMetrics {
 
     static final String TAG_EXCEPTION_VALUE_NONE = "None";
 
+    static final String TAG_GAUGE_KEY = "gauge";
+
     public enum OP {
       PUBLISH("publish"),
 
@@ -156,9 +172,21 @@ public enum OP {
 
       COMPACT_SNAPSHOT_CACHE("compactSnapshotCache"),
 
+      CREATE_PARTITIONS("createPartitions"),
+
       NOTIFY_ROUNDTRIP_LATENCY("notifyRoundTripLatency"),
 
-      MISSED_ROUNDTRIP("missedRoundtrip");
+      MISSED_ROUNDTRIP("missedRoundtrip"),
+
+      CATCHUP_CONNECTION_WAIT("catchupConnectionWait"),
+
+      CATCHUP_CACHE_HIT("catchupCacheHit"),
+
+      CATCHUP_CACHE_MISS("catchupCacheMiss"),
+
+      NOTIFICATION_DISPATCH_LAG("notificationDispatchLag"),
+
+      NOTIFICATION_COALESCED("notificationCoalesced");
 
       @NonNull @Getter final String op;
 
@@ -166,5 +194,17 @@ public enum OP {
         this.op = op;
       }
     }
+
+    public enum GAUGE {
+      CATCHUP_CONNECTIONS_ACTIVE("catchupConnectionsActive"),
+
+      CATCHUP_CONNECTIONS_PENDING("catchupConnectionsPending");
+
+      @NonNull @Getter final String gauge;
+
+      GAUGE(@NonNull String gauge) {
+        this.gauge = gauge;
+      }
+    }
   }
 }
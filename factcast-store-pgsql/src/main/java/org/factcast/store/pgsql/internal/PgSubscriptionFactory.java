@@ -15,27 +15,38 @@
  */
 package org.factcast.store.pgsql.internal;
 
-import com.google.common.eventbus.EventBus;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.factcast.core.subscription.FactTransformersFactory;
 import org.factcast.core.subscription.Subscription;
 import org.factcast.core.subscription.SubscriptionImpl;
 import org.factcast.core.subscription.SubscriptionRequestTO;
 import org.factcast.core.subscription.observer.FactObserver;
 import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.listen.PgNotificationDispatcher;
 import org.factcast.store.pgsql.internal.query.PgFactIdToSerialMapper;
 import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 // TODO integrate with PGQuery
 @SuppressWarnings("UnstableApiUsage")
+@Slf4j
 @RequiredArgsConstructor
-class PgSubscriptionFactory {
+class PgSubscriptionFactory implements DisposableBean {
 
   final JdbcTemplate jdbcTemplate;
 
-  final EventBus eventBus;
+  final PgNotificationDispatcher dispatcher;
 
   final PgFactIdToSerialMapper idToSerialMapper;
 
@@ -45,13 +56,89 @@ class PgSubscriptionFactory {
 
   final FactTransformersFactory transformersFactory;
 
+  /** null, unless FollowStrategy.SHARED is used. Owned by this factory. */
+  final PgTailReader tailReader;
+
+  /** connects subscriptions and runs their catchup */
+  final ExecutorService executor;
+
+  /**
+   * runs the queries of subscriptions in follow mode, and passes on the facts of the shared tail.
+   * Separate from executor, so that subscriptions in follow mode never wait for connecting or
+   * catching up ones, or for ones blocked by slow clients.
+   */
+  final ExecutorService followExecutor;
+
   public Subscription subscribe(SubscriptionRequestTO req, FactObserver observer) {
     final SubscriptionImpl subscription =
         SubscriptionImpl.on(observer, transformersFactory.createFor(req));
     PgFactStream pgsub =
         new PgFactStream(
-            jdbcTemplate, eventBus, idToSerialMapper, subscription, fetcher, catchupFactory);
-    CompletableFuture.runAsync(() -> pgsub.connect(req));
+            jdbcTemplate,
+            dispatcher,
+            idToSerialMapper,
+            subscription,
+            fetcher,
+            catchupFactory,
+            tailReader,
+            followExecutor);
+    CompletableFuture.runAsync(() -> pgsub.connect(req), executor);
     return subscription.onClose(pgsub::close);
   }
+
+  @Override
+  public void destroy() {
+    if (tailReader != null) {
+      dispatcher.unregister(tailReader);
+      tailReader.destroy();
+    }
+    executor.shutdownNow();
+    followExecutor.shutdownNow();
+  }
+
+  private static ThreadFactory threadFactory() {
+    return threadFactory("pg-subscription-%d");
+  }
+
+  private static ThreadFactory threadFactory(String nameFormat) {
+    return new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build();
+  }
+
+  /**
+   * @return an unbounded pool of platform threads for subscriptions in follow mode. Each of them
+   *     runs at most one query at a time, so that there are never more threads than subscriptions
+   *     in follow mode, and idle ones time out.
+   */
+  static ExecutorService newFollowExecutor() {
+    return Executors.newCachedThreadPool(threadFactory("pg-follow-%d"));
+  }
+
+  static ExecutorService newBoundedExecutor(int size) {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * @return an executor starting a virtual thread per subscription, or an unbounded pool of
+   *     platform threads, if the runtime does not support virtual threads
+   */
+  static ExecutorService newVirtualThreadExecutor() {
+    return newVirtualThreadExecutor(Executors.class);
+  }
+
+  // compiled for Java 8, so that the factory method has to be looked up reflectively
+  @VisibleForTesting
+  static ExecutorService newVirtualThreadExecutor(Class<?> executors) {
+    try {
+      return (ExecutorService) executors.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.warn(
+          "Virtual threads are not supported by this runtime, using platform threads: {}",
+          e.toString());
+      return Executors.newCachedThreadPool(threadFactory());
+    }
+  }
 }
@@ -75,6 +75,14 @@ class PgSynchronizedQuery {
     transactionTemplate = new TransactionTemplate(transactionManager);
   }
 
+  /**
+   * @return true, if the query is bounded by a high-water mark, so that facts can become visible to
+   *     it only after facts with a higher serial have been committed
+   */
+  boolean bounded() {
+    return latestFetcher.upperBound() != null;
+  }
+
   // the synchronized here is crucial!
   @SuppressWarnings("SameReturnValue")
   public synchronized void run(boolean useIndex) {
@@ -0,0 +1,328 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.internal.listen.PgListener.FactInsertionEvent;
+import org.factcast.store.pgsql.internal.listen.PgNotificationDispatcher;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Reads newly published facts once for all registered followers and hands every fact to the
+ * followers it matches, instead of having every following subscription run its own query.
+ *
+ * <p>Reading starts at the latest fact. Followers that register with a serial behind the tail, or
+ * that fall more than a page behind it, catch up to the tail on their own, before they get handed
+ * facts from here again. Facts are delivered on the given executor, so that a slow follower only
+ * delays itself.
+ */
+@SuppressWarnings("UnstableApiUsage")
+@Slf4j
+public class PgTailReader implements PgNotificationDispatcher.Listener, DisposableBean {
+
+  @NonNull final JdbcTemplate jdbcTemplate;
+
+  @NonNull final PgLatestSerialFetcher fetcher;
+
+  final int pageSize;
+
+  private final ExecutorService reader;
+
+  private final Executor delivery;
+
+  private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+  private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+  // serial of the last fact read, guarded by this. -1 if there are no followers.
+  private long tail = -1;
+
+  public PgTailReader(
+      @NonNull JdbcTemplate jdbcTemplate,
+      @NonNull PgLatestSerialFetcher fetcher,
+      int pageSize,
+      @NonNull Executor delivery) {
+    this(
+        jdbcTemplate,
+        fetcher,
+        pageSize,
+        Executors.newSingleThreadExecutor(
+            r -> {
+              Thread t = new Thread(r, PgTailReader.class.getSimpleName());
+              t.setDaemon(true);
+              return t;
+            }),
+        delivery);
+  }
+
+  @VisibleForTesting
+  PgTailReader(
+      @NonNull JdbcTemplate jdbcTemplate,
+      @NonNull PgLatestSerialFetcher fetcher,
+      int pageSize,
+      @NonNull ExecutorService reader,
+      @NonNull Executor delivery) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.fetcher = fetcher;
+    this.pageSize = pageSize;
+    this.reader = reader;
+    this.delivery = delivery;
+  }
+
+  public interface Follower {
+
+    /** the serial of the last fact processed by this follower */
+    AtomicLong serial();
+
+    boolean isConnected();
+
+    boolean test(Fact f);
+
+    /**
+     * @param f a fact without payload
+     * @return false, if the fact cannot match
+     */
+    boolean mightMatch(Fact f);
+
+    void notify(Fact f);
+
+    /** processes all facts after serial() up to (and including) the given serial on its own */
+    void catchupTo(long ser);
+  }
+
+  public void register(@NonNull Follower follower) {
+    Registration registration = new Registration(follower);
+    synchronized (this) {
+      if (tail < 0) {
+        tail = head();
+      }
+      registration.behind(tail);
+      registrations.add(registration);
+    }
+    // there might be facts after the tail already
+    trigger();
+  }
+
+  public void unregister(@NonNull Follower follower) {
+    registrations.removeIf(r -> r.follower == follower);
+  }
+
+  @Override
+  public void onEvent(FactInsertionEvent ev) {
+    // if reading is bounded by a high-water mark, even facts nobody is interested in might move it
+    // past an interesting fact committed earlier
+    if (fetcher.upperBound() == null
+        && !ev.facts().isEmpty()
+        && ev.facts().stream()
+            .noneMatch(f -> registrations.stream().anyMatch(r -> r.follower.mightMatch(f)))) {
+      // nothing of interest, the facts will be skipped with the next read
+      return;
+    }
+    trigger();
+  }
+
+  public void trigger() {
+    if (!scheduled.getAndSet(true)) {
+      reader.execute(
+          () -> {
+            scheduled.set(false);
+            try {
+              read();
+            } catch (Throwable e) {
+              log.error("Reading the tail failed: ", e);
+            }
+          });
+    }
+  }
+
+  @VisibleForTesting
+  void read() {
+    LongSupplier upperBound = fetcher.upperBound();
+    int read;
+    do {
+      long from;
+      synchronized (this) {
+        registrations.removeIf(r -> !r.follower.isConnected());
+        if (registrations.isEmpty()) {
+          tail = -1;
+          return;
+        }
+        from = tail;
+      }
+      read =
+          jdbcTemplate
+              .query(
+                  PgConstants.SELECT_FACTS_AFTER,
+                  new Object[] {
+                    from, upperBound == null ? Long.MAX_VALUE : upperBound.getAsLong(), pageSize
+                  },
+                  (rs, i) -> {
+                    Fact f = PgFact.from(rs);
+                    long ser = rs.getLong(PgConstants.COLUMN_SER);
+                    handOver(f, ser);
+                    return ser;
+                  })
+              .size();
+    } while (read == pageSize);
+  }
+
+  private synchronized void handOver(Fact f, long ser) {
+    registrations.forEach(r -> r.offer(f, ser));
+    tail = ser;
+  }
+
+  /** @return the serial reading starts after, if there are no followers yet */
+  private long head() {
+    LongSupplier upperBound = fetcher.upperBound();
+    return upperBound == null ? fetcher.retrieveLatestSer() : upperBound.getAsLong();
+  }
+
+  @Override
+  public void destroy() {
+    reader.shutdownNow();
+  }
+
+  @RequiredArgsConstructor
+  private static class Entry {
+    final Fact fact;
+
+    final long ser;
+  }
+
+  /** buffers up to a page of facts for a follower and delivers them on the delivery executor */
+  @RequiredArgsConstructor
+  private class Registration implements Runnable {
+
+    final Follower follower;
+
+    // all fields below are guarded by this
+    final Deque<Entry> queue = new ArrayDeque<>();
+
+    // serial the follower has to catch up to on its own, or -1
+    long catchupTo = -1;
+
+    // serial of the last fact skipped, as it cannot match
+    long skipped = -1;
+
+    boolean draining;
+
+    void behind(long ser) {
+      if (follower.serial().get() < ser) {
+        synchronized (this) {
+          catchupTo = ser;
+        }
+        schedule();
+      }
+    }
+
+    void offer(Fact f, long ser) {
+      synchronized (this) {
+        if (catchupTo >= 0) {
+          catchupTo = Math.max(catchupTo, ser);
+          return;
+        }
+        if (!follower.mightMatch(f)) {
+          skipped = ser;
+          if (!draining) {
+            follower.serial().accumulateAndGet(ser, Math::max);
+          }
+          return;
+        }
+        if (queue.size() >= pageSize) {
+          // too slow to keep up, the follower has to query for those facts on its own
+          queue.clear();
+          catchupTo = ser;
+        } else {
+          queue.add(new Entry(f, ser));
+        }
+      }
+      schedule();
+    }
+
+    private void schedule() {
+      synchronized (this) {
+        if (draining) {
+          return;
+        }
+        draining = true;
+      }
+      try {
+        delivery.execute(this);
+      } catch (RejectedExecutionException e) {
+        log.debug("Removing follower, as delivery was rejected: {}", e.getMessage());
+        registrations.remove(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (follower.isConnected()) {
+          Entry e;
+          long target;
+          synchronized (this) {
+            e = queue.poll();
+            target = catchupTo;
+            if (e == null && target < 0) {
+              follower.serial().accumulateAndGet(skipped, Math::max);
+              draining = false;
+              return;
+            }
+          }
+          if (e != null) {
+            deliver(e);
+          } else {
+            follower.catchupTo(target);
+            synchronized (this) {
+              if (catchupTo == target) {
+                catchupTo = -1;
+              }
+            }
+          }
+        }
+      } catch (Throwable e) {
+        log.debug("Removing follower due to exception: {}", e.getMessage());
+      }
+      registrations.remove(this);
+    }
+
+    private void deliver(Entry e) {
+      if (follower.serial().get() < e.ser) {
+        if (follower.test(e.fact)) {
+          follower.notify(e.fact);
+        }
+        follower.serial().set(e.ser);
+      }
+    }
+  }
+}
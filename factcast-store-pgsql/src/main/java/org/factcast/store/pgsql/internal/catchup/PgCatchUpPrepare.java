@@ -19,6 +19,7 @@
 import java.sql.SQLException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.factcast.core.subscription.SubscriptionRequestTO;
@@ -40,9 +41,11 @@ public class PgCatchUpPrepare {
 
   final SubscriptionRequestTO req;
 
+  final LongSupplier upperBound;
+
   @SuppressWarnings("ConstantConditions")
   public long prepareCatchup(AtomicLong serial) {
-    PgQueryBuilder b = new PgQueryBuilder(req.specs());
+    PgQueryBuilder b = new PgQueryBuilder(req.specs(), upperBound);
 
     String catchupSQL = b.catchupSQL();
     return jdbc.execute(
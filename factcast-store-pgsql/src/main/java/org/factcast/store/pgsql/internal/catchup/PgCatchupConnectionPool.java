@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.sql.Connection;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tomcat.jdbc.pool.PoolConfiguration;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgMetrics;
+import org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.GAUGE;
+import org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.OP;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * A size-bounded pool of connections dedicated to catchups, so that a lot of subscriptions catching
+ * up at once (for instance after a restart of many clients) queue up for a connection, rather than
+ * opening a database backend each.
+ *
+ * <p>The connections are configured like the ones of the application's DataSource.
+ */
+@Slf4j
+public class PgCatchupConnectionPool implements DisposableBean {
+
+  @NonNull private final org.apache.tomcat.jdbc.pool.DataSource pool;
+
+  @NonNull private final PgMetrics metrics;
+
+  @NonNull private final DataSource dataSource;
+
+  public PgCatchupConnectionPool(
+      @NonNull DataSource dataSource,
+      @NonNull PgConfigurationProperties props,
+      @NonNull PgMetrics metrics) {
+    if (!org.apache.tomcat.jdbc.pool.DataSource.class.isAssignableFrom(dataSource.getClass())) {
+      throw new IllegalArgumentException(
+          "expected "
+              + org.apache.tomcat.jdbc.pool.DataSource.class.getName()
+              + " , but got "
+              + dataSource.getClass().getName());
+    }
+    this.metrics = metrics;
+    pool =
+        new org.apache.tomcat.jdbc.pool.DataSource(
+            createPoolProperties(
+                ((org.apache.tomcat.jdbc.pool.DataSource) dataSource).getPoolProperties(), props));
+    this.dataSource =
+        new DelegatingDataSource(pool) {
+          @Override
+          public Connection getConnection() throws SQLException {
+            return get();
+          }
+        };
+
+    metrics.gauge(GAUGE.CATCHUP_CONNECTIONS_ACTIVE, pool, p -> p.getActive());
+    metrics.gauge(GAUGE.CATCHUP_CONNECTIONS_PENDING, pool, p -> p.getWaitCount());
+  }
+
+  @VisibleForTesting
+  static PoolProperties createPoolProperties(
+      @NonNull PoolConfiguration source, @NonNull PgConfigurationProperties props) {
+    PoolProperties p = new PoolProperties();
+    p.setName("factcast-catchup");
+    p.setUrl(source.getUrl());
+    p.setDriverClassName(source.getDriverClassName());
+    p.setUsername(source.getUsername());
+    p.setPassword(source.getPassword());
+    p.setConnectionProperties(source.getConnectionProperties());
+
+    int size = props.getCatchupConnectionPoolSize();
+    p.setMaxActive(size);
+    p.setMaxIdle(size);
+    p.setMinIdle(0);
+    p.setInitialSize(0);
+    // hand out connections in the order they were asked for
+    p.setFairQueue(true);
+    p.setMaxWait(props.getCatchupConnectionMaxWaitInMillis());
+
+    p.setTestOnBorrow(true);
+    p.setValidationQuery("SELECT 1");
+    // catchups may turn off autoCommit in order to use cursors
+    p.setDefaultAutoCommit(true);
+    p.setRollbackOnReturn(true);
+    p.setJdbcInterceptors("ConnectionState");
+    return p;
+  }
+
+  /**
+   * Borrows a connection, waiting for one to be returned if the pool is exhausted. Closing the
+   * connection returns it to the pool.
+   */
+  public Connection get() {
+    return metrics.time(OP.CATCHUP_CONNECTION_WAIT, this::borrow);
+  }
+
+  /** @return a DataSource that borrows from this pool */
+  public DataSource dataSource() {
+    return dataSource;
+  }
+
+  @SneakyThrows
+  private Connection borrow() {
+    try {
+      return pool.getConnection();
+    } catch (SQLException e) {
+      log.error("Cannot acquire catchup connection: {}", e.getMessage());
+      throw e;
+    }
+  }
+
+  @Override
+  public void destroy() {
+    pool.close();
+  }
+}
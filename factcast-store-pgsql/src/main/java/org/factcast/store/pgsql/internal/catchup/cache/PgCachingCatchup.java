@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.primitives.ImmutableLongArray;
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.factcast.core.Fact;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.TransformationException;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupConnectionPool;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.catchup.cache.PgCatchupCache.Serials;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.factcast.store.pgsql.internal.query.PgQueryBuilder;
+import org.factcast.store.pgsql.internal.rowmapper.PgFactExtractor;
+import org.factcast.store.pgsql.registry.transformation.chains.MissingTransformationInformation;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Catches up with the help of the {@link PgCatchupCache}: the facts whose serials are cached are
+ * selected by serial, the rest is left to the catchup of the delegate.
+ *
+ * <p>Catchups from scratch fill the cache, if there is no entry for their specs yet. Catchups from
+ * a later serial only use existing entries.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class PgCachingCatchup implements PgCatchup {
+
+  private static final int SCAN_FETCH_SIZE = 10_000;
+
+  @NonNull final PgCatchupFactory delegate;
+
+  @NonNull final PgCatchupCache cache;
+
+  @NonNull final PgCatchupConnectionPool pool;
+
+  @NonNull final PgConfigurationProperties props;
+
+  @NonNull final PgLatestSerialFetcher fetcher;
+
+  @NonNull final SubscriptionRequestTO request;
+
+  @NonNull final PgPostQueryMatcher postQueryMatcher;
+
+  @NonNull final SubscriptionImpl subscription;
+
+  @NonNull final AtomicLong serial;
+
+  @Override
+  public void run() {
+    try {
+      Serials cached =
+          serial.get() == 0 ? cache.get(request.specs(), this::scan) : cache.find(request.specs());
+      if (cached != null && serial.get() < cached.upTo()) {
+        deliver(cached);
+      }
+    } catch (Exception e) {
+      log.error("While fetching ", e);
+      return;
+    }
+    delegate.create(request, postQueryMatcher, subscription, serial).run();
+  }
+
+  @SneakyThrows
+  @VisibleForTesting
+  Serials scan() {
+    LongSupplier upperBound = fetcher.upperBound();
+    long upTo = upperBound != null ? upperBound.getAsLong() : fetcher.retrieveLatestSer();
+    PgQueryBuilder b = new PgQueryBuilder(request.specs(), () -> upTo);
+    ImmutableLongArray.Builder serials = ImmutableLongArray.builder();
+    long max = props.getCatchupCacheMaxSerials();
+
+    Connection connection = pool.get();
+    connection.setAutoCommit(false); // necessary for using cursors
+    SingleConnectionDataSource ds = new SingleConnectionDataSource(connection, true);
+    try {
+      val jdbc = new JdbcTemplate(ds);
+      jdbc.setFetchSize(SCAN_FETCH_SIZE);
+      val count = new AtomicLong();
+      jdbc.query(
+          b.createSerialsSQL(),
+          b.createStatementSetter(new AtomicLong(0)),
+          (RowCallbackHandler)
+              rs -> {
+                if (count.incrementAndGet() > max) {
+                  throw new TooManySerials(max);
+                }
+                serials.add(rs.getLong(PgConstants.COLUMN_SER));
+              });
+    } catch (TooManySerials e) {
+      log.debug("{} too many facts to cache: {}", request, e.getMessage());
+      // remembered as empty, so that the next catchups do not scan again
+      return new Serials(new long[0], 0);
+    } finally {
+      ds.destroy();
+    }
+    return new Serials(serials.build().toArray(), upTo);
+  }
+
+  private void deliver(Serials cached) throws TransformationException {
+    long[] serials = cached.serials();
+    int first = cached.indexAfter(serial.get());
+    if (first < serials.length) {
+      val jdbc = new JdbcTemplate(pool.dataSource());
+      val skipTesting = postQueryMatcher.canBeSkipped();
+      int pageSize = props.getPageSize();
+      for (int from = first; from < serials.length; from += pageSize) {
+        Long[] page =
+            Arrays.stream(
+                    Arrays.copyOfRange(serials, from, Math.min(from + pageSize, serials.length)))
+                .boxed()
+                .toArray(Long[]::new);
+        List<Fact> facts =
+            jdbc.query(
+                PgConstants.SELECT_FACTS_BY_SERIALS,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", page)),
+                new PgFactExtractor(serial));
+        notifyElements(facts, skipTesting);
+      }
+    }
+    // everything up to the end of the cached scan has been delivered
+    serial.accumulateAndGet(cached.upTo(), Math::max);
+  }
+
+  private void notifyElements(List<Fact> facts, boolean skipTesting)
+      throws TransformationException {
+    for (Fact f : facts) {
+      if (skipTesting || postQueryMatcher.test(f)) {
+        try {
+          subscription.notifyElement(f);
+        } catch (MissingTransformationInformation | TransformationException e) {
+          log.warn("{} transformation error: {}", request, e.getMessage());
+          subscription.notifyError(e);
+          throw e;
+        } catch (Throwable e) {
+          // debug level, because it happens regularly
+          // on
+          // disconnecting clients.
+          log.debug("{} exception from subscription: {}", request, e.getMessage());
+          try {
+            subscription.close();
+          } catch (Exception e1) {
+            log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
+          }
+          throw e;
+        }
+      } else {
+        log.trace("{} filtered id={}", request, f.id());
+      }
+    }
+  }
+
+  private static class TooManySerials extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    TooManySerials(long max) {
+      super("more than " + max);
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.Value;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.store.pgsql.internal.PgMetrics;
+import org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.OP;
+
+/**
+ * Caches the serials of the facts matching a list of FactSpecs, so that catchups of the same specs
+ * share one scan of the fact table. As facts are immutable and only ever appended, an entry stays
+ * valid, it just does not know about facts published after it was created.
+ *
+ * <p>The size is bounded by the total number of serials held.
+ */
+public class PgCatchupCache {
+
+  private final Cache<Set<SpecKey>, Serials> cache;
+
+  private final PgMetrics metrics;
+
+  public PgCatchupCache(long maxSerials, long expiryInMinutes, @NonNull PgMetrics metrics) {
+    this.metrics = metrics;
+    cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxSerials)
+            .<Set<SpecKey>, Serials>weigher((k, v) -> v.serials().length + 1)
+            .expireAfterWrite(expiryInMinutes, TimeUnit.MINUTES)
+            .build();
+  }
+
+  /** @return the cached serials for the given specs, or null */
+  public Serials find(@NonNull List<FactSpec> specs) {
+    return count(cache.getIfPresent(key(specs)));
+  }
+
+  /**
+   * @return the cached serials for the given specs. If they are missing, they are loaded, while
+   *     others asking for the same specs wait for the result.
+   */
+  @SneakyThrows
+  public Serials get(@NonNull List<FactSpec> specs, @NonNull Callable<Serials> loader) {
+    boolean[] loaded = new boolean[1];
+    Serials serials;
+    try {
+      serials =
+          cache.get(
+              key(specs),
+              () -> {
+                loaded[0] = true;
+                return loader.call();
+              });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw e.getCause();
+    }
+    metrics.counter(loaded[0] ? OP.CATCHUP_CACHE_MISS : OP.CATCHUP_CACHE_HIT).increment();
+    return serials;
+  }
+
+  private Serials count(Serials serials) {
+    metrics.counter(serials != null ? OP.CATCHUP_CACHE_HIT : OP.CATCHUP_CACHE_MISS).increment();
+    return serials;
+  }
+
+  /**
+   * @return a key that only depends on what the database query is built from (not version or filter
+   *     script), and not on order or duplicates.
+   */
+  @VisibleForTesting
+  static Set<SpecKey> key(@NonNull List<FactSpec> specs) {
+    return specs.stream()
+        .map(
+            s ->
+                new SpecKey(
+                    "*".equals(s.ns()) ? null : s.ns(),
+                    s.type(),
+                    s.aggId(),
+                    Collections.unmodifiableMap(new HashMap<>(s.meta()))))
+        .collect(ImmutableSet.toImmutableSet());
+  }
+
+  /** the attributes of a FactSpec the database query is built from */
+  @Value
+  static class SpecKey {
+
+    String ns;
+
+    String type;
+
+    UUID aggId;
+
+    @NonNull Map<String, String> meta;
+  }
+
+  @Value
+  public static class Serials {
+
+    /** in ascending order */
+    @NonNull long[] serials;
+
+    /** the serial up to which (inclusive) the fact table was scanned */
+    long upTo;
+
+    /** @return the index of the first serial greater than the given one */
+    public int indexAfter(long serial) {
+      int i = Arrays.binarySearch(serials, serial);
+      return i >= 0 ? i + 1 : -i - 1;
+    }
+  }
+}
@@ -23,18 +23,21 @@
 import org.factcast.core.subscription.SubscriptionRequestTO;
 import org.factcast.store.pgsql.PgConfigurationProperties;
 import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupConnectionPool;
 import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
-import org.factcast.store.pgsql.internal.listen.PgConnectionSupplier;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
 
 @RequiredArgsConstructor
 // no code in here, just generated @nonnull checks
 @Generated
 public class PgFetchingCatchUpFactory implements PgCatchupFactory {
 
-  @NonNull final PgConnectionSupplier connectionSupplier;
+  @NonNull final PgCatchupConnectionPool pool;
 
   @NonNull final PgConfigurationProperties props;
 
+  @NonNull final PgLatestSerialFetcher fetcher;
+
   @Override
   public PgFetchingCatchup create(
       @NonNull SubscriptionRequestTO request,
@@ -42,6 +45,6 @@ public PgFetchingCatchup create(
       @NonNull SubscriptionImpl subscription,
       @NonNull AtomicLong serial) {
     return new PgFetchingCatchup(
-        connectionSupplier, props, request, postQueryMatcher, subscription, serial);
+        pool, props, fetcher, request, postQueryMatcher, subscription, serial);
   }
 }
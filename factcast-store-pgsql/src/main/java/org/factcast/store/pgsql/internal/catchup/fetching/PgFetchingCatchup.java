@@ -16,6 +16,7 @@
 package org.factcast.store.pgsql.internal.catchup.fetching;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.sql.Connection;
 import java.util.concurrent.atomic.AtomicLong;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -29,11 +30,11 @@
 import org.factcast.store.pgsql.PgConfigurationProperties;
 import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
 import org.factcast.store.pgsql.internal.catchup.PgCatchup;
-import org.factcast.store.pgsql.internal.listen.PgConnectionSupplier;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupConnectionPool;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
 import org.factcast.store.pgsql.internal.query.PgQueryBuilder;
 import org.factcast.store.pgsql.internal.rowmapper.PgFactExtractor;
 import org.factcast.store.pgsql.registry.transformation.chains.MissingTransformationInformation;
-import org.postgresql.jdbc.PgConnection;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.datasource.SingleConnectionDataSource;
@@ -42,10 +43,12 @@
 @RequiredArgsConstructor
 public class PgFetchingCatchup implements PgCatchup {
 
-  @NonNull final PgConnectionSupplier connectionSupplier;
+  @NonNull final PgCatchupConnectionPool pool;
 
   @NonNull final PgConfigurationProperties props;
 
+  @NonNull final PgLatestSerialFetcher fetcher;
+
   @NonNull final SubscriptionRequestTO req;
 
   @NonNull final PgPostQueryMatcher postQueryMatcher;
@@ -58,10 +61,10 @@ public class PgFetchingCatchup implements PgCatchup {
   @Override
   public void run() {
 
-    PgConnection connection = connectionSupplier.get();
+    Connection connection = pool.get();
     connection.setAutoCommit(false); // necessary for using cursors
 
-    // connection may stay open quite a while, and we do not want a CPool to interfere
+    // connection is used for the whole catchup and returned to the pool on destroy
     SingleConnectionDataSource ds = new SingleConnectionDataSource(connection, true);
 
     try {
@@ -79,7 +82,7 @@ void fetch(JdbcTemplate jdbc) {
     jdbc.setFetchSize(props.getPageSize());
     val skipTesting = postQueryMatcher.canBeSkipped();
 
-    PgQueryBuilder b = new PgQueryBuilder(req.specs());
+    PgQueryBuilder b = new PgQueryBuilder(req.specs(), fetcher.upperBound());
     val extractor = new PgFactExtractor(serial);
     String catchupSQL = b.createSQL();
     jdbc.query(
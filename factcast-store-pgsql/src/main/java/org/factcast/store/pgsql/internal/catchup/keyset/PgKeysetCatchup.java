@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.keyset;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.factcast.core.Fact;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.TransformationException;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.factcast.store.pgsql.internal.query.PgQueryBuilder;
+import org.factcast.store.pgsql.internal.rowmapper.PgFactExtractor;
+import org.factcast.store.pgsql.registry.transformation.chains.MissingTransformationInformation;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Pages through the matching facts by serial ({@code ser > ? ORDER BY ser LIMIT ?}), using a pooled
+ * connection per page only. Neither a temporary table nor a cursor is needed, and no connection is
+ * held while the facts of a page are sent to the subscriber.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class PgKeysetCatchup implements PgCatchup {
+
+  @NonNull final JdbcTemplate jdbc;
+
+  @NonNull final PgConfigurationProperties props;
+
+  @NonNull final PgLatestSerialFetcher fetcher;
+
+  @NonNull final SubscriptionRequestTO request;
+
+  @NonNull final PgPostQueryMatcher postQueryMatcher;
+
+  @NonNull final SubscriptionImpl subscription;
+
+  @NonNull final AtomicLong serial;
+
+  @SneakyThrows
+  @Override
+  public void run() {
+    try {
+      PgQueryBuilder b = new PgQueryBuilder(request.specs(), fetcher.upperBound());
+      String sql = b.createPageSQL();
+      val skipTesting = postQueryMatcher.canBeSkipped();
+      List<Fact> facts;
+      do {
+        facts = fetchPage(b, sql);
+        notifyElements(facts, skipTesting);
+      } while (facts.size() == props.getPageSize());
+    } catch (Exception e) {
+      log.error("While fetching ", e);
+    }
+  }
+
+  @VisibleForTesting
+  List<Fact> fetchPage(PgQueryBuilder b, String sql) {
+    Stopwatch sw = Stopwatch.createStarted();
+    int pageSize = props.getPageSize();
+    long from = serial.get();
+    List<Fact> list =
+        jdbc.query(sql, b.createPageStatementSetter(serial, pageSize), new PgFactExtractor(serial));
+    log.trace(
+        "{} fetched next page of Facts limit={}, ser>{} in {}ms",
+        request,
+        pageSize,
+        from,
+        sw.stop().elapsed(TimeUnit.MILLISECONDS));
+    return list;
+  }
+
+  @VisibleForTesting
+  void notifyElements(List<Fact> facts, boolean skipTesting) throws TransformationException {
+    for (Fact f : facts) {
+      if (skipTesting || postQueryMatcher.test(f)) {
+        try {
+          subscription.notifyElement(f);
+        } catch (MissingTransformationInformation | TransformationException e) {
+          log.warn("{} transformation error: {}", request, e.getMessage());
+          subscription.notifyError(e);
+          throw e;
+        } catch (Throwable e) {
+          // debug level, because it happens regularly
+          // on
+          // disconnecting clients.
+          log.debug("{} exception from subscription: {}", request, e.getMessage());
+          try {
+            subscription.close();
+          } catch (Exception e1) {
+            log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
+          }
+          throw e;
+        }
+      } else {
+        log.trace("{} filtered id={}", request, f.id());
+      }
+    }
+  }
+}
@@ -31,7 +31,8 @@
 import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
 import org.factcast.store.pgsql.internal.catchup.PgCatchUpPrepare;
 import org.factcast.store.pgsql.internal.catchup.PgCatchup;
-import org.factcast.store.pgsql.internal.listen.PgConnectionSupplier;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupConnectionPool;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
 import org.factcast.store.pgsql.registry.transformation.chains.MissingTransformationInformation;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.SingleConnectionDataSource;
@@ -40,10 +41,12 @@
 @RequiredArgsConstructor
 public class PgPagedCatchup implements PgCatchup {
 
-  @NonNull final PgConnectionSupplier connectionSupplier;
+  @NonNull final PgCatchupConnectionPool pool;
 
   @NonNull final PgConfigurationProperties props;
 
+  @NonNull final PgLatestSerialFetcher fetcher;
+
   @NonNull final SubscriptionRequestTO request;
 
   @NonNull final PgPostQueryMatcher postQueryMatcher;
@@ -56,13 +59,13 @@ public class PgPagedCatchup implements PgCatchup {
   @Override
   public void run() {
 
-    SingleConnectionDataSource ds = new SingleConnectionDataSource(connectionSupplier.get(), true);
+    SingleConnectionDataSource ds = new SingleConnectionDataSource(pool.get(), true);
+    val jdbc = new JdbcTemplate(ds);
     try {
-      val jdbc = new JdbcTemplate(ds);
 
       jdbc.execute("CREATE TEMPORARY TABLE catchup(ser bigint)");
 
-      PgCatchUpPrepare prep = new PgCatchUpPrepare(jdbc, request);
+      PgCatchUpPrepare prep = new PgCatchUpPrepare(jdbc, request, fetcher.upperBound());
       // first collect all the sers
       val numberOfFactsToCatchUp = prep.prepareCatchup(serial);
       // and AFTERWARDs create the inmem index
@@ -110,6 +113,12 @@ public void run() {
         }
       }
     } finally {
+      try {
+        // the connection is pooled, so the temporary table would outlive this catchup
+        jdbc.execute("DROP TABLE IF EXISTS catchup");
+      } catch (Exception e) {
+        log.warn("{} cannot drop temporary catchup table: {}", request, e.getMessage());
+      }
       ds.destroy();
     }
   }
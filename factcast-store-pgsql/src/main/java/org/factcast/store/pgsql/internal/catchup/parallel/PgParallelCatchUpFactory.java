@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.parallel;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupConnectionPool;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Creates {@link PgParallelCatchup}s, fetching their chunks on a pool of as many threads as there
+ * are catchup connections, as a chunk only occupies a thread while reading from a connection.
+ */
+public class PgParallelCatchUpFactory implements PgCatchupFactory, DisposableBean {
+
+  @NonNull final PgCatchupConnectionPool pool;
+
+  @NonNull final PgConfigurationProperties props;
+
+  @NonNull final PgLatestSerialFetcher fetcher;
+
+  @NonNull final ExecutorService executor;
+
+  public PgParallelCatchUpFactory(
+      @NonNull PgCatchupConnectionPool pool,
+      @NonNull PgConfigurationProperties props,
+      @NonNull PgLatestSerialFetcher fetcher) {
+    this.pool = pool;
+    this.props = props;
+    this.fetcher = fetcher;
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            props.getCatchupConnectionPoolSize(),
+            props.getCatchupConnectionPoolSize(),
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("catchup-chunk-%d").setDaemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+    this.executor = executor;
+  }
+
+  @Override
+  public PgParallelCatchup create(
+      @NonNull SubscriptionRequestTO request,
+      @NonNull PgPostQueryMatcher postQueryMatcher,
+      @NonNull SubscriptionImpl subscription,
+      @NonNull AtomicLong serial) {
+    return new PgParallelCatchup(
+        pool, props, fetcher, executor, request, postQueryMatcher, subscription, serial);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.parallel;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.factcast.core.Fact;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.TransformationException;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupConnectionPool;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.factcast.store.pgsql.internal.query.PgQueryBuilder;
+import org.factcast.store.pgsql.internal.rowmapper.PgFactExtractor;
+import org.factcast.store.pgsql.registry.transformation.chains.MissingTransformationInformation;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Splits the range of serials to catch up with into chunks of {@code catchupParallelChunkSize}, and
+ * fetches up to {@code catchupParallelism} of them at the same time. The facts are passed on
+ * strictly in the order of their serials: a chunk is only delivered after all chunks before it,
+ * while the chunks after it buffer up to {@code catchupParallelBufferSizeInMegabytes} each.
+ *
+ * <p>A chunk only holds a connection while it is reading. Once its buffer is full, it returns the
+ * connection and its thread, and continues after the last serial read as soon as the buffer has
+ * room again. That way, chunks waiting for the ones before them never keep those from getting a
+ * connection or a thread.
+ *
+ * <p>The last chunk is open-ended, so that facts published after the catchup started are not
+ * missed.
+ *
+ * <p>The subscription's serial follows every fact delivered, so that if a chunk fails, nothing that
+ * was delivered before is delivered again. The failure is passed on to the subscription.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class PgParallelCatchup implements PgCatchup {
+
+  // marks the end of a chunk, compared by identity
+  private static final Row END =
+      new Row(Fact.builder().id(new UUID(0, 0)).ns("_").buildWithoutPayload(), 0);
+
+  private static final long POLL_MILLIS = 100;
+
+  @NonNull final PgCatchupConnectionPool pool;
+
+  @NonNull final PgConfigurationProperties props;
+
+  @NonNull final PgLatestSerialFetcher fetcher;
+
+  @NonNull final ExecutorService executor;
+
+  @NonNull final SubscriptionRequestTO request;
+
+  @NonNull final PgPostQueryMatcher postQueryMatcher;
+
+  @NonNull final SubscriptionImpl subscription;
+
+  @NonNull final AtomicLong serial;
+
+  private final AtomicBoolean stopped = new AtomicBoolean(false);
+
+  @SneakyThrows
+  @Override
+  public void run() {
+    LongSupplier upperBound = fetcher.upperBound();
+    long to = upperBound != null ? upperBound.getAsLong() : fetcher.retrieveLatestSer();
+    Deque<Chunk> chunks = new ArrayDeque<>(split(serial.get(), to));
+    Deque<Chunk> inFlight = new ArrayDeque<>();
+    val skipTesting = postQueryMatcher.canBeSkipped();
+    try {
+      while (!chunks.isEmpty() || !inFlight.isEmpty()) {
+        while (inFlight.size() < props.getCatchupParallelism() && !chunks.isEmpty()) {
+          Chunk c = chunks.poll();
+          schedule(c, upperBound);
+          inFlight.add(c);
+        }
+        deliver(inFlight.poll(), upperBound, skipTesting);
+      }
+    } catch (Exception e) {
+      log.error("While fetching ", e);
+      // no-op, if the subscription was closed already
+      subscription.notifyError(e);
+    } finally {
+      // lets chunks still being fetched give up
+      stopped.set(true);
+    }
+  }
+
+  @VisibleForTesting
+  List<Chunk> split(long from, long to) {
+    long size = props.getCatchupParallelChunkSize();
+    long bufferSize = props.getCatchupParallelBufferSizeInMegabytes() * 1024L * 1024L;
+    List<Chunk> chunks = new LinkedList<>();
+    long start = from;
+    while (start + size < to) {
+      chunks.add(new Chunk(start, start + size, bufferSize));
+      start += size;
+    }
+    chunks.add(new Chunk(start, null, bufferSize));
+    return chunks;
+  }
+
+  /** fetches from the chunk, unless it is being fetched already, complete or full */
+  private void schedule(@NonNull Chunk c, LongSupplier upperBound) {
+    if (c.startFetching()) {
+      executor.execute(() -> fetch(c, upperBound));
+    }
+  }
+
+  private void fetch(@NonNull Chunk c, LongSupplier upperBound) {
+    try {
+      if (!stopped.get() && query(c, upperBound)) {
+        c.complete();
+      } else {
+        c.pause();
+      }
+    } catch (Throwable e) {
+      c.fail(e);
+    }
+  }
+
+  /**
+   * reads the facts after the last serial read into the chunk, while it has room
+   *
+   * @return true, if all facts of the chunk have been read
+   */
+  @SneakyThrows
+  @VisibleForTesting
+  boolean query(@NonNull Chunk c, LongSupplier upperBound) {
+    Connection connection = pool.get();
+    connection.setAutoCommit(false); // necessary for using cursors
+    SingleConnectionDataSource ds = new SingleConnectionDataSource(connection, true);
+    try {
+      val jdbc = new JdbcTemplate(ds);
+      jdbc.setFetchSize(props.getPageSize());
+      PgQueryBuilder b =
+          new PgQueryBuilder(request.specs(), c.to != null ? () -> c.to : upperBound);
+      val extractor = new PgFactExtractor(c.serial);
+      return Boolean.TRUE.equals(
+          jdbc.query(
+              b.createSQL(),
+              b.createStatementSetter(new AtomicLong(c.serial.get())),
+              (ResultSetExtractor<Boolean>)
+                  (ResultSet rs) -> {
+                    while (!stopped.get() && c.hasRoom()) {
+                      if (!rs.next()) {
+                        return true;
+                      }
+                      Fact f = extractor.mapRow(rs, 0);
+                      c.add(f, c.serial.get());
+                    }
+                    return false;
+                  }));
+    } finally {
+      ds.destroy();
+    }
+  }
+
+  @SneakyThrows
+  private void deliver(Chunk c, LongSupplier upperBound, boolean skipTesting) {
+    Row r;
+    while ((r = next(c, upperBound)) != END) {
+      Fact f = r.fact;
+      if (skipTesting || postQueryMatcher.test(f)) {
+        try {
+          subscription.notifyElement(f);
+        } catch (MissingTransformationInformation | TransformationException e) {
+          log.warn("{} transformation error: {}", request, e.getMessage());
+          subscription.notifyError(e);
+          throw e;
+        } catch (Throwable e) {
+          // debug level, because it happens regularly
+          // on
+          // disconnecting clients.
+          log.debug("{} exception from subscription: {}", request, e.getMessage());
+          try {
+            subscription.close();
+          } catch (Exception e1) {
+            log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
+          }
+          throw e;
+        }
+      } else {
+        log.trace("{} filtered id={}", request, f.id());
+      }
+      // so that phase 2 continues right after this fact, should a later one fail
+      serial.accumulateAndGet(r.serial, Math::max);
+    }
+    // everything up to the end of the chunk has been delivered
+    serial.accumulateAndGet(c.to != null ? c.to : c.serial.get(), Math::max);
+  }
+
+  /** @return the next fact of the chunk, or END, after the last one */
+  private Row next(Chunk c, LongSupplier upperBound) throws Throwable {
+    Row f;
+    do {
+      // the chunk might have paused, while its buffer was full
+      schedule(c, upperBound);
+      f = c.poll(POLL_MILLIS);
+    } while (f == null);
+    return f;
+  }
+
+  /** a fact along with its serial, so that the serial does not need to be parsed from its header */
+  @RequiredArgsConstructor
+  @Getter(AccessLevel.PACKAGE)
+  @VisibleForTesting
+  static final class Row {
+    final Fact fact;
+
+    final long serial;
+  }
+
+  @Getter(AccessLevel.PACKAGE)
+  @VisibleForTesting
+  static class Chunk {
+    /** exclusive */
+    final long from;
+
+    /** inclusive, null if open-ended */
+    final Long to;
+
+    final long bufferSizeInBytes;
+
+    /** the serial of the last fact fetched */
+    final AtomicLong serial;
+
+    // all fields below are guarded by this
+    private final Deque<Row> buffer = new ArrayDeque<>();
+
+    private long bufferedBytes;
+
+    private boolean fetching;
+
+    private boolean complete;
+
+    private Throwable error;
+
+    Chunk(long from, Long to, long bufferSizeInBytes) {
+      this.from = from;
+      this.to = to;
+      this.bufferSizeInBytes = bufferSizeInBytes;
+      serial = new AtomicLong(from);
+    }
+
+    synchronized boolean hasRoom() {
+      return bufferedBytes < bufferSizeInBytes;
+    }
+
+    /** @return true, if the caller is supposed to fetch */
+    synchronized boolean startFetching() {
+      if (fetching || complete || error != null || !hasRoom()) {
+        return false;
+      }
+      fetching = true;
+      return true;
+    }
+
+    synchronized void add(@NonNull Fact f, long serial) {
+      buffer.add(new Row(f, serial));
+      bufferedBytes += size(f);
+      notifyAll();
+    }
+
+    synchronized void pause() {
+      fetching = false;
+      notifyAll();
+    }
+
+    synchronized void complete() {
+      fetching = false;
+      complete = true;
+      notifyAll();
+    }
+
+    synchronized void fail(@NonNull Throwable e) {
+      fetching = false;
+      error = e;
+      notifyAll();
+    }
+
+    /**
+     * @return the next fact, END after the last one, or null if there was none within the given
+     *     time
+     */
+    synchronized Row poll(long millis) throws Throwable {
+      if (buffer.isEmpty() && !complete && error == null && fetching) {
+        wait(millis);
+      }
+      Row r = buffer.poll();
+      if (r != null) {
+        bufferedBytes -= size(r.fact);
+        return r;
+      }
+      if (error != null) {
+        throw error;
+      }
+      return complete ? END : null;
+    }
+
+    private static long size(Fact f) {
+      return f.jsonHeader().length() + (long) f.jsonPayload().length();
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.pipelined;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Wraps the catchups of the given factory in a {@link PgPipelinedCatchup}. At most concurrency
+ * catchups are pipelined at the same time, on a pool of two threads each, so that a pipeline never
+ * waits for a thread held by another one.
+ */
+public class PgPipelinedCatchUpFactory implements PgCatchupFactory, DisposableBean {
+
+  @NonNull final PgCatchupFactory delegate;
+
+  final int depth;
+
+  @NonNull final ExecutorService executor;
+
+  @NonNull final Semaphore pipelines;
+
+  public PgPipelinedCatchUpFactory(@NonNull PgCatchupFactory delegate, int depth, int concurrency) {
+    this(delegate, depth, concurrency, newExecutor(concurrency));
+  }
+
+  PgPipelinedCatchUpFactory(
+      @NonNull PgCatchupFactory delegate,
+      int depth,
+      int concurrency,
+      @NonNull ExecutorService executor) {
+    if (depth < 1) {
+      throw new IllegalArgumentException("depth must be positive, but was " + depth);
+    }
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("concurrency must be positive, but was " + concurrency);
+    }
+    this.delegate = delegate;
+    this.depth = depth;
+    this.executor = executor;
+    pipelines = new Semaphore(concurrency);
+  }
+
+  private static ExecutorService newExecutor(int concurrency) {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            2 * concurrency,
+            2 * concurrency,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setNameFormat("catchup-pipeline-%d")
+                .setDaemon(true)
+                .build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  @Override
+  public PgPipelinedCatchup create(
+      @NonNull SubscriptionRequestTO request,
+      @NonNull PgPostQueryMatcher postQueryMatcher,
+      @NonNull SubscriptionImpl subscription,
+      @NonNull AtomicLong serial) {
+    return new PgPipelinedCatchup(
+        delegate, executor, pipelines, depth, request, postQueryMatcher, subscription, serial);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+}
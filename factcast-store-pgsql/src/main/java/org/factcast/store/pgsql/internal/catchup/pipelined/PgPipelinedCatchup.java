@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.pipelined;
+
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.TransformationException;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.registry.transformation.chains.MissingTransformationInformation;
+
+/**
+ * Runs a catchup in three stages, connected by bounded queues: reading from the database (the
+ * delegate catchup), transformation and sending to the subscriber. That way, the database read can
+ * stay ahead of a slow subscriber or an expensive transformation, while the number of facts in
+ * memory is limited by the depth of the queues.
+ *
+ * <p>{@link #run()} returns after the last fact was sent, or when one of the stages failed. If no
+ * pipeline is available, the delegate catchup runs on the calling thread instead.
+ */
+@Slf4j
+public class PgPipelinedCatchup implements PgCatchup {
+
+  // marks the end of the stream, compared by identity
+  private static final Fact END = Fact.builder().id(new UUID(0, 0)).ns("_").buildWithoutPayload();
+
+  private static final long POLL_MILLIS = 100;
+
+  @NonNull final PgCatchupFactory delegate;
+
+  @NonNull final ExecutorService executor;
+
+  /** one permit per pipeline the executor can run at the same time */
+  @NonNull final Semaphore pipelines;
+
+  @NonNull final SubscriptionRequestTO request;
+
+  @NonNull final PgPostQueryMatcher postQueryMatcher;
+
+  @NonNull final SubscriptionImpl subscription;
+
+  @NonNull final AtomicLong serial;
+
+  private final BlockingQueue<Fact> fetched;
+
+  private final BlockingQueue<Fact> transformed;
+
+  private final AtomicBoolean failed = new AtomicBoolean(false);
+
+  private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+  public PgPipelinedCatchup(
+      @NonNull PgCatchupFactory delegate,
+      @NonNull ExecutorService executor,
+      @NonNull Semaphore pipelines,
+      int depth,
+      @NonNull SubscriptionRequestTO request,
+      @NonNull PgPostQueryMatcher postQueryMatcher,
+      @NonNull SubscriptionImpl subscription,
+      @NonNull AtomicLong serial) {
+    this.delegate = delegate;
+    this.executor = executor;
+    this.pipelines = pipelines;
+    this.request = request;
+    this.postQueryMatcher = postQueryMatcher;
+    this.subscription = subscription;
+    this.serial = serial;
+    fetched = new ArrayBlockingQueue<>(depth);
+    transformed = new ArrayBlockingQueue<>(depth);
+  }
+
+  @Override
+  public void run() {
+    if (!pipelines.tryAcquire()) {
+      log.debug("{} no pipeline available, catching up in one thread", request);
+      delegate.create(request, postQueryMatcher, subscription, serial).run();
+      return;
+    }
+    try {
+      runPipelined();
+    } finally {
+      pipelines.release();
+    }
+  }
+
+  @SneakyThrows
+  private void runPipelined() {
+    Future<?> transforming = executor.submit(this::transform);
+    Future<?> sending = executor.submit(this::send);
+
+    // transformation is left to the next stage
+    SubscriptionImpl stage = SubscriptionImpl.on(this::enqueue, f -> f);
+    try {
+      delegate.create(request, postQueryMatcher, stage, serial).run();
+    } finally {
+      put(fetched, END);
+      transforming.get();
+      sending.get();
+    }
+  }
+
+  private void enqueue(@NonNull Fact f) {
+    if (!put(fetched, f)) {
+      throw new IllegalStateException("catchup pipeline stopped");
+    }
+  }
+
+  private void transform() {
+    try {
+      Fact f;
+      while ((f = take(fetched)) != END) {
+        put(transformed, subscription.transform(f));
+      }
+    } catch (MissingTransformationInformation | TransformationException e) {
+      log.warn("{} transformation error: {}", request, e.getMessage());
+      fail(e);
+    } catch (Throwable e) {
+      log.warn("{} exception while transforming: {}", request, e.getMessage());
+      fail(e);
+    } finally {
+      put(transformed, END);
+    }
+  }
+
+  private void send() {
+    try {
+      Fact f;
+      while ((f = take(transformed)) != END) {
+        subscription.notifyTransformedElement(f);
+      }
+      // errors are passed on from here, so that the observer is only called from one thread
+      Throwable e = error.get();
+      if (e != null) {
+        subscription.notifyError(e);
+      }
+    } catch (Throwable e) {
+      // debug level, because it happens regularly
+      // on
+      // disconnecting clients.
+      log.debug("{} exception from subscription: {}", request, e.getMessage());
+      fail(e);
+      try {
+        subscription.close();
+      } catch (Exception e1) {
+        log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
+      }
+    }
+  }
+
+  private void fail(Throwable e) {
+    error.compareAndSet(null, e);
+    failed.set(true);
+  }
+
+  /** @return false, if the pipeline failed before the fact could be put */
+  @SneakyThrows
+  private boolean put(BlockingQueue<Fact> queue, Fact f) {
+    while (!failed.get()) {
+      if (queue.offer(f, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** @return the next fact, or END, if the pipeline failed */
+  @SneakyThrows
+  private Fact take(BlockingQueue<Fact> queue) {
+    while (!failed.get()) {
+      Fact f = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+      if (f != null) {
+        return f;
+      }
+    }
+    return END;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.segment;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.TransformationException;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.query.PgQueryBuilder;
+import org.factcast.store.pgsql.internal.segment.PgFactSegmentCache;
+import org.factcast.store.pgsql.registry.transformation.chains.MissingTransformationInformation;
+
+/**
+ * Catches up from the {@link PgFactSegmentCache} as far as it covers, and leaves the rest to the
+ * catchup of the delegate.
+ *
+ * <p>As reading from the cache means visiting every cached fact, it is only used for specs
+ * constrained by namespace only. Narrower specs are better served by the indexes of the database.
+ * Only the headers are parsed to test the specs (not even those, if a spec matches all facts),
+ * payloads are decoded for matching facts only.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class PgSegmentCatchup implements PgCatchup {
+
+  @NonNull final PgCatchupFactory delegate;
+
+  @NonNull final PgFactSegmentCache cache;
+
+  @NonNull final SubscriptionRequestTO request;
+
+  @NonNull final PgPostQueryMatcher postQueryMatcher;
+
+  @NonNull final SubscriptionImpl subscription;
+
+  @NonNull final AtomicLong serial;
+
+  // true, if an exception was thrown by the subscription, which has been taken care of already
+  private boolean subscriptionFailed;
+
+  @Override
+  public void run() {
+    long upTo = cache.coveredUpTo();
+    if (serial.get() < upTo && isBroad(request.specs())) {
+      try {
+        fetch(upTo);
+      } catch (Exception e) {
+        log.error("While fetching ", e);
+        if (!subscriptionFailed) {
+          subscription.notifyError(e);
+        }
+        return;
+      }
+    }
+    delegate.create(request, postQueryMatcher, subscription, serial).run();
+  }
+
+  /** @return true, if no spec is constrained by more than the namespace */
+  static boolean isBroad(@NonNull List<FactSpec> specs) {
+    return specs.stream()
+        .allMatch(s -> s.type() == null && s.aggId() == null && s.meta().isEmpty());
+  }
+
+  private void fetch(long upTo) {
+    boolean matchesAll = request.specs().stream().anyMatch(s -> "*".equals(s.ns()));
+    Predicate<Fact> queryMatcher = new PgQueryBuilder(request.specs()).createPredicate();
+    boolean skipTesting = postQueryMatcher.canBeSkipped();
+    boolean covered =
+        cache.read(
+            serial.get(),
+            upTo,
+            (ser, b, headerStart, headerLength, payloadLength) -> {
+              String header = PgFactSegmentCache.decode(b, headerStart, headerLength);
+              if (matchesAll || queryMatcher.test(Fact.of(header, "{}"))) {
+                Fact f =
+                    Fact.of(
+                        header,
+                        PgFactSegmentCache.decode(b, headerStart + headerLength, payloadLength));
+                if (skipTesting || postQueryMatcher.test(f)) {
+                  notifyElement(f);
+                } else {
+                  log.trace("{} filtered id={}", request, f.id());
+                }
+              }
+              serial.set(ser);
+              return true;
+            });
+    if (covered) {
+      // everything up to the end of the covered range has been delivered
+      serial.accumulateAndGet(upTo, Math::max);
+    } else {
+      log.debug("{} facts after SER={} are no longer cached", request, serial.get());
+    }
+  }
+
+  private void notifyElement(Fact f) {
+    try {
+      subscription.notifyElement(f);
+    } catch (MissingTransformationInformation | TransformationException e) {
+      log.warn("{} transformation error: {}", request, e.getMessage());
+      subscriptionFailed = true;
+      subscription.notifyError(e);
+      throw e;
+    } catch (Throwable e) {
+      subscriptionFailed = true;
+      // debug level, because it happens regularly
+      // on
+      // disconnecting clients.
+      log.debug("{} exception from subscription: {}", request, e.getMessage());
+      try {
+        subscription.close();
+      } catch (Exception e1) {
+        log.warn("{} exception while closing subscription: {}", request, e1.getMessage());
+      }
+      throw e;
+    }
+  }
+}
@@ -15,18 +15,24 @@
  */
 package org.factcast.store.pgsql.internal.listen;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.eventbus.EventBus;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.core.util.FactCastJson;
 import org.factcast.store.pgsql.PgConfigurationProperties;
 import org.factcast.store.pgsql.internal.PgConstants;
 import org.factcast.store.pgsql.internal.PgMetrics;
@@ -37,7 +43,8 @@
 import org.springframework.beans.factory.InitializingBean;
 
 /**
- * Listens (sql LISTEN command) to a channel on Postgresql and passes a trigger on an EventBus.
+ * Listens (sql LISTEN command) to a channel on Postgresql and passes a trigger on to the {@link
+ * PgNotificationDispatcher}.
  *
  * <p>This trigger then is supposed to "encourage" active subscriptions to query for new Facts from
  * PG.
@@ -51,12 +58,14 @@ public class PgListener implements InitializingBean, DisposableBean {
 
   @NonNull final PgConnectionSupplier pgConnectionSupplier;
 
-  @NonNull final EventBus eventBus;
+  @NonNull final PgNotificationDispatcher dispatcher;
 
   @NonNull final PgConfigurationProperties props;
 
   @NonNull final PgMetrics pgMetrics;
 
+  private static final JsonNode EMPTY_PAYLOAD = FactCastJson.newObjectNode();
+
   private final AtomicBoolean running = new AtomicBoolean(true);
 
   private Thread listenerThread;
@@ -128,10 +137,36 @@ protected void informSubscribersAboutFreshConnection() {
 
   @VisibleForTesting
   protected void informSubscriberOfChannelNotifications(PGNotification[] notifications) {
-    if (Arrays.stream(notifications).anyMatch(n -> PgConstants.CHANNEL_NAME.equals(n.getName()))) {
+    List<PGNotification> factNotifications =
+        Arrays.stream(notifications)
+            .filter(n -> PgConstants.CHANNEL_NAME.equals(n.getName()))
+            .collect(Collectors.toList());
+    if (!factNotifications.isEmpty()) {
       log.trace("notifying consumers for '{}'", PgConstants.CHANNEL_NAME);
-      postEvent(PgConstants.CHANNEL_NAME);
+      postEvent(PgConstants.CHANNEL_NAME, parseFacts(factNotifications));
+    }
+  }
+
+  /**
+   * @return the inserted facts (with an empty payload), as sent by the insert trigger, or an empty
+   *     list, if any of the payloads cannot be parsed.
+   */
+  @VisibleForTesting
+  static List<Fact> parseFacts(List<PGNotification> notifications) {
+    List<Fact> facts = new ArrayList<>(notifications.size());
+    for (PGNotification n : notifications) {
+      try {
+        JsonNode header = FactCastJson.readTree(n.getParameter()).get("header");
+        if (header == null || !header.isObject()) {
+          return Collections.emptyList();
+        }
+        facts.add(Fact.of(header, EMPTY_PAYLOAD));
+      } catch (Exception e) {
+        log.debug("cannot parse notification payload: {}", e.getMessage());
+        return Collections.emptyList();
+      }
     }
+    return facts;
   }
 
   // try to receive Postgres notifications until timeout is over. In case we
@@ -187,8 +222,12 @@ protected void sleep() {
 
   @VisibleForTesting
   protected void postEvent(final String name) {
+    postEvent(name, Collections.emptyList());
+  }
+
+  private void postEvent(final String name, final List<Fact> facts) {
     if (running.get()) {
-      eventBus.post(new FactInsertionEvent(name));
+      dispatcher.post(new FactInsertionEvent(name, facts));
     }
   }
 
@@ -198,6 +237,16 @@ public static class FactInsertionEvent {
     @SuppressWarnings("unused")
     @Getter
     final String name;
+
+    /**
+     * the facts inserted (with an empty payload), if known. An empty list means, that subscribers
+     * cannot tell if there is anything of interest for them.
+     */
+    @Getter @NonNull final List<Fact> facts;
+
+    public FactInsertionEvent(String name) {
+      this(name, Collections.emptyList());
+    }
   }
 
   @Override
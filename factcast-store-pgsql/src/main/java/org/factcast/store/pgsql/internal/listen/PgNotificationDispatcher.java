@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.listen;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.internal.PgMetrics;
+import org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.OP;
+import org.factcast.store.pgsql.internal.listen.PgListener.FactInsertionEvent;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Passes {@link FactInsertionEvent}s from the {@link PgListener} to the registered listeners, on a
+ * fixed number of threads.
+ *
+ * <p>Every listener gets the events in order, one at a time. Events posted while a listener is
+ * still busy are coalesced into one, so that bursts of notifications neither queue up nor spawn
+ * threads. The time from posting an event to passing it to a listener is recorded as dispatch lag.
+ *
+ * <p>The same threads time the delayed queries of following subscriptions, see {@link
+ * #scheduler()}. Listeners are expected to return quickly, handing blocking work over to other
+ * threads.
+ */
+@Slf4j
+public class PgNotificationDispatcher implements DisposableBean {
+
+  /** coalesced events carrying more facts than this just tell listeners to look for themselves */
+  @VisibleForTesting static final int MAX_COALESCED_FACTS = 1000;
+
+  @NonNull final ScheduledExecutorService executor;
+
+  @NonNull final Timer lag;
+
+  @NonNull final Counter coalesced;
+
+  private final Map<Listener, Slot> slots = new ConcurrentHashMap<>();
+
+  public PgNotificationDispatcher(int threads, @NonNull PgMetrics metrics) {
+    this(createExecutor(threads), metrics);
+  }
+
+  private static ScheduledExecutorService createExecutor(int threads) {
+    ScheduledThreadPoolExecutor executor =
+        new ScheduledThreadPoolExecutor(
+            threads,
+            new ThreadFactoryBuilder()
+                .setNameFormat("pg-notification-dispatch-%d")
+                .setDaemon(true)
+                .build());
+    // delayed queries of closed subscriptions should not linger until due
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+
+  @VisibleForTesting
+  PgNotificationDispatcher(@NonNull ScheduledExecutorService executor, @NonNull PgMetrics metrics) {
+    this.executor = executor;
+    this.lag = metrics.timer(OP.NOTIFICATION_DISPATCH_LAG);
+    this.coalesced = metrics.counter(OP.NOTIFICATION_COALESCED);
+  }
+
+  @FunctionalInterface
+  public interface Listener {
+    void onEvent(@NonNull FactInsertionEvent ev);
+  }
+
+  /**
+   * @return the bounded scheduler to trigger delayed work with, shared by all subscriptions. Work
+   *     that might block must not run on it.
+   */
+  public ScheduledExecutorService scheduler() {
+    return executor;
+  }
+
+  public void register(@NonNull Listener listener) {
+    slots.computeIfAbsent(listener, Slot::new);
+  }
+
+  public void unregister(@NonNull Listener listener) {
+    slots.remove(listener);
+  }
+
+  public void post(@NonNull FactInsertionEvent ev) {
+    long now = System.nanoTime();
+    slots.values().forEach(s -> s.offer(ev, now));
+  }
+
+  /**
+   * @return an event standing for both given ones. Facts are kept only if both events have them,
+   *     and there are not too many.
+   */
+  @VisibleForTesting
+  static FactInsertionEvent merge(@NonNull FactInsertionEvent a, @NonNull FactInsertionEvent b) {
+    if (a.facts().isEmpty()) {
+      return a;
+    }
+    int size = a.facts().size() + b.facts().size();
+    if (b.facts().isEmpty() || size > MAX_COALESCED_FACTS) {
+      return new FactInsertionEvent(b.name());
+    }
+    List<Fact> facts = new ArrayList<>(size);
+    facts.addAll(a.facts());
+    facts.addAll(b.facts());
+    return new FactInsertionEvent(b.name(), facts);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+  private static final class Pending {
+    final FactInsertionEvent event;
+
+    final long postedAt;
+
+    Pending(FactInsertionEvent event, long postedAt) {
+      this.event = event;
+      this.postedAt = postedAt;
+    }
+  }
+
+  private final class Slot implements Runnable {
+
+    final Listener listener;
+
+    final AtomicReference<Pending> pending = new AtomicReference<>();
+
+    final AtomicBoolean scheduled = new AtomicBoolean();
+
+    Slot(Listener listener) {
+      this.listener = listener;
+    }
+
+    void offer(FactInsertionEvent ev, long postedAt) {
+      Pending old;
+      Pending next;
+      do {
+        old = pending.get();
+        if (old == null) {
+          next = new Pending(ev, postedAt);
+        } else {
+          // keeps the time of the oldest event
+          FactInsertionEvent merged = merge(old.event, ev);
+          next = merged == old.event ? old : new Pending(merged, old.postedAt);
+        }
+      } while (!pending.compareAndSet(old, next));
+      if (old != null) {
+        coalesced.increment();
+      }
+      if (!scheduled.getAndSet(true)) {
+        try {
+          executor.execute(this);
+        } catch (RuntimeException e) {
+          scheduled.set(false);
+          log.debug("cannot dispatch notification: {}", e.getMessage());
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      do {
+        Pending p = pending.getAndSet(null);
+        if (p != null && slots.containsKey(listener)) {
+          lag.record(System.nanoTime() - p.postedAt, TimeUnit.NANOSECONDS);
+          try {
+            listener.onEvent(p.event);
+          } catch (Throwable e) {
+            log.error("Listener failed on {}: ", p.event.name(), e);
+          }
+        }
+        scheduled.set(false);
+        // events might have been offered after taking the pending one
+      } while (pending.get() != null && !scheduled.getAndSet(true));
+    }
+  }
+}
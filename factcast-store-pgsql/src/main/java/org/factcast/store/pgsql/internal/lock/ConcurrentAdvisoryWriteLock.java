@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.lock;
+
+import lombok.RequiredArgsConstructor;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Lets unconditional inserts run concurrently by only taking the publish lock in shared mode, so
+ * that just conditional publications (that need a stable state) are serialized.
+ *
+ * <p>As serials can become visible out of order this way, every inserting transaction marks the
+ * last serial allocated before its own ones with another shared advisory lock. Readers use those
+ * marks to compute a safe high-water mark they must not pass (see {@link
+ * PgConstants#SELECT_SAFE_HIGH_WATER_MARK}).
+ */
+@RequiredArgsConstructor
+public class ConcurrentAdvisoryWriteLock implements FactTableWriteLock {
+  private final JdbcTemplate tpl;
+
+  @Override
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void aquireExclusiveTXLock() {
+    tpl.execute("SELECT pg_advisory_xact_lock(" + AdvisoryLocks.PUBLISH.code() + ")");
+  }
+
+  @Override
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void aquireInsertTXLock() {
+    tpl.execute("SELECT pg_advisory_xact_lock_shared(" + AdvisoryLocks.PUBLISH.code() + ")");
+    // must happen before any serial is taken from the sequence
+    tpl.execute(PgConstants.LOCK_SERIAL_MARK);
+  }
+}
@@ -17,5 +17,14 @@
 
 public interface FactTableWriteLock {
 
+  /** blocks all other writers until the end of the current transaction. */
   void aquireExclusiveTXLock();
+
+  /**
+   * needs to be called before unconditionally inserting facts in the current transaction. Unless
+   * overridden, this is as exclusive as {@link #aquireExclusiveTXLock()}.
+   */
+  default void aquireInsertTXLock() {
+    aquireExclusiveTXLock();
+  }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.partition;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.core.SchedulerLock;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.factcast.store.pgsql.internal.PgMetrics;
+import org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.OP;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Range-partitions the fact table by serial, if a partitionSize is configured.
+ *
+ * <p>On startup, an unpartitioned fact table is converted (becoming the first partition), later on
+ * new partitions are created in advance, so that there always is room for at least partitionSize
+ * more facts.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class PgFactPartitioner implements InitializingBean {
+
+  @NonNull final JdbcTemplate jdbcTemplate;
+
+  @NonNull final PgMetrics pgMetrics;
+
+  /** number of serials per partition, 0 disables partitioning */
+  final long partitionSize;
+
+  @Override
+  public void afterPropertiesSet() {
+    if (partitionSize > 0) {
+      Boolean converted =
+          jdbcTemplate.queryForObject(
+              PgConstants.PARTITION_FACT_TABLE, new Object[] {partitionSize}, Boolean.class);
+      if (Boolean.TRUE.equals(converted)) {
+        log.info("Converted fact table into a table partitioned by {} serials", partitionSize);
+      }
+      createPartitions();
+    }
+  }
+
+  @Scheduled(cron = "${factcast.store.pgsql.partitionCron:0 */10 * * * *}")
+  @SchedulerLock(name = "factPartitioning", lockAtMostFor = 1000 * 60 * 10)
+  public void createPartitions() {
+    if (partitionSize > 0) {
+      pgMetrics.time(
+          OP.CREATE_PARTITIONS,
+          () -> {
+            Integer created =
+                jdbcTemplate.queryForObject(
+                    PgConstants.CREATE_FACT_PARTITIONS,
+                    new Object[] {partitionSize},
+                    Integer.class);
+            if (created != null && created > 0) {
+              log.info("Created {} new partition(s) of the fact table", created);
+            }
+          });
+    }
+  }
+}
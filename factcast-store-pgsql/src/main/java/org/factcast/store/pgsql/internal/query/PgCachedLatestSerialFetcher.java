@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.query;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.internal.listen.PgListener.FactInsertionEvent;
+import org.factcast.store.pgsql.internal.listen.PgNotificationDispatcher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Keeps the latest SERIAL in memory, so that followers do not need a database roundtrip to get it.
+ *
+ * <p>The cached value only ever moves forward. It is fed by the serials of inserted facts, as
+ * notified by the database, and refreshed from the delegate periodically in case a notification got
+ * lost. If the delegate limits readers to a high-water mark (which notifications know nothing
+ * about), only the periodic refresh is used.
+ *
+ * <p>The upper bound for queries is always taken from the delegate.
+ */
+@SuppressWarnings("UnstableApiUsage")
+@Slf4j
+public class PgCachedLatestSerialFetcher extends PgLatestSerialFetcher
+    implements PgNotificationDispatcher.Listener {
+
+  @NonNull final PgLatestSerialFetcher delegate;
+
+  private final AtomicLong latest = new AtomicLong(-1);
+
+  public PgCachedLatestSerialFetcher(
+      @NonNull JdbcTemplate jdbcTemplate, @NonNull PgLatestSerialFetcher delegate) {
+    super(jdbcTemplate);
+    this.delegate = delegate;
+  }
+
+  @Override
+  public long retrieveLatestSer() {
+    long cached = latest.get();
+    return cached < 0 ? refresh() : cached;
+  }
+
+  @Override
+  public LongSupplier upperBound() {
+    return delegate.upperBound();
+  }
+
+  @Scheduled(fixedRateString = "${factcast.store.pgsql.latestSerialRefreshRateInMillis:5000}")
+  public long refresh() {
+    return update(delegate.retrieveLatestSer());
+  }
+
+  @Override
+  public void onEvent(FactInsertionEvent ev) {
+    if (delegate.upperBound() == null) {
+      for (Fact f : ev.facts()) {
+        try {
+          update(f.serial());
+        } catch (RuntimeException e) {
+          log.debug("cannot read serial from notified fact: {}", e.getMessage());
+        }
+      }
+    }
+  }
+
+  @VisibleForTesting
+  long update(long ser) {
+    return latest.accumulateAndGet(ser, Math::max);
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.query;
+
+import java.util.function.LongSupplier;
+import lombok.NonNull;
+import org.factcast.store.pgsql.PublishStrategy;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Fetches the safe high-water mark instead of the latest SERIAL, as needed for {@link
+ * PublishStrategy#CONCURRENT}: Facts up to (and including) this serial are guaranteed to be visible
+ * already, so readers must not advance past it.
+ */
+public class PgHighWaterMarkFetcher extends PgLatestSerialFetcher {
+
+  public PgHighWaterMarkFetcher(@NonNull JdbcTemplate jdbcTemplate) {
+    super(jdbcTemplate);
+  }
+
+  /** @return 0, if no Fact is found, or exception is raised. */
+  @Override
+  public long retrieveLatestSer() {
+    return retrieve(PgConstants.SELECT_SAFE_HIGH_WATER_MARK);
+  }
+
+  @Override
+  public LongSupplier upperBound() {
+    return this::retrieveLatestSer;
+  }
+}
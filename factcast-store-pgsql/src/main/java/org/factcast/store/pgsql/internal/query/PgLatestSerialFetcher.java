@@ -15,6 +15,7 @@
  */
 package org.factcast.store.pgsql.internal.query;
 
+import java.util.function.LongSupplier;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -35,9 +36,21 @@ public class PgLatestSerialFetcher {
 
   /** @return 0, if no Fact is found, or exception is raised. */
   public long retrieveLatestSer() {
+    return retrieve(PgConstants.SELECT_LATEST_SER);
+  }
+
+  /**
+   * @return a supplier of the serial readers must not pass, or null if there is no such limit
+   *     (which is the case when publishing exclusively).
+   */
+  public LongSupplier upperBound() {
+    return null;
+  }
+
+  protected long retrieve(@NonNull String sql) {
     // noinspection CatchMayIgnoreException
     try {
-      SqlRowSet rs = jdbcTemplate.queryForRowSet(PgConstants.SELECT_LATEST_SER);
+      SqlRowSet rs = jdbcTemplate.queryForRowSet(sql);
       if (rs.next()) {
         return rs.getLong(1);
       }
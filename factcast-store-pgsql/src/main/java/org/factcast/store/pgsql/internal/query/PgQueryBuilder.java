@@ -15,14 +15,19 @@
  */
 package org.factcast.store.pgsql.internal.query;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
 import org.factcast.core.spec.FactSpec;
 import org.factcast.store.pgsql.internal.PgConstants;
 import org.springframework.jdbc.core.PreparedStatementSetter;
@@ -38,39 +43,62 @@ public class PgQueryBuilder {
 
   final @NonNull List<FactSpec> factSpecs;
 
+  /** optional serial (inclusive), the selection must not go beyond. */
+  final LongSupplier upperBound;
+
   public PgQueryBuilder(@NonNull List<FactSpec> specs) {
+    this(specs, null);
+  }
+
+  public PgQueryBuilder(@NonNull List<FactSpec> specs, LongSupplier upperBound) {
     factSpecs = specs;
+    this.upperBound = upperBound;
   }
 
   public PreparedStatementSetter createStatementSetter(@NonNull AtomicLong serial) {
+    return p -> setParameters(p, serial);
+  }
+
+  /** @return a setter for the SQL created by {@link #createPageSQL()} */
+  public PreparedStatementSetter createPageStatementSetter(
+      @NonNull AtomicLong serial, int pageSize) {
     return p -> {
-      // TODO vulnerable of json injection attack
-      int count = 0;
-      for (FactSpec spec : factSpecs) {
-
-        String ns = spec.ns();
-        if (ns != null && !"*".equals(ns)) {
-          p.setString(++count, "{\"ns\": \"" + spec.ns() + "\"}");
-        }
-
-        String type = spec.type();
-        if (type != null) {
-          p.setString(++count, "{\"type\": \"" + type + "\"}");
-        }
-        // version is intentionally not used here
-        UUID agg = spec.aggId();
-        if (agg != null) {
-          p.setString(++count, "{\"aggIds\": [\"" + agg + "\"]}");
-        }
-        Map<String, String> meta = spec.meta();
-        for (Entry<String, String> e : meta.entrySet()) {
-          p.setString(++count, "{\"meta\":{\"" + e.getKey() + "\":\"" + e.getValue() + "\"}}");
-        }
-      }
-      p.setLong(++count, serial.get());
+      int count = setParameters(p, serial);
+      p.setInt(++count, pageSize);
     };
   }
 
+  private int setParameters(PreparedStatement p, AtomicLong serial) throws SQLException {
+    // TODO vulnerable of json injection attack
+    int count = 0;
+    for (FactSpec spec : factSpecs) {
+
+      String ns = spec.ns();
+      if (ns != null && !"*".equals(ns)) {
+        p.setString(++count, ns);
+      }
+
+      String type = spec.type();
+      if (type != null) {
+        p.setString(++count, type);
+      }
+      // version is intentionally not used here
+      UUID agg = spec.aggId();
+      if (agg != null) {
+        p.setString(++count, agg.toString());
+      }
+      Map<String, String> meta = spec.meta();
+      for (Entry<String, String> e : meta.entrySet()) {
+        p.setString(++count, "{\"meta\":{\"" + e.getKey() + "\":\"" + e.getValue() + "\"}}");
+      }
+    }
+    p.setLong(++count, serial.get());
+    if (upperBound != null) {
+      p.setLong(++count, upperBound.getAsLong());
+    }
+    return count;
+  }
+
   private String createWhereClause() {
     List<String> predicates = new LinkedList<>();
     factSpecs.forEach(
@@ -80,17 +108,17 @@ private String createWhereClause() {
 
           String ns = spec.ns();
           if (ns != null && !"*".equals(ns)) {
-            sb.append(" AND ").append(PgConstants.COLUMN_HEADER).append(" @> ?::jsonb");
+            sb.append(" AND ").append(PgConstants.ALIAS_NS).append("=?");
           }
 
           String type = spec.type();
           if (type != null) {
-            sb.append(" AND ").append(PgConstants.COLUMN_HEADER).append(" @> ?::jsonb");
+            sb.append(" AND ").append(PgConstants.ALIAS_TYPE).append("=?");
           }
 
           UUID agg = spec.aggId();
           if (agg != null) {
-            sb.append(" AND ").append(PgConstants.COLUMN_HEADER).append(" @> ?::jsonb");
+            sb.append(" AND ").append(PgConstants.ALIAS_AGGID).append(" @> ARRAY[?::uuid]");
           }
           Map<String, String> meta = spec.meta();
           meta.forEach(
@@ -101,7 +129,11 @@ private String createWhereClause() {
           predicates.add(sb.toString());
         });
     String predicatesAsString = String.join(" OR ", predicates);
-    return "( " + predicatesAsString + " ) AND " + PgConstants.COLUMN_SER + ">?";
+    String where = "( " + predicatesAsString + " ) AND " + PgConstants.COLUMN_SER + ">?";
+    if (upperBound != null) {
+      where += " AND " + PgConstants.COLUMN_SER + "<=?";
+    }
+    return where;
   }
 
   public String createSQL() {
@@ -119,6 +151,30 @@ public String createSQL() {
     return sql;
   }
 
+  /**
+   * @return the SQL of {@link #createSQL()}, limited to one page, so that a catchup can page by
+   *     serial without keeping a cursor or a temporary table.
+   */
+  public String createPageSQL() {
+    return createSQL() + " LIMIT ?";
+  }
+
+  /** @return the SQL selecting only the serials of the facts {@link #createSQL()} selects */
+  public String createSerialsSQL() {
+    String sql =
+        "SELECT "
+            + PgConstants.COLUMN_SER
+            + " FROM "
+            + PgConstants.TABLE_FACT
+            + " WHERE "
+            + createWhereClause()
+            + " ORDER BY "
+            + PgConstants.COLUMN_SER
+            + " ASC";
+    log.trace("{} createSerialsSQL={}", factSpecs, sql);
+    return sql;
+  }
+
   public String createStateSQL() {
     String sql =
         "SELECT "
@@ -153,4 +209,27 @@ public String catchupSQL() {
     log.trace("{} catchupSQL={}", factSpecs, sql);
     return sql;
   }
+
+  /**
+   * @return a predicate that matches the same facts in memory, as the where clause does (apart from
+   *     the serial), so that version and script are not considered here either.
+   */
+  public Predicate<Fact> createPredicate() {
+    List<Predicate<Fact>> predicates = new LinkedList<>();
+    factSpecs.forEach(
+        spec -> {
+          String ns = spec.ns();
+          String type = spec.type();
+          UUID agg = spec.aggId();
+          Map<String, String> meta = spec.meta();
+          predicates.add(
+              f ->
+                  (ns == null || "*".equals(ns) || ns.equals(f.ns()))
+                      && (type == null || type.equals(f.type()))
+                      && (agg == null || f.aggIds().contains(agg))
+                      && meta.entrySet().stream()
+                          .allMatch(e -> e.getValue().equals(f.meta(e.getKey()))));
+        });
+    return f -> predicates.stream().anyMatch(p -> p.test(f));
+  }
 }
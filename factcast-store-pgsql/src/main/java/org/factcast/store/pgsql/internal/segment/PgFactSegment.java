@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.segment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.store.pgsql.internal.segment.PgFactSegmentCache.RecordVisitor;
+
+/**
+ * One memory-mapped, append-only file of facts, ordered by serial. Every record consists of
+ *
+ * <pre>
+ * long ser | int length of header | int length of payload | header (UTF-8) | payload (UTF-8)
+ * </pre>
+ *
+ * The file is preallocated with zeros, so that a serial of 0 marks the end of the records. Only one
+ * thread may append, while any number of threads may read the records appended before.
+ */
+@Slf4j
+class PgFactSegment {
+
+  static final int RECORD_OVERHEAD = Long.BYTES + 2 * Integer.BYTES;
+
+  @Getter private final File file;
+
+  @Getter private final long firstSer;
+
+  private final MappedByteBuffer buffer;
+
+  /** the serial of the last record appended */
+  @Getter private volatile long lastSer;
+
+  private volatile int end;
+
+  private PgFactSegment(@NonNull File file, long firstSer, @NonNull MappedByteBuffer buffer) {
+    this.file = file;
+    this.firstSer = firstSer;
+    this.buffer = buffer;
+  }
+
+  static PgFactSegment create(@NonNull File dir, long firstSer, int size) throws IOException {
+    File file = new File(dir, String.format("segment-%019d", firstSer));
+    PgFactSegment segment = new PgFactSegment(file, firstSer, map(file, size));
+    segment.lastSer = firstSer - 1;
+    return segment;
+  }
+
+  /** opens an existing segment, and finds the end of the records in it */
+  static PgFactSegment open(@NonNull File file) throws IOException {
+    long firstSer = Long.parseLong(file.getName().substring("segment-".length()));
+    PgFactSegment segment = new PgFactSegment(file, firstSer, map(file, (int) file.length()));
+    segment.recover();
+    return segment;
+  }
+
+  private static MappedByteBuffer map(File file, int size) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        FileChannel channel = raf.getChannel()) {
+      // the mapping stays valid after the channel is closed
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  private void recover() {
+    ByteBuffer b = buffer.duplicate();
+    long last = firstSer - 1;
+    int pos = 0;
+    while (pos + RECORD_OVERHEAD <= b.capacity()) {
+      long ser = b.getLong(pos);
+      int headerLength = b.getInt(pos + Long.BYTES);
+      int payloadLength = b.getInt(pos + Long.BYTES + Integer.BYTES);
+      int next = pos + RECORD_OVERHEAD + headerLength + payloadLength;
+      if (ser <= last || headerLength <= 0 || payloadLength < 0 || next > b.capacity()) {
+        break;
+      }
+      last = ser;
+      pos = next;
+    }
+    lastSer = last;
+    end = pos;
+  }
+
+  static int sizeOf(byte[] header, byte[] payload) {
+    return RECORD_OVERHEAD + header.length + payload.length;
+  }
+
+  /** @return false, if the record does not fit into this segment */
+  boolean append(long ser, byte[] header, byte[] payload) {
+    int pos = end;
+    if (pos + sizeOf(header, payload) > buffer.capacity()) {
+      return false;
+    }
+    ByteBuffer b = buffer.duplicate();
+    b.position(pos + RECORD_OVERHEAD);
+    b.put(header);
+    b.put(payload);
+    b.putInt(pos + Long.BYTES, header.length);
+    b.putInt(pos + Long.BYTES + Integer.BYTES, payload.length);
+    // written last, as it marks the record as complete
+    b.putLong(pos, ser);
+    end = b.position();
+    lastSer = ser;
+    return true;
+  }
+
+  /**
+   * Passes all records with a serial greater than {@code after} and not greater than {@code upTo}
+   * to the visitor, in order.
+   *
+   * @return false, if the visitor asked to stop
+   */
+  boolean read(long after, long upTo, @NonNull RecordVisitor visitor) {
+    ByteBuffer b = buffer.duplicate();
+    int limit = end;
+    int pos = 0;
+    while (pos < limit) {
+      long ser = b.getLong(pos);
+      if (ser > upTo) {
+        break;
+      }
+      int headerLength = b.getInt(pos + Long.BYTES);
+      int payloadLength = b.getInt(pos + Long.BYTES + Integer.BYTES);
+      int headerStart = pos + RECORD_OVERHEAD;
+      pos = headerStart + headerLength + payloadLength;
+      if (ser > after && !visitor.visit(ser, b, headerStart, headerLength, payloadLength)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** @return the size of the file in bytes */
+  int size() {
+    return buffer.capacity();
+  }
+
+  void force() {
+    buffer.force();
+  }
+}
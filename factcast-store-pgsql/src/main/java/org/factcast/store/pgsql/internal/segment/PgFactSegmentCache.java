@@ -0,0 +1,334 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.segment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.util.FactCastJson;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Mirrors the fact table into memory-mapped segment files on local disk, so that catchups can read
+ * the bulk of the facts from the page cache rather than from the database.
+ *
+ * <p>Facts are appended in the order of their serials, without gaps, from {@link #coveredFrom()} up
+ * to {@link #coveredUpTo()}. Only facts up to the upper bound given by the {@link
+ * PgLatestSerialFetcher} are appended, so that no fact can be missed due to a transaction still in
+ * progress. Once the segments exceed the configured maximum size, the oldest ones are deleted.
+ *
+ * <p>On startup, the existing segments are reused, if the last fact in them is still found under
+ * the same serial in the database. Otherwise they are deleted, and the cache is filled from
+ * scratch. An empty cache is not filled from the first fact, but from roughly as far back as the
+ * maximum size allows, estimated from the size of the latest facts.
+ *
+ * <p>Every run appends at most {@code MAX_PAGES_PER_FILL} pages, so that filling a large cache does
+ * not keep other scheduled tasks from running for long.
+ */
+@Slf4j
+public class PgFactSegmentCache implements InitializingBean, DisposableBean {
+
+  private static final int FILL_PAGE_SIZE = 1000;
+
+  private static final int MAX_PAGES_PER_FILL = 100;
+
+  @NonNull final JdbcTemplate jdbcTemplate;
+
+  @NonNull final PgConfigurationProperties props;
+
+  @NonNull final PgLatestSerialFetcher fetcher;
+
+  final File directory;
+
+  final int segmentSize;
+
+  final long maxSize;
+
+  private final List<PgFactSegment> segments = new CopyOnWriteArrayList<>();
+
+  private volatile long coveredFrom;
+
+  private volatile long coveredUpTo;
+
+  public PgFactSegmentCache(
+      @NonNull JdbcTemplate jdbcTemplate,
+      @NonNull PgConfigurationProperties props,
+      @NonNull PgLatestSerialFetcher fetcher) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.props = props;
+    this.fetcher = fetcher;
+    String dir = props.getFactSegmentCacheDirectory();
+    this.directory = dir == null ? null : new File(dir);
+    int segmentSizeInMegabytes = props.getFactSegmentSizeInMegabytes();
+    // segments are mapped into a single buffer, which is indexed by int
+    if (segmentSizeInMegabytes < 1 || segmentSizeInMegabytes > Integer.MAX_VALUE / (1024 * 1024)) {
+      throw new IllegalArgumentException(
+          "factSegmentSizeInMegabytes must be between 1 and 2047, but was "
+              + segmentSizeInMegabytes);
+    }
+    this.segmentSize = segmentSizeInMegabytes * 1024 * 1024;
+    this.maxSize = props.getFactSegmentCacheMaxSizeInMegabytes() * 1024L * 1024L;
+  }
+
+  public boolean isEnabled() {
+    return directory != null && !props.isIntegrationTestMode();
+  }
+
+  /** all facts with a serial after this one (exclusive) up to coveredUpTo are in the cache */
+  public long coveredFrom() {
+    return coveredFrom;
+  }
+
+  /** all facts with a serial up to this one (inclusive) are in the cache */
+  public long coveredUpTo() {
+    return coveredUpTo;
+  }
+
+  @Override
+  public void afterPropertiesSet() throws IOException {
+    if (!isEnabled()) {
+      return;
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create directory " + directory);
+    }
+    File[] files = directory.listFiles((d, name) -> name.startsWith("segment-"));
+    if (files == null) {
+      throw new IOException("Cannot list directory " + directory);
+    }
+    Arrays.sort(files, Comparator.comparing(File::getName));
+    for (File f : files) {
+      segments.add(PgFactSegment.open(f));
+    }
+    if (!segments.isEmpty()) {
+      coveredFrom = segments.get(0).firstSer() - 1;
+      coveredUpTo = last().lastSer();
+      if (!isConsistentWithDatabase()) {
+        log.warn("Fact segments in {} do not match the database, recreating them", directory);
+        clear();
+      }
+      evict();
+    }
+    log.info("Fact segment cache in {} covers serials up to {}", directory, coveredUpTo);
+  }
+
+  private boolean isConsistentWithDatabase() {
+    long ser = coveredUpTo;
+    if (ser <= 0) {
+      return true;
+    }
+    AtomicLong found = new AtomicLong(-1);
+    read(
+        ser - 1,
+        ser,
+        (s, b, headerStart, headerLength, payloadLength) -> {
+          try {
+            UUID id = id(decode(b, headerStart, headerLength));
+            found.set(jdbcTemplate.queryForObject(PgConstants.SELECT_SER_BY_ID, Long.class, id));
+          } catch (EmptyResultDataAccessException e) {
+            log.debug("Fact with serial {} not found in database", s);
+          }
+          return false;
+        });
+    return found.get() == ser;
+  }
+
+  @SneakyThrows
+  private static UUID id(String header) {
+    JsonNode id = FactCastJson.readTree(header).get("id");
+    return UUID.fromString(id.asText());
+  }
+
+  private void clear() throws IOException {
+    List<PgFactSegment> old = Arrays.asList(segments.toArray(new PgFactSegment[0]));
+    segments.clear();
+    coveredFrom = 0;
+    coveredUpTo = 0;
+    for (PgFactSegment s : old) {
+      if (!s.file().delete()) {
+        throw new IOException("Cannot delete " + s.file());
+      }
+    }
+  }
+
+  private PgFactSegment last() {
+    return segments.get(segments.size() - 1);
+  }
+
+  /** appends the facts published since the last call */
+  @Scheduled(fixedDelayString = "${factcast.store.pgsql.factSegmentCacheFillDelayInMillis:1000}")
+  public void fill() {
+    if (!isEnabled()) {
+      return;
+    }
+    try {
+      LongSupplier upperBound = fetcher.upperBound();
+      long upTo = upperBound != null ? upperBound.getAsLong() : fetcher.retrieveLatestSer();
+      if (segments.isEmpty() && coveredUpTo == 0) {
+        long start = initialStart(upTo);
+        coveredFrom = start;
+        coveredUpTo = start;
+      }
+      for (int page = 0; page < MAX_PAGES_PER_FILL && coveredUpTo < upTo; page++) {
+        AtomicLong count = new AtomicLong();
+        AtomicLong lastSer = new AtomicLong();
+        jdbcTemplate.query(
+            PgConstants.SELECT_FACTS_AFTER,
+            (RowCallbackHandler)
+                rs -> {
+                  long ser = rs.getLong(PgConstants.COLUMN_SER);
+                  append(
+                      ser,
+                      rs.getString(PgConstants.COLUMN_HEADER).getBytes(StandardCharsets.UTF_8),
+                      rs.getString(PgConstants.COLUMN_PAYLOAD).getBytes(StandardCharsets.UTF_8));
+                  lastSer.set(ser);
+                  count.incrementAndGet();
+                },
+            coveredUpTo,
+            upTo,
+            FILL_PAGE_SIZE);
+        coveredUpTo = count.get() < FILL_PAGE_SIZE ? upTo : lastSer.get();
+      }
+    } catch (RuntimeException e) {
+      log.warn("While filling fact segment cache: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * @return the serial to start filling an empty cache after, so that it holds about as many of the
+   *     latest facts as fit into its maximum size. Serials might have gaps, so this might be fewer.
+   */
+  private long initialStart(long upTo) {
+    Double averageSize =
+        jdbcTemplate.queryForObject(
+            PgConstants.SELECT_AVERAGE_FACT_SIZE, Double.class, upTo, FILL_PAGE_SIZE);
+    if (averageSize == null) {
+      // no facts yet
+      return 0;
+    }
+    long fitting = (long) (maxSize / (averageSize + PgFactSegment.RECORD_OVERHEAD));
+    long start = Math.max(0, upTo - fitting);
+    log.info("Filling empty fact segment cache with facts after serial {}", start);
+    return start;
+  }
+
+  @SneakyThrows
+  @VisibleForTesting
+  void append(long ser, byte[] header, byte[] payload) {
+    if (segments.isEmpty() || !last().append(ser, header, payload)) {
+      if (!segments.isEmpty()) {
+        last().force();
+      }
+      int size = Math.max(segmentSize, PgFactSegment.sizeOf(header, payload));
+      PgFactSegment segment = PgFactSegment.create(directory, ser, size);
+      segment.append(ser, header, payload);
+      segments.add(segment);
+      evict();
+    }
+  }
+
+  /** deletes the oldest segments, while the size of all exceeds the maximum */
+  private void evict() {
+    long size = segments.stream().mapToLong(PgFactSegment::size).sum();
+    // the segment appended to is never deleted
+    while (size > maxSize && segments.size() > 1) {
+      // set before removing, see read()
+      coveredFrom = segments.get(1).firstSer() - 1;
+      PgFactSegment oldest = segments.remove(0);
+      size -= oldest.size();
+      // the disk space is released, once readers still holding the mapping are done
+      if (!oldest.file().delete()) {
+        log.warn("Cannot delete {}", oldest.file());
+      }
+      log.debug("Evicted fact segment {}", oldest.file());
+    }
+  }
+
+  @VisibleForTesting
+  void coveredUpTo(long ser) {
+    coveredUpTo = ser;
+  }
+
+  /**
+   * Passes the cached records with a serial greater than {@code after} and not greater than {@code
+   * upTo} to the visitor, in order.
+   *
+   * @return false, if the records after {@code after} are not cached (anymore), in which case none
+   *     are passed to the visitor
+   */
+  public boolean read(long after, long upTo, @NonNull RecordVisitor visitor) {
+    // a snapshot, so that segments evicted meanwhile can still be read
+    Iterator<PgFactSegment> it = segments.iterator();
+    if (after < coveredFrom) {
+      return false;
+    }
+    while (it.hasNext()) {
+      PgFactSegment s = it.next();
+      if (s.lastSer() <= after) {
+        continue;
+      }
+      if (s.firstSer() > upTo || !s.read(after, upTo, visitor)) {
+        break;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void destroy() {
+    segments.forEach(PgFactSegment::force);
+  }
+
+  /** @return the UTF-8 string of the given length at the given position of the buffer */
+  public static String decode(@NonNull ByteBuffer b, int start, int length) {
+    byte[] bytes = new byte[length];
+    ByteBuffer d = b.duplicate();
+    d.position(start);
+    d.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @FunctionalInterface
+  public interface RecordVisitor {
+    /**
+     * @param b the buffer to read from, do not change its position
+     * @return false to stop reading
+     */
+    boolean visit(long ser, ByteBuffer b, int headerStart, int headerLength, int payloadLength);
+  }
+}
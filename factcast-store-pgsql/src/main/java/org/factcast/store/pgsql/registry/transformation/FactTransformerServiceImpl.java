@@ -64,8 +64,8 @@ public Fact transformIfNecessary(Fact e, int targetVersion) throws Transformatio
         JsonNode header = FactCastJson.readTree(e.jsonHeader());
         ((ObjectNode) header).put("version", targetVersion);
         JsonNode transformedPayload = trans.transform(chain, input);
+        // does not parse the header again
         Fact transformed = Fact.of(header, transformedPayload);
-        // can be optimized by passing jsonnode?
         cache.put(transformed, chainId);
         return transformed;
       } catch (JsonProcessingException e1) {
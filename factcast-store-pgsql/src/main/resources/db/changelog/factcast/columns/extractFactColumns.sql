@@ -0,0 +1,59 @@
+--liquibase formatted sql
+--changeset usr:columns-1 splitStatements:false
+
+--- the attributes all hot queries filter on are kept in dedicated columns, so that they can be
+--- indexed and read without parsing the header over and over again. As postgres 11 lacks generated
+--- columns, they are maintained by a trigger.
+
+CREATE OR REPLACE FUNCTION extractFactColumns() RETURNS trigger AS $$
+BEGIN
+  NEW.id := (NEW.header->>'id')::uuid;
+  NEW.ns := NEW.header->>'ns';
+  NEW.type := NEW.header->>'type';
+  NEW.version := (NEW.header->>'version')::int;
+  IF jsonb_typeof(NEW.header->'aggIds') = 'array' THEN
+    NEW.aggids := ARRAY(SELECT jsonb_array_elements_text(NEW.header->'aggIds')::uuid);
+  ELSE
+    NEW.aggids := '{}';
+  END IF;
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+--changeset usr:columns-2
+
+ALTER TABLE fact ADD COLUMN id uuid;
+ALTER TABLE fact ADD COLUMN ns varchar;
+ALTER TABLE fact ADD COLUMN type varchar;
+ALTER TABLE fact ADD COLUMN version int;
+ALTER TABLE fact ADD COLUMN aggids uuid[];
+
+CREATE TRIGGER tr_fact_columns BEFORE INSERT OR UPDATE OF header ON fact FOR EACH ROW EXECUTE PROCEDURE extractFactColumns();
+
+--changeset usr:columns-3 runInTransaction:false splitStatements:false
+
+--- fills the columns for all existing facts via the trigger. Runs outside of a transaction and
+--- commits every batch, so that only a batch of rows is locked at a time and the old row versions of
+--- finished batches can be vacuumed while the backfill is still running.
+DO $$
+DECLARE
+  batchStart bigint := 0;
+  maxSer bigint;
+BEGIN
+  SELECT COALESCE(max(ser), 0) INTO maxSer FROM fact;
+  WHILE batchStart < maxSer LOOP
+    UPDATE fact SET header=header WHERE ser > batchStart AND ser <= batchStart + 10000 AND id IS NULL;
+    batchStart := batchStart + 10000;
+    COMMIT;
+  END LOOP;
+END
+$$;
+
+--changeset usr:columns-4
+
+--- replaces the index on header->'id', as well as the one for enumeration from issue170
+CREATE UNIQUE INDEX idx_fact_id ON fact(id);
+DROP INDEX IF EXISTS idx_fact_unique_id;
+CREATE INDEX idx_fact_ns_type ON fact(ns,type);
+DROP INDEX IF EXISTS index_for_enum;
+CREATE INDEX idx_fact_aggids ON fact USING GIN(aggids);
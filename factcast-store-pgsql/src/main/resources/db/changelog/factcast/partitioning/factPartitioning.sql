@@ -0,0 +1,94 @@
+--liquibase formatted sql
+--changeset usr:partitioning-1 splitStatements:false
+
+--- functions to range-partition the fact table by ser. Nothing is changed by this changeset itself:
+--- partitioning is opt-in and applied by the store when factcast.store.pgsql.partitionSize is set.
+--- all functions take the publish lock (advisory lock 128), so that no fact is inserted meanwhile.
+
+--- as unique indexes on a partitioned table need to contain the partition key, uniqueness of fact ids
+--- across partitions is guaranteed by this table instead.
+
+CREATE OR REPLACE FUNCTION registerFactId() RETURNS trigger AS $$
+BEGIN
+  INSERT INTO fact_id(id) VALUES (NEW.id);
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+--- creates partitions of partition_size serials each, until the highest one has room for at least
+--- partition_size more facts. Returns the number of partitions created.
+
+CREATE OR REPLACE FUNCTION createFactPartitions(partition_size bigint) RETURNS int AS $$
+DECLARE
+  upper_bound bigint;
+  current_ser bigint;
+  partition_name text;
+  created int := 0;
+BEGIN
+  IF NOT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = 'fact'::regclass) THEN
+    RETURN 0;
+  END IF;
+  PERFORM pg_advisory_xact_lock(128);
+
+  SELECT max((regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \(''?(\d+)''?\)'))[1]::bigint)
+    INTO upper_bound
+    FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+    WHERE i.inhparent = 'fact'::regclass;
+  SELECT last_value INTO current_ser FROM fact_ser_seq;
+
+  WHILE upper_bound <= current_ser + partition_size LOOP
+    partition_name := 'fact_' || upper_bound;
+    EXECUTE format('CREATE TABLE %I PARTITION OF fact FOR VALUES FROM (%s) TO (%s)',
+      partition_name, upper_bound, upper_bound + partition_size);
+    -- postgres 11 supports neither unique indexes without the partition key, nor BEFORE triggers
+    -- on partitioned tables, so they need to be created for every partition
+    EXECUTE format('CREATE UNIQUE INDEX %I ON %I(id)', 'idx_' || partition_name || '_id', partition_name);
+    EXECUTE format('CREATE TRIGGER tr_fact_columns BEFORE INSERT OR UPDATE OF header ON %I '
+      || 'FOR EACH ROW EXECUTE PROCEDURE extractFactColumns()', partition_name);
+    EXECUTE format('CREATE TRIGGER tr_fact_id BEFORE INSERT ON %I '
+      || 'FOR EACH ROW EXECUTE PROCEDURE registerFactId()', partition_name);
+    EXECUTE format('CREATE CONSTRAINT TRIGGER tr_deferred_fact_insert AFTER INSERT ON %I '
+      || 'DEFERRABLE INITIALLY DEFERRED FOR EACH ROW EXECUTE PROCEDURE notifyFactInsert()', partition_name);
+    upper_bound := upper_bound + partition_size;
+    created := created + 1;
+  END LOOP;
+  RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+--- turns the existing fact table into the first partition (fact_0) of a new, partitioned fact table.
+--- Existing indexes of fact_0 are reused, however attaching it needs one scan of the table and all
+--- existing ids need to be registered in fact_id, so this might take a while on large stores.
+--- Returns false if fact was already partitioned.
+
+CREATE OR REPLACE FUNCTION partitionFactTable(partition_size bigint) RETURNS boolean AS $$
+DECLARE
+  upper_bound bigint;
+BEGIN
+  PERFORM pg_advisory_xact_lock(128);
+  IF EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = 'fact'::regclass) THEN
+    RETURN false;
+  END IF;
+  LOCK TABLE fact IN ACCESS EXCLUSIVE MODE;
+
+  SELECT (COALESCE(max(ser), 0) / partition_size + 1) * partition_size INTO upper_bound FROM fact;
+
+  ALTER TABLE fact RENAME TO fact_0;
+  CREATE TABLE fact (LIKE fact_0 INCLUDING DEFAULTS INCLUDING CONSTRAINTS) PARTITION BY RANGE (ser);
+  ALTER TABLE fact ADD CONSTRAINT fact_ser_pkey PRIMARY KEY (ser);
+  ALTER SEQUENCE fact_ser_seq OWNED BY fact.ser;
+
+  -- equivalent to the indexes on fact_0, so that those are just attached
+  CREATE INDEX idx_fact_p_header ON fact USING GIN(header jsonb_path_ops);
+  CREATE INDEX idx_fact_p_ns_type ON fact(ns, type);
+  CREATE INDEX idx_fact_p_aggids ON fact USING GIN(aggids);
+
+  CREATE TABLE fact_id (id uuid PRIMARY KEY);
+  INSERT INTO fact_id(id) SELECT id FROM fact_0;
+  CREATE TRIGGER tr_fact_id BEFORE INSERT ON fact_0 FOR EACH ROW EXECUTE PROCEDURE registerFactId();
+
+  EXECUTE format('ALTER TABLE fact ATTACH PARTITION fact_0 FOR VALUES FROM (MINVALUE) TO (%s)', upper_bound);
+  PERFORM createFactPartitions(partition_size);
+  RETURN true;
+END;
+$$ LANGUAGE plpgsql;
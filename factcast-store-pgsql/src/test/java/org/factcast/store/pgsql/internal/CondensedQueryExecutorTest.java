@@ -15,18 +15,32 @@
  */
 package org.factcast.store.pgsql.internal;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.util.Lists;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.internal.listen.PgListener.FactInsertionEvent;
+import org.factcast.store.pgsql.internal.listen.PgNotificationDispatcher;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -38,30 +52,37 @@
 @ExtendWith(MockitoExtension.class)
 public class CondensedQueryExecutorTest {
 
-  @Mock Timer mockTimer;
+  @Mock ScheduledExecutorService scheduler;
+
+  @Mock ScheduledFuture<?> future;
 
   @Mock PgSynchronizedQuery callback;
 
-  @Captor ArgumentCaptor<TimerTask> task;
+  @Captor ArgumentCaptor<Runnable> task;
 
   @BeforeEach
   void setUp() {
-    doNothing().when(mockTimer).schedule(task.capture(), anyLong());
+    lenient()
+        .doReturn(future)
+        .when(scheduler)
+        .schedule(task.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
   }
 
   @Test
   void testDelayedExecution() {
-    CondensedQueryExecutor uut = new CondensedQueryExecutor(1, callback, () -> true, mockTimer);
+    CondensedQueryExecutor uut =
+        new CondensedQueryExecutor(1, callback, () -> true, scheduler, Runnable::run);
     uut.trigger();
-    verify(mockTimer).schedule(any(), eq(1L));
+    verify(scheduler).schedule(any(Runnable.class), eq(1L), eq(TimeUnit.MILLISECONDS));
     task.getValue().run();
     verify(callback).run(anyBoolean());
   }
 
   @Test
   void testDelayedMultipleExecution() {
-    CondensedQueryExecutor uut = new CondensedQueryExecutor(22, callback, () -> true, mockTimer);
-    verify(mockTimer, never()).schedule(any(), anyLong());
+    CondensedQueryExecutor uut =
+        new CondensedQueryExecutor(22, callback, () -> true, scheduler, Runnable::run);
+    verify(scheduler, never()).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
     uut.trigger();
     task.getAllValues().get(0).run();
     uut.trigger();
@@ -71,30 +92,150 @@ void testDelayedMultipleExecution() {
 
   @Test
   void testDelayedCondensedExecution() {
-    CondensedQueryExecutor uut = new CondensedQueryExecutor(104, callback, () -> true, mockTimer);
+    CondensedQueryExecutor uut =
+        new CondensedQueryExecutor(104, callback, () -> true, scheduler, Runnable::run);
     // not yet scheduled anything
-    verify(mockTimer, never()).schedule(any(), anyLong());
+    verify(scheduler, never()).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
     uut.trigger();
     // scheduled once
-    verify(mockTimer).schedule(any(), eq(104L));
+    verify(scheduler).schedule(any(Runnable.class), eq(104L), eq(TimeUnit.MILLISECONDS));
     uut.trigger();
     uut.trigger();
     uut.trigger();
     uut.trigger();
     // still scheduled only once
-    verify(mockTimer).schedule(any(), eq(104L));
-    TimerTask taskArg = task.getValue();
+    verify(scheduler).schedule(any(Runnable.class), eq(104L), eq(TimeUnit.MILLISECONDS));
+    Runnable taskArg = task.getValue();
     taskArg.run();
     // executing must noch change anything for scheduling
-    verify(mockTimer).schedule(any(), eq(104L));
-    verifyNoMoreInteractions(mockTimer);
+    verify(scheduler).schedule(any(Runnable.class), eq(104L), eq(TimeUnit.MILLISECONDS));
+    verifyNoMoreInteractions(scheduler);
     uut.trigger();
     // a second call is scheduled
-    verify(mockTimer, times(2)).schedule(any(), eq(104L));
+    verify(scheduler, times(2)).schedule(any(Runnable.class), eq(104L), eq(TimeUnit.MILLISECONDS));
     uut.trigger();
     uut.trigger();
     uut.trigger();
     // no change: second call is scheduled
-    verify(mockTimer, times(2)).schedule(any(), eq(104L));
+    verify(scheduler, times(2)).schedule(any(Runnable.class), eq(104L), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void testSkipsIfNoneOfTheInsertedFactsMatch() {
+    CondensedQueryExecutor uut =
+        new CondensedQueryExecutor(
+            1, callback, () -> true, f -> "match".equals(f.ns()), scheduler, Runnable::run);
+
+    uut.onEvent(new FactInsertionEvent("fact_insert", Lists.newArrayList(fact("other"))));
+    verify(scheduler, never()).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+
+    uut.onEvent(
+        new FactInsertionEvent("fact_insert", Lists.newArrayList(fact("other"), fact("match"))));
+    task.getValue().run();
+    verify(callback).run(anyBoolean());
+  }
+
+  @Test
+  void testDoesNotSkipIfQueryIsBoundedByHighWaterMark() {
+    when(callback.bounded()).thenReturn(true);
+    CondensedQueryExecutor uut =
+        new CondensedQueryExecutor(
+            0, callback, () -> true, f -> "match".equals(f.ns()), scheduler, Runnable::run);
+
+    // a matching fact (ser 11) committed before a non-matching one (ser 10), so that the first
+    // query does not see it yet
+    uut.onEvent(new FactInsertionEvent("fact_insert", Lists.newArrayList(fact("match"))));
+    // the commit of the non-matching one moves the high-water mark past the matching one
+    uut.onEvent(new FactInsertionEvent("fact_insert", Lists.newArrayList(fact("other"))));
+
+    verify(callback, times(2)).run(anyBoolean());
+  }
+
+  @Test
+  void testRunsIfInsertedFactsAreUnknown() {
+    CondensedQueryExecutor uut =
+        new CondensedQueryExecutor(1, callback, () -> true, f -> false, scheduler, Runnable::run);
+
+    uut.onEvent(new FactInsertionEvent("scheduled-poll"));
+    task.getValue().run();
+
+    verify(callback).run(anyBoolean());
+  }
+
+  private static Fact fact(String ns) {
+    return Fact.builder().ns(ns).buildWithoutPayload();
+  }
+
+  @Test
+  void testCancelsScheduledQuery() {
+    CondensedQueryExecutor uut =
+        new CondensedQueryExecutor(10, callback, () -> true, scheduler, Runnable::run);
+    uut.trigger();
+
+    uut.cancel();
+    uut.trigger();
+
+    verify(future).cancel(false);
+    verify(scheduler).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void testRunsOnExecutorAndCoalescesWhileQueued() {
+    ExecutorService executor = mock(ExecutorService.class);
+    CondensedQueryExecutor uut =
+        new CondensedQueryExecutor(0, callback, () -> true, scheduler, executor);
+
+    uut.trigger();
+    uut.trigger();
+
+    verify(executor).execute(task.capture());
+    verify(callback, never()).run(anyBoolean());
+    task.getValue().run();
+    verify(callback).run(anyBoolean());
+  }
+
+  @Test
+  void testBlockedQueryDoesNotDelayOtherSubscriptions() throws Exception {
+    PgNotificationDispatcher dispatcher =
+        new PgNotificationDispatcher(1, new PgMetrics(new SimpleMeterRegistry()));
+    ExecutorService subscriptions = Executors.newCachedThreadPool();
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Semaphore runs = new Semaphore(0);
+    try {
+      PgSynchronizedQuery slow = mock(PgSynchronizedQuery.class);
+      doAnswer(
+              i -> {
+                blocked.countDown();
+                release.await();
+                return null;
+              })
+          .when(slow)
+          .run(anyBoolean());
+      PgSynchronizedQuery fast = mock(PgSynchronizedQuery.class);
+      doAnswer(
+              i -> {
+                runs.release();
+                return null;
+              })
+          .when(fast)
+          .run(anyBoolean());
+      dispatcher.register(
+          new CondensedQueryExecutor(0, slow, () -> true, dispatcher.scheduler(), subscriptions));
+      dispatcher.register(
+          new CondensedQueryExecutor(0, fast, () -> true, dispatcher.scheduler(), subscriptions));
+
+      dispatcher.post(new FactInsertionEvent("fact_insert"));
+      assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(runs.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+      dispatcher.post(new FactInsertionEvent("fact_insert"));
+
+      assertThat(runs.tryAcquire(5, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      release.countDown();
+      dispatcher.destroy();
+      subscriptions.shutdown();
+      assertThat(subscriptions.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    }
   }
 }
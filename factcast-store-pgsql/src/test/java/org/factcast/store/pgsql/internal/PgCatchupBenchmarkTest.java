@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.google.common.base.Stopwatch;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.store.FactStore;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequest;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.store.pgsql.CatchupStrategy;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupConnectionPool;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.catchup.fetching.PgFetchingCatchUpFactory;
+import org.factcast.store.pgsql.internal.catchup.keyset.PgKeysetCatchUpFactory;
+import org.factcast.store.pgsql.internal.catchup.paged.PgPagedCatchUpFactory;
+import org.factcast.store.pgsql.internal.catchup.parallel.PgParallelCatchUpFactory;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.factcast.store.test.IntegrationTest;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * Compares the catchup strategies on the same data. Every strategy catches up with the same
+ * subscription a couple of times (after a warm-up round), and the average time is logged.
+ */
+@ContextConfiguration(classes = {PgTestConfiguration.class})
+@Sql(scripts = "/test_schema.sql", config = @SqlConfig(separator = "#"))
+@ExtendWith(SpringExtension.class)
+@IntegrationTest
+@Slf4j
+public class PgCatchupBenchmarkTest {
+
+  static final int NUMBER_OF_FACTS = 20_000;
+
+  static final int ROUNDS = 5;
+
+  @Autowired FactStore store;
+
+  @Autowired PgCatchupConnectionPool pool;
+
+  @Autowired PgConfigurationProperties props;
+
+  @Autowired PgLatestSerialFetcher fetcher;
+
+  @BeforeEach
+  void setup() {
+    // every other fact is noise to the subscription
+    List<Fact> facts =
+        IntStream.range(0, NUMBER_OF_FACTS)
+            .mapToObj(
+                i ->
+                    Fact.builder()
+                        .ns(i % 2 == 0 ? "benchmark" : "noise")
+                        .type("benchmarked")
+                        .id(UUID.randomUUID())
+                        .aggId(UUID.randomUUID())
+                        .build("{\"index\":" + i + "}"))
+            .collect(Collectors.toList());
+    store.publish(facts);
+  }
+
+  @Test
+  void compareCatchupStrategies() {
+    Map<CatchupStrategy, PgCatchupFactory> factories = new EnumMap<>(CatchupStrategy.class);
+    factories.put(CatchupStrategy.PAGED, new PgPagedCatchUpFactory(pool, props, fetcher));
+    factories.put(CatchupStrategy.FETCHING, new PgFetchingCatchUpFactory(pool, props, fetcher));
+    factories.put(CatchupStrategy.KEYSET, new PgKeysetCatchUpFactory(pool, props, fetcher));
+    factories.put(CatchupStrategy.PARALLEL, new PgParallelCatchUpFactory(pool, props, fetcher));
+
+    // warm-up
+    factories.values().forEach(this::catchup);
+
+    Map<CatchupStrategy, Long> millis = new EnumMap<>(CatchupStrategy.class);
+    for (int round = 0; round < ROUNDS; round++) {
+      factories.forEach(
+          (strategy, factory) -> {
+            Stopwatch sw = Stopwatch.createStarted();
+            assertThat(catchup(factory)).isEqualTo(NUMBER_OF_FACTS / 2);
+            millis.merge(strategy, sw.stop().elapsed(TimeUnit.MILLISECONDS), Long::sum);
+          });
+    }
+
+    millis.forEach(
+        (strategy, sum) ->
+            log.info(
+                "{}: caught up with {} of {} facts in {}ms on average (pageSize={})",
+                strategy,
+                NUMBER_OF_FACTS / 2,
+                NUMBER_OF_FACTS,
+                sum / ROUNDS,
+                props.getPageSize()));
+  }
+
+  private int catchup(PgCatchupFactory factory) {
+    SubscriptionRequestTO req =
+        SubscriptionRequestTO.forFacts(
+            SubscriptionRequest.catchup(FactSpec.ns("benchmark")).fromScratch());
+    AtomicInteger count = new AtomicInteger();
+    SubscriptionImpl subscription = SubscriptionImpl.on(f -> count.incrementAndGet());
+    factory.create(req, new PgPostQueryMatcher(req), subscription, new AtomicLong()).run();
+    return count.get();
+  }
+}
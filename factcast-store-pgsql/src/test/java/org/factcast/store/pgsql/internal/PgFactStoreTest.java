@@ -23,6 +23,7 @@
 import java.util.UUID;
 import java.util.function.Supplier;
 import lombok.val;
+import org.factcast.core.Fact;
 import org.factcast.core.snap.Snapshot;
 import org.factcast.core.snap.SnapshotId;
 import org.factcast.core.store.FactStore;
@@ -74,4 +75,15 @@ void testSetSnapshotMetered() {
 
     verify(metrics).time(same(SET_SNAPSHOT), any(Runnable.class));
   }
+
+  @Test
+  void testSerialAndTimestampAddedOnInsert() {
+    val fact = Fact.builder().ns("ns").type("type").build("{}");
+    val before = System.currentTimeMillis() - 1000;
+    uut.publish(fact);
+
+    val published = store.fetchById(fact.id()).get();
+    assertThat(published.serial()).isEqualTo(store.serialOf(fact.id()).getAsLong());
+    assertThat(published.timestamp()).isNotNull().isGreaterThan(before);
+  }
 }
@@ -16,9 +16,20 @@
 package org.factcast.store.pgsql.internal;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
+import javax.sql.DataSource;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequest;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.query.PgFactIdToSerialMapper;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
 import org.junit.jupiter.api.*;
 import org.mockito.InjectMocks;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 public class PgFactStreamTest {
 
@@ -28,4 +39,33 @@ public class PgFactStreamTest {
   public void testConnectNullParameter() {
     assertThrows(NullPointerException.class, () -> uut.connect(null));
   }
+
+  @Test
+  public void testConnectNotifiesFailingCatchup() {
+    SubscriptionImpl subscription = mock(SubscriptionImpl.class);
+    PgCatchupFactory catchupFactory = mock(PgCatchupFactory.class);
+    PgCatchup catchup = mock(PgCatchup.class);
+    when(catchupFactory.create(any(), any(), any(), any())).thenReturn(catchup);
+    IllegalStateException e = new IllegalStateException("no connection available");
+    doThrow(e).when(catchup).run();
+    JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    when(jdbc.getDataSource()).thenReturn(mock(DataSource.class));
+    PgFactStream uut =
+        new PgFactStream(
+            jdbc,
+            null,
+            mock(PgFactIdToSerialMapper.class),
+            subscription,
+            mock(PgLatestSerialFetcher.class),
+            catchupFactory,
+            null,
+            null);
+
+    uut.connect(
+        SubscriptionRequestTO.forFacts(
+            SubscriptionRequest.follow(FactSpec.ns("foo")).fromScratch()));
+
+    verify(subscription).notifyError(e);
+    verify(subscription, never()).notifyCatchup();
+  }
 }
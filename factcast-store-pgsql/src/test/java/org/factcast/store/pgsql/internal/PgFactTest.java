@@ -21,6 +21,7 @@
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.sql.Array;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Set;
@@ -36,14 +37,15 @@ void testFrom() throws Exception {
     String ns = "ns";
     String type = "type";
     String aggId = UUID.randomUUID().toString();
-    String aggIdArr = "[\"" + aggId + "\"]";
+    Array aggIdArr = mock(Array.class);
+    when(aggIdArr.getArray()).thenReturn(new UUID[] {UUID.fromString(aggId)});
     String header = "{\"meta\":{\"foo\":\"1\",\"bar\":\"2\",\"baz\":\"3\"}}";
     String payload = "{}";
     int version = 7;
     when(rs.getString(eq(PgConstants.ALIAS_ID))).thenReturn(aggId);
     when(rs.getString(eq(PgConstants.ALIAS_NS))).thenReturn(ns);
     when(rs.getString(eq(PgConstants.ALIAS_TYPE))).thenReturn(type);
-    when(rs.getString(eq(PgConstants.ALIAS_AGGID))).thenReturn(aggIdArr);
+    when(rs.getArray(eq(PgConstants.ALIAS_AGGID))).thenReturn(aggIdArr);
     when(rs.getString(eq(PgConstants.COLUMN_HEADER))).thenReturn(header);
     when(rs.getString(eq(PgConstants.COLUMN_PAYLOAD))).thenReturn(payload);
     when(rs.getInt(eq(PgConstants.COLUMN_VERSION))).thenReturn(version);
@@ -62,30 +64,30 @@ void testFrom() throws Exception {
   }
 
   @Test
-  void testToUUIDArrayNull() {
+  void testToUUIDArrayNull() throws SQLException {
     Set<UUID> res = PgFact.toUUIDArray(null);
     assertTrue(res.isEmpty());
   }
 
   @Test
-  void testToUUIDArrayEmpty() {
-    Set<UUID> res = PgFact.toUUIDArray("[]");
+  void testToUUIDArrayEmpty() throws SQLException {
+    Set<UUID> res = PgFact.toUUIDArray(array());
     assertTrue(res.isEmpty());
   }
 
   @Test
-  void testToUUIDArraySingle() {
+  void testToUUIDArraySingle() throws SQLException {
     UUID aggId1 = UUID.randomUUID();
-    Set<UUID> res = PgFact.toUUIDArray("[\"" + aggId1 + "\"]");
+    Set<UUID> res = PgFact.toUUIDArray(array(aggId1));
     assertEquals(1, res.size());
     assertTrue(res.contains(aggId1));
   }
 
   @Test
-  void testToUUIDArrayMutli() {
+  void testToUUIDArrayMutli() throws SQLException {
     UUID aggId1 = UUID.randomUUID();
     UUID aggId2 = UUID.randomUUID();
-    Set<UUID> res = PgFact.toUUIDArray("[\"" + aggId1 + "\",\"" + aggId2 + "\"]");
+    Set<UUID> res = PgFact.toUUIDArray(array(aggId1, aggId2));
     assertEquals(2, res.size());
     assertTrue(res.contains(aggId1));
     assertTrue(res.contains(aggId2));
@@ -98,14 +100,15 @@ void testToString() throws SQLException {
     String ns = "ns";
     String type = "type";
     String aggId = UUID.randomUUID().toString();
-    String aggIdArr = "[\"" + aggId + "\"]";
+    Array aggIdArr = mock(Array.class);
+    when(aggIdArr.getArray()).thenReturn(new UUID[] {UUID.fromString(aggId)});
     String header = "{\"meta\":{\"foo\":\"1\",\"bar\":\"2\",\"baz\":\"3\"}}";
     String payload = "{}";
     int version = 7;
     when(rs.getString(eq(PgConstants.ALIAS_ID))).thenReturn(aggId);
     when(rs.getString(eq(PgConstants.ALIAS_NS))).thenReturn(ns);
     when(rs.getString(eq(PgConstants.ALIAS_TYPE))).thenReturn(type);
-    when(rs.getString(eq(PgConstants.ALIAS_AGGID))).thenReturn(aggIdArr);
+    when(rs.getArray(eq(PgConstants.ALIAS_AGGID))).thenReturn(aggIdArr);
     when(rs.getString(eq(PgConstants.COLUMN_HEADER))).thenReturn(header);
     when(rs.getString(eq(PgConstants.COLUMN_PAYLOAD))).thenReturn(payload);
     when(rs.getInt(eq(PgConstants.COLUMN_VERSION))).thenReturn(version);
@@ -114,4 +117,10 @@ void testToString() throws SQLException {
 
     assertEquals("PgFact(id=" + uut.id() + ")", uut.toString());
   }
+
+  private static Array array(UUID... ids) throws SQLException {
+    Array array = mock(Array.class);
+    when(array.getArray()).thenReturn(ids);
+    return array;
+  }
 }
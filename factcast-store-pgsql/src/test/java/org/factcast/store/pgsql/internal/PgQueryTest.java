@@ -18,7 +18,6 @@
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
-import com.google.common.eventbus.EventBus;
 import java.util.UUID;
 import lombok.Data;
 import org.factcast.core.Fact;
@@ -31,8 +30,6 @@
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.*;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
@@ -71,12 +68,6 @@ public static TestHeader create() {
 
   @Autowired JdbcTemplate tpl;
 
-  @Bean
-  @Primary
-  public EventBus eventBus() {
-    return new EventBus(this.getClass().getSimpleName());
-  }
-
   @DirtiesContext
   @Test
   void testRoundtrip() {
@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.google.common.base.Stopwatch;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.store.FactStore;
+import org.factcast.core.subscription.FactTransformersFactory;
+import org.factcast.core.subscription.Subscription;
+import org.factcast.core.subscription.SubscriptionRequest;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.SubscriptionExecutionStrategy;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupConnectionPool;
+import org.factcast.store.pgsql.internal.catchup.keyset.PgKeysetCatchUpFactory;
+import org.factcast.store.pgsql.internal.listen.PgNotificationDispatcher;
+import org.factcast.store.pgsql.internal.query.PgFactIdToSerialMapper;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.factcast.store.test.IntegrationTest;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * Shows how many slow subscribers one node can hold with each {@link
+ * SubscriptionExecutionStrategy}: many subscriptions catch up at the same time, while their
+ * observers take a while for every fact, as clients with a full network buffer would. The time
+ * until all of them caught up and the peak number of live threads are logged.
+ *
+ * <p>The KEYSET catchup strategy is used, so that subscribers do not hold a database connection
+ * while being slow.
+ */
+@ContextConfiguration(classes = {PgTestConfiguration.class})
+@Sql(scripts = "/test_schema.sql", config = @SqlConfig(separator = "#"))
+@ExtendWith(SpringExtension.class)
+@IntegrationTest
+@Slf4j
+public class PgSlowSubscriberLoadTest {
+
+  static final int NUMBER_OF_FACTS = 20;
+
+  static final int SUBSCRIBERS = 2_000;
+
+  static final long MILLIS_PER_FACT = 50;
+
+  @Autowired FactStore store;
+
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  @Autowired PgNotificationDispatcher dispatcher;
+
+  @Autowired PgFactIdToSerialMapper idToSerialMapper;
+
+  @Autowired PgLatestSerialFetcher fetcher;
+
+  @Autowired PgCatchupConnectionPool pool;
+
+  @Autowired PgConfigurationProperties props;
+
+  @Autowired FactTransformersFactory transformersFactory;
+
+  @BeforeEach
+  void setup() {
+    List<Fact> facts =
+        IntStream.range(0, NUMBER_OF_FACTS)
+            .mapToObj(
+                i ->
+                    Fact.builder()
+                        .ns("load")
+                        .type("slow")
+                        .id(UUID.randomUUID())
+                        .build("{\"index\":" + i + "}"))
+            .collect(Collectors.toList());
+    store.publish(facts);
+  }
+
+  @Test
+  void boundedPool() throws Exception {
+    run(
+        SubscriptionExecutionStrategy.BOUNDED,
+        PgSubscriptionFactory.newBoundedExecutor(props.getSubscriptionExecutorPoolSize()),
+        PgSubscriptionFactory.newFollowExecutor());
+  }
+
+  @Test
+  void virtualThreads() throws Exception {
+    ExecutorService executor = PgSubscriptionFactory.newVirtualThreadExecutor();
+    run(SubscriptionExecutionStrategy.VIRTUAL, executor, executor);
+  }
+
+  private void run(
+      SubscriptionExecutionStrategy strategy,
+      ExecutorService executor,
+      ExecutorService followExecutor)
+      throws Exception {
+    PgSubscriptionFactory factory =
+        new PgSubscriptionFactory(
+            jdbcTemplate,
+            dispatcher,
+            idToSerialMapper,
+            fetcher,
+            new PgKeysetCatchUpFactory(pool, props, fetcher),
+            transformersFactory,
+            null,
+            executor,
+            followExecutor);
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    threads.resetPeakThreadCount();
+    int threadsBefore = threads.getThreadCount();
+    AtomicInteger received = new AtomicInteger();
+    SubscriptionRequestTO req =
+        SubscriptionRequestTO.forFacts(
+            SubscriptionRequest.catchup(FactSpec.ns("load")).fromScratch());
+
+    Stopwatch sw = Stopwatch.createStarted();
+    List<Subscription> subscriptions =
+        IntStream.range(0, SUBSCRIBERS)
+            .mapToObj(
+                i ->
+                    factory.subscribe(
+                        req,
+                        f -> {
+                          try {
+                            Thread.sleep(MILLIS_PER_FACT);
+                          } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                          }
+                          received.incrementAndGet();
+                        }))
+            .collect(Collectors.toList());
+    for (Subscription s : subscriptions) {
+      s.awaitComplete(TimeUnit.MINUTES.toMillis(10));
+    }
+    long millis = sw.stop().elapsed(TimeUnit.MILLISECONDS);
+    factory.destroy();
+
+    assertThat(received.get()).isEqualTo(SUBSCRIBERS * NUMBER_OF_FACTS);
+    log.info(
+        "{}: {} subscribers taking {}ms per fact caught up with {} facts in {}ms "
+            + "(at least {}ms each), peak of {} threads ({} before)",
+        strategy,
+        SUBSCRIBERS,
+        MILLIS_PER_FACT,
+        NUMBER_OF_FACTS,
+        millis,
+        NUMBER_OF_FACTS * MILLIS_PER_FACT,
+        threads.getPeakThreadCount(),
+        threadsBefore);
+  }
+}
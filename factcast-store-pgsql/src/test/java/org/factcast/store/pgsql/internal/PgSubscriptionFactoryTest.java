@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import lombok.NonNull;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.subscription.FactTransformers;
+import org.factcast.core.subscription.FactTransformersFactory;
+import org.factcast.core.subscription.SubscriptionRequest;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.listen.PgNotificationDispatcher;
+import org.factcast.store.pgsql.internal.query.PgFactIdToSerialMapper;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class PgSubscriptionFactoryTest {
+
+  @Mock private @NonNull JdbcTemplate jdbcTemplate;
+  @Mock private @NonNull PgNotificationDispatcher dispatcher;
+  @Mock private @NonNull PgFactIdToSerialMapper idToSerialMapper;
+  @Mock private @NonNull PgLatestSerialFetcher fetcher;
+  @Mock private @NonNull PgCatchupFactory catchupFactory;
+  @Mock private @NonNull FactTransformersFactory transformersFactory;
+  @Mock private @NonNull ExecutorService executor;
+  @Mock private @NonNull ExecutorService followExecutor;
+  @Mock private @NonNull FactTransformers transformers;
+
+  private PgSubscriptionFactory createFactory() {
+    return new PgSubscriptionFactory(
+        jdbcTemplate,
+        dispatcher,
+        idToSerialMapper,
+        fetcher,
+        catchupFactory,
+        transformersFactory,
+        null,
+        executor,
+        followExecutor);
+  }
+
+  @Test
+  void connectsOnExecutor() {
+    SubscriptionRequestTO req =
+        SubscriptionRequestTO.forFacts(
+            SubscriptionRequest.catchup(FactSpec.ns("foo")).fromScratch());
+    when(transformersFactory.createFor(req)).thenReturn(transformers);
+
+    createFactory().subscribe(req, f -> {});
+
+    verify(executor).execute(any(Runnable.class));
+  }
+
+  @Test
+  void shutsDownExecutor() {
+    createFactory().destroy();
+
+    verify(executor).shutdownNow();
+    verify(followExecutor).shutdownNow();
+  }
+
+  @Test
+  void createsUnboundedFollowExecutor() {
+    ExecutorService e = PgSubscriptionFactory.newFollowExecutor();
+    try {
+      assertThat(e).isInstanceOf(ThreadPoolExecutor.class);
+      assertThat(((ThreadPoolExecutor) e).getMaximumPoolSize()).isEqualTo(Integer.MAX_VALUE);
+    } finally {
+      e.shutdownNow();
+    }
+  }
+
+  @Test
+  void createsBoundedExecutor() {
+    ExecutorService e = PgSubscriptionFactory.newBoundedExecutor(7);
+    try {
+      assertThat(e).isInstanceOf(ThreadPoolExecutor.class);
+      assertThat(((ThreadPoolExecutor) e).getMaximumPoolSize()).isEqualTo(7);
+    } finally {
+      e.shutdownNow();
+    }
+  }
+
+  @Test
+  void fallsBackToPlatformThreadsWithoutVirtualThreads() {
+    ExecutorService e = PgSubscriptionFactory.newVirtualThreadExecutor(Object.class);
+    try {
+      assertThat(e).isInstanceOf(ThreadPoolExecutor.class);
+      assertThat(((ThreadPoolExecutor) e).getMaximumPoolSize()).isEqualTo(Integer.MAX_VALUE);
+    } finally {
+      e.shutdownNow();
+    }
+  }
+}
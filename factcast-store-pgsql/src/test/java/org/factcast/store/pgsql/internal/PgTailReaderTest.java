@@ -0,0 +1,339 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import lombok.SneakyThrows;
+import org.assertj.core.util.Lists;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.internal.listen.PgListener.FactInsertionEvent;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+@ExtendWith(MockitoExtension.class)
+class PgTailReaderTest {
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @Mock private PgLatestSerialFetcher fetcher;
+
+  @Mock private ExecutorService executor;
+
+  private final List<Runnable> deliveries = new ArrayList<>();
+
+  private PgTailReader uut;
+
+  @BeforeEach
+  void setup() {
+    uut = new PgTailReader(jdbcTemplate, fetcher, 10, executor, Runnable::run);
+  }
+
+  private void deliverLater() {
+    uut = new PgTailReader(jdbcTemplate, fetcher, 10, executor, deliveries::add);
+  }
+
+  private void runDeliveries() {
+    new ArrayList<>(deliveries).forEach(Runnable::run);
+    deliveries.clear();
+  }
+
+  @Nested
+  class WhenRegistering {
+
+    @Test
+    void triggersRead() {
+      uut.register(new TestFollower(5, f -> true));
+
+      verify(executor).execute(any());
+    }
+
+    @Test
+    void startsAtLatestFact() {
+      when(fetcher.retrieveLatestSer()).thenReturn(10L);
+      TestFollower follower = spy(new TestFollower(0, f -> true));
+
+      uut.register(follower);
+
+      verify(follower).catchupTo(10);
+      assertThat(follower.serial.get()).isEqualTo(10);
+    }
+
+    @Test
+    void startsAtHighWaterMarkWhenPublishingConcurrently() {
+      when(fetcher.upperBound()).thenReturn(() -> 8L);
+      TestFollower follower = spy(new TestFollower(0, f -> true));
+
+      uut.register(follower);
+
+      verify(follower).catchupTo(8);
+      verify(fetcher, never()).retrieveLatestSer();
+    }
+
+    @Test
+    void letsFollowerBehindTailCatchUp() {
+      when(fetcher.retrieveLatestSer()).thenReturn(5L);
+      TestFollower first = new TestFollower(5, f -> true);
+      TestFollower second = spy(new TestFollower(3, f -> true));
+
+      uut.register(first);
+      uut.register(second);
+
+      verify(second).catchupTo(5);
+    }
+
+    @Test
+    void doesNotLetFollowerAheadOfTailCatchUp() {
+      when(fetcher.retrieveLatestSer()).thenReturn(5L);
+      TestFollower first = new TestFollower(5, f -> true);
+      TestFollower second = spy(new TestFollower(7, f -> true));
+
+      uut.register(first);
+      uut.register(second);
+
+      verify(second, never()).catchupTo(anyLong());
+    }
+  }
+
+  @Nested
+  class WhenNotified {
+
+    @Test
+    void skipsIfNoFollowerIsInterested() {
+      uut.register(new TestFollower(5, f -> "match".equals(f.ns())));
+      verify(executor).execute(any());
+
+      uut.onEvent(
+          new FactInsertionEvent(
+              "fact_insert", Lists.newArrayList(Fact.builder().ns("other").buildWithoutPayload())));
+
+      verifyNoMoreInteractions(executor);
+    }
+
+    @Test
+    void doesNotSkipIfReadingIsBoundedByHighWaterMark() {
+      when(fetcher.upperBound()).thenReturn(() -> 5L);
+      doAnswer(
+              i -> {
+                i.<Runnable>getArgument(0).run();
+                return null;
+              })
+          .when(executor)
+          .execute(any());
+      uut.register(new TestFollower(5, f -> "match".equals(f.ns())));
+
+      // a non-matching fact committed after a matching one with a higher serial moves the
+      // high-water mark past the latter
+      uut.onEvent(
+          new FactInsertionEvent(
+              "fact_insert", Lists.newArrayList(Fact.builder().ns("other").buildWithoutPayload())));
+
+      verify(executor, times(2)).execute(any());
+      verify(jdbcTemplate, times(2)).query(anyString(), any(Object[].class), any(RowMapper.class));
+    }
+  }
+
+  @Nested
+  class WhenReading {
+
+    @SneakyThrows
+    @Test
+    void handsOverMatchingFacts() {
+      when(fetcher.retrieveLatestSer()).thenReturn(5L);
+      TestFollower all = new TestFollower(5, f -> true);
+      TestFollower none = new TestFollower(5, f -> false);
+      TestFollower ahead = new TestFollower(6, f -> true);
+      uut.register(all);
+      uut.register(none);
+      uut.register(ahead);
+      returnRows(6, 7);
+
+      uut.read();
+
+      assertThat(all.received).hasSize(2);
+      assertThat(none.received).isEmpty();
+      assertThat(ahead.received).hasSize(1);
+      assertThat(all.serial.get()).isEqualTo(7);
+      assertThat(none.serial.get()).isEqualTo(7);
+      assertThat(ahead.serial.get()).isEqualTo(7);
+      verify(jdbcTemplate)
+          .query(
+              eq(PgConstants.SELECT_FACTS_AFTER),
+              eq(new Object[] {5L, Long.MAX_VALUE, 10}),
+              any(RowMapper.class));
+    }
+
+    @Test
+    void skipsWithoutFollowers() {
+      TestFollower follower = new TestFollower(5, f -> true);
+      uut.register(follower);
+      follower.connected = false;
+
+      uut.read();
+
+      verifyNoInteractions(jdbcTemplate);
+    }
+
+    @SneakyThrows
+    @Test
+    void removesFailingFollower() {
+      when(fetcher.retrieveLatestSer()).thenReturn(5L);
+      TestFollower failing = spy(new TestFollower(5, f -> true));
+      doThrow(IllegalStateException.class).when(failing).notify(any());
+      uut.register(failing);
+      returnRows(6);
+
+      uut.read();
+      reset(jdbcTemplate);
+      uut.read();
+
+      verify(failing).notify(any());
+      verifyNoInteractions(jdbcTemplate);
+    }
+
+    @SneakyThrows
+    @Test
+    void deliversOutsideOfReadingThread() {
+      deliverLater();
+      when(fetcher.retrieveLatestSer()).thenReturn(5L);
+      TestFollower slow = new TestFollower(5, f -> true);
+      TestFollower fast = new TestFollower(5, f -> true);
+      uut.register(slow);
+      uut.register(fast);
+      returnRows(6, 7);
+
+      uut.read();
+
+      assertThat(deliveries).hasSize(2);
+      assertThat(slow.received).isEmpty();
+      deliveries.remove(0).run();
+      assertThat(slow.received).hasSize(2);
+      assertThat(fast.received).isEmpty();
+    }
+
+    @SneakyThrows
+    @Test
+    void letsFollowerFallingBehindCatchUpOnItsOwn() {
+      deliverLater();
+      when(fetcher.retrieveLatestSer()).thenReturn(5L);
+      TestFollower slow = spy(new TestFollower(5, f -> true));
+      uut.register(slow);
+      returnRows(6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16);
+
+      uut.read();
+      runDeliveries();
+
+      verify(slow).catchupTo(16);
+      verify(slow, never()).notify(any());
+      assertThat(slow.serial.get()).isEqualTo(16);
+    }
+
+    @SneakyThrows
+    @Test
+    void advancesFollowerPastFactsThatCannotMatch() {
+      when(fetcher.retrieveLatestSer()).thenReturn(5L);
+      TestFollower none = new TestFollower(5, f -> false);
+      uut.register(none);
+      returnRows(6, 7);
+
+      uut.read();
+
+      assertThat(none.serial.get()).isEqualTo(7);
+      assertThat(none.received).isEmpty();
+    }
+
+    @SneakyThrows
+    @SuppressWarnings("unchecked")
+    private void returnRows(long... sers) {
+      when(jdbcTemplate.query(anyString(), any(Object[].class), any(RowMapper.class)))
+          .thenAnswer(
+              i -> {
+                RowMapper<Long> mapper = i.getArgument(2);
+                List<Long> ret = new ArrayList<>();
+                for (long ser : sers) {
+                  ResultSet rs = mock(ResultSet.class, withSettings().lenient());
+                  when(rs.getString(PgConstants.ALIAS_ID)).thenReturn(UUID.randomUUID().toString());
+                  when(rs.getString(PgConstants.ALIAS_NS)).thenReturn("ns");
+                  when(rs.getString(PgConstants.COLUMN_HEADER)).thenReturn("{}");
+                  when(rs.getString(PgConstants.COLUMN_PAYLOAD)).thenReturn("{}");
+                  when(rs.getLong(PgConstants.COLUMN_SER)).thenReturn(ser);
+                  ret.add(mapper.mapRow(rs, ret.size()));
+                }
+                return ret;
+              });
+    }
+  }
+
+  static class TestFollower implements PgTailReader.Follower {
+
+    final AtomicLong serial;
+
+    final Predicate<Fact> predicate;
+
+    final List<Fact> received = new ArrayList<>();
+
+    boolean connected = true;
+
+    TestFollower(long serial, Predicate<Fact> predicate) {
+      this.serial = new AtomicLong(serial);
+      this.predicate = predicate;
+    }
+
+    @Override
+    public AtomicLong serial() {
+      return serial;
+    }
+
+    @Override
+    public boolean isConnected() {
+      return connected;
+    }
+
+    @Override
+    public boolean test(Fact f) {
+      return predicate.test(f);
+    }
+
+    @Override
+    public boolean mightMatch(Fact f) {
+      return predicate.test(f);
+    }
+
+    @Override
+    public void notify(Fact f) {
+      received.add(f);
+    }
+
+    @Override
+    public void catchupTo(long ser) {
+      serial.set(ser);
+    }
+  }
+}
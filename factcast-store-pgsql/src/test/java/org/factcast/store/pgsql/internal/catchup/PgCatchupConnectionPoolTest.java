@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+import lombok.val;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgMetrics;
+import org.junit.jupiter.api.*;
+
+class PgCatchupConnectionPoolTest {
+
+  final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  final PgMetrics metrics = new PgMetrics(registry);
+
+  final PgConfigurationProperties props =
+      new PgConfigurationProperties()
+          .setCatchupConnectionPoolSize(7)
+          .setCatchupConnectionMaxWaitInMillis(1234);
+
+  org.apache.tomcat.jdbc.pool.DataSource ds;
+
+  @BeforeEach
+  void setup() {
+    PoolProperties p = new PoolProperties();
+    p.setUrl("jdbc:xyz:foo");
+    p.setUsername("user");
+    p.setPassword("secret");
+    p.setConnectionProperties("socketTimeout=20;");
+    p.setMaxActive(100);
+    ds = new org.apache.tomcat.jdbc.pool.DataSource(p);
+  }
+
+  @Test
+  void rejectsWrongDataSourceImplementation() {
+    assertThatThrownBy(() -> new PgCatchupConnectionPool(mock(DataSource.class), props, metrics))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void copiesConnectionSettings() {
+    val p = PgCatchupConnectionPool.createPoolProperties(ds.getPoolProperties(), props);
+
+    assertThat(p.getUrl()).isEqualTo("jdbc:xyz:foo");
+    assertThat(p.getUsername()).isEqualTo("user");
+    assertThat(p.getPassword()).isEqualTo("secret");
+    assertThat(p.getConnectionProperties()).isEqualTo("socketTimeout=20;");
+  }
+
+  @Test
+  void isBoundedAndQueueing() {
+    val p = PgCatchupConnectionPool.createPoolProperties(ds.getPoolProperties(), props);
+
+    assertThat(p.getMaxActive()).isEqualTo(7);
+    assertThat(p.getMaxWait()).isEqualTo(1234);
+    assertThat(p.isFairQueue()).isTrue();
+    assertThat(p.getRollbackOnReturn()).isTrue();
+  }
+
+  @Test
+  void registersGauges() {
+    new PgCatchupConnectionPool(ds, props, metrics);
+
+    assertThat(
+            registry
+                .get("factcast.store.gauges")
+                .tag("gauge", "catchupConnectionsActive")
+                .gauge()
+                .value())
+        .isEqualTo(0);
+    assertThat(
+            registry
+                .get("factcast.store.gauges")
+                .tag("gauge", "catchupConnectionsPending")
+                .gauge()
+                .value())
+        .isEqualTo(0);
+  }
+
+  @Test
+  void timesWaitingForConnection() {
+    val uut = new PgCatchupConnectionPool(ds, props, metrics);
+
+    assertThatThrownBy(uut::get).isInstanceOf(SQLException.class);
+    assertThatThrownBy(() -> uut.dataSource().getConnection()).isInstanceOf(SQLException.class);
+
+    assertThat(
+            registry
+                .get("factcast.store.operations.duration")
+                .tag("operation", "catchupConnectionWait")
+                .tag("exception", "SQLException")
+                .timer()
+                .count())
+        .isEqualTo(2);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.cache;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupConnectionPool;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.catchup.cache.PgCatchupCache.Serials;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class PgCachingCatchupTest {
+
+  @Mock private @NonNull PgCatchupFactory delegate;
+  @Mock private @NonNull PgCatchup delegateCatchup;
+  @Mock private @NonNull PgCatchupCache cache;
+  @Mock private @NonNull PgCatchupConnectionPool pool;
+  @Mock private @NonNull PgConfigurationProperties props;
+  @Mock private @NonNull PgLatestSerialFetcher fetcher;
+  @Mock private @NonNull SubscriptionRequestTO req;
+  @Mock private @NonNull PgPostQueryMatcher postQueryMatcher;
+  @Mock private @NonNull SubscriptionImpl subscription;
+
+  private final List<FactSpec> specs = Lists.newArrayList(FactSpec.ns("foo"));
+
+  private final AtomicLong serial = new AtomicLong();
+
+  private PgCachingCatchup createCatchup(long ser) {
+    serial.set(ser);
+    return new PgCachingCatchup(
+        delegate, cache, pool, props, fetcher, req, postQueryMatcher, subscription, serial);
+  }
+
+  @BeforeEach
+  void setup() {
+    when(req.specs()).thenReturn(specs);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void fillsCacheFromScratchAndLeavesTheRestToDelegate() {
+    when(cache.get(same(specs), any(Callable.class))).thenReturn(new Serials(new long[0], 42));
+    PgCachingCatchup uut = createCatchup(0);
+    when(delegate.create(same(req), same(postQueryMatcher), same(subscription), same(serial)))
+        .thenReturn(delegateCatchup);
+
+    uut.run();
+
+    verify(cache, never()).find(any());
+    assertThat(serial.get()).isEqualTo(42);
+    verify(delegateCatchup).run();
+  }
+
+  @Test
+  void onlyUsesExistingEntriesWhenNotFromScratch() {
+    when(cache.find(specs)).thenReturn(null);
+    PgCachingCatchup uut = createCatchup(7);
+    when(delegate.create(any(), any(), any(), any())).thenReturn(delegateCatchup);
+
+    uut.run();
+
+    assertThat(serial.get()).isEqualTo(7);
+    verify(delegateCatchup).run();
+  }
+
+  @Test
+  void ignoresEntriesBehindSerial() {
+    when(cache.find(specs)).thenReturn(new Serials(new long[] {1, 2}, 5));
+    PgCachingCatchup uut = createCatchup(7);
+    when(delegate.create(any(), any(), any(), any())).thenReturn(delegateCatchup);
+
+    uut.run();
+
+    verifyNoInteractions(pool);
+    assertThat(serial.get()).isEqualTo(7);
+    verify(delegateCatchup).run();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void doesNotDelegateWhenCacheFails() {
+    when(cache.get(same(specs), any(Callable.class))).thenThrow(new IllegalStateException());
+
+    createCatchup(0).run();
+
+    verifyNoInteractions(delegate);
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.cache;
+
+import static org.assertj.core.api.Assertions.*;
+
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.store.pgsql.internal.PgMetrics;
+import org.factcast.store.pgsql.internal.catchup.cache.PgCatchupCache.Serials;
+import org.factcast.store.pgsql.internal.catchup.cache.PgCatchupCache.SpecKey;
+import org.junit.jupiter.api.*;
+
+class PgCatchupCacheTest {
+
+  final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  final PgCatchupCache uut = new PgCatchupCache(100, 10, new PgMetrics(registry));
+
+  final List<FactSpec> specs = Lists.newArrayList(FactSpec.ns("foo").type("bar"));
+
+  private double count(String op) {
+    return registry.get("factcast.store.operations").tag("operation", op).counter().count();
+  }
+
+  @Nested
+  class WhenCreatingKey {
+
+    @Test
+    void ignoresOrderAndDuplicates() {
+      FactSpec s1 = FactSpec.ns("a").meta("x", "1").meta("y", "2");
+      FactSpec s2 = FactSpec.ns("b").aggId(new UUID(0, 1));
+
+      assertThat(PgCatchupCache.key(Lists.newArrayList(s1, s2, s1)))
+          .isEqualTo(PgCatchupCache.key(Lists.newArrayList(s2, s1)));
+    }
+
+    @Test
+    void ignoresVersionAndScript() {
+      FactSpec s1 = FactSpec.ns("a").type("t").version(2).jsFilterScript("function (h,e){}");
+      FactSpec s2 = FactSpec.ns("a").type("t");
+
+      assertThat(PgCatchupCache.key(Lists.newArrayList(s1)))
+          .isEqualTo(PgCatchupCache.key(Lists.newArrayList(s2)));
+    }
+
+    @Test
+    void treatsWildcardNamespaceLikeNone() {
+      assertThat(PgCatchupCache.key(Lists.newArrayList(FactSpec.ns("*"))))
+          .isNotEqualTo(PgCatchupCache.key(Lists.newArrayList(FactSpec.ns("a"))));
+      assertThat(PgCatchupCache.key(Lists.newArrayList(FactSpec.ns("*").type("t"))))
+          .containsExactly(new SpecKey(null, "t", null, Collections.emptyMap()));
+    }
+
+    @Test
+    void doesNotMixUpAttributes() {
+      assertThat(PgCatchupCache.key(Lists.newArrayList(FactSpec.ns("a|b").type("c"))))
+          .isNotEqualTo(PgCatchupCache.key(Lists.newArrayList(FactSpec.ns("a").type("b|c"))));
+      assertThat(PgCatchupCache.key(Lists.newArrayList(FactSpec.ns("a").meta("x", "1, y=2"))))
+          .isNotEqualTo(
+              PgCatchupCache.key(
+                  Lists.newArrayList(FactSpec.ns("a").meta("x", "1").meta("y", "2"))));
+    }
+
+    @Test
+    void distinguishesWhereClauseRelevantAttributes() {
+      assertThat(PgCatchupCache.key(Lists.newArrayList(FactSpec.ns("a").meta("x", "1"))))
+          .isNotEqualTo(PgCatchupCache.key(Lists.newArrayList(FactSpec.ns("a").meta("x", "2"))));
+    }
+  }
+
+  @Test
+  void loadsOnceAndCountsHitsAndMisses() {
+    Serials serials = new Serials(new long[] {1, 2, 3}, 4);
+    AtomicInteger loads = new AtomicInteger();
+
+    assertThat(uut.find(specs)).isNull();
+    assertThat(
+            uut.get(
+                specs,
+                () -> {
+                  loads.incrementAndGet();
+                  return serials;
+                }))
+        .isSameAs(serials);
+    assertThat(uut.get(specs, () -> null)).isSameAs(serials);
+    assertThat(uut.find(specs)).isSameAs(serials);
+
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(count("catchupCacheMiss")).isEqualTo(2);
+    assertThat(count("catchupCacheHit")).isEqualTo(2);
+  }
+
+  @Test
+  void concurrentCatchupsShareOneLoad() throws Exception {
+    Serials serials = new Serials(new long[] {1}, 1);
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch loading = new CountDownLatch(1);
+
+    CompletableFuture<Serials> first =
+        CompletableFuture.supplyAsync(
+            () ->
+                uut.get(
+                    specs,
+                    () -> {
+                      loads.incrementAndGet();
+                      loading.countDown();
+                      Thread.sleep(200);
+                      return serials;
+                    }));
+    loading.await();
+    Serials second =
+        uut.get(
+            specs,
+            () -> {
+              loads.incrementAndGet();
+              return serials;
+            });
+
+    assertThat(first.get()).isSameAs(second);
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  void passesOnLoaderException() {
+    assertThatThrownBy(
+            () ->
+                uut.get(
+                    specs,
+                    () -> {
+                      throw new IllegalStateException("db gone");
+                    }))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void findsIndexAfterSerial() {
+    Serials serials = new Serials(new long[] {3, 5, 9}, 10);
+
+    assertThat(serials.indexAfter(0)).isEqualTo(0);
+    assertThat(serials.indexAfter(3)).isEqualTo(1);
+    assertThat(serials.indexAfter(4)).isEqualTo(1);
+    assertThat(serials.indexAfter(9)).isEqualTo(3);
+  }
+}
@@ -18,6 +18,7 @@
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.util.concurrent.atomic.AtomicLong;
 import lombok.NonNull;
@@ -30,7 +31,8 @@
 import org.factcast.core.subscription.TransformationException;
 import org.factcast.store.pgsql.PgConfigurationProperties;
 import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
-import org.factcast.store.pgsql.internal.listen.PgConnectionSupplier;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupConnectionPool;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
 import org.factcast.store.pgsql.internal.rowmapper.PgFactExtractor;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.*;
@@ -38,7 +40,6 @@
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.postgresql.jdbc.PgConnection;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementSetter;
 import org.springframework.jdbc.core.RowCallbackHandler;
@@ -46,8 +47,9 @@
 @ExtendWith(MockitoExtension.class)
 class PgFetchingCatchupTest {
 
-  @Mock private @NonNull PgConnectionSupplier connectionSupplier;
+  @Mock private @NonNull PgCatchupConnectionPool pool;
   @Mock private @NonNull PgConfigurationProperties props;
+  @Mock private @NonNull PgLatestSerialFetcher fetcher;
   @Mock private @NonNull SubscriptionRequestTO req;
   @Mock private @NonNull PgPostQueryMatcher postQueryMatcher;
   @Mock private @NonNull SubscriptionImpl subscription;
@@ -62,8 +64,8 @@ void setup() {}
     @SneakyThrows
     @Test
     void connectionHandling() {
-      PgConnection con = mock(PgConnection.class);
-      when(connectionSupplier.get()).thenReturn(con);
+      Connection con = mock(Connection.class);
+      when(pool.get()).thenReturn(con);
 
       val uut = spy(underTest);
       doNothing().when(uut).fetch(any());
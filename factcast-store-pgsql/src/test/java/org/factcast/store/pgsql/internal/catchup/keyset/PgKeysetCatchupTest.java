@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.keyset;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import org.factcast.core.Fact;
+import org.factcast.core.TestFact;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.TransformationException;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.factcast.store.pgsql.internal.rowmapper.PgFactExtractor;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+@ExtendWith(MockitoExtension.class)
+class PgKeysetCatchupTest {
+
+  @Mock private @NonNull JdbcTemplate jdbc;
+  @Mock private @NonNull PgConfigurationProperties props;
+  @Mock private @NonNull PgLatestSerialFetcher fetcher;
+  @Mock private @NonNull SubscriptionRequestTO req;
+  @Mock private @NonNull PgPostQueryMatcher postQueryMatcher;
+  @Mock private @NonNull SubscriptionImpl subscription;
+  private final AtomicLong serial = new AtomicLong();
+  private PgKeysetCatchup underTest;
+
+  @BeforeEach
+  void setup() {
+    underTest =
+        new PgKeysetCatchup(jdbc, props, fetcher, req, postQueryMatcher, subscription, serial);
+  }
+
+  @Nested
+  class WhenRunning {
+    @BeforeEach
+    void setup() {
+      when(req.specs()).thenReturn(Lists.newArrayList(FactSpec.ns("foo")));
+      when(props.getPageSize()).thenReturn(2);
+      when(postQueryMatcher.canBeSkipped()).thenReturn(true);
+    }
+
+    @SneakyThrows
+    @Test
+    void pagesUntilPageIsNotFull() {
+      Fact f1 = new TestFact();
+      Fact f2 = new TestFact();
+      Fact f3 = new TestFact();
+      when(jdbc.query(
+              endsWith("LIMIT ?"), any(PreparedStatementSetter.class), any(PgFactExtractor.class)))
+          .thenReturn(Lists.newArrayList(f1, f2), Lists.newArrayList(f3));
+
+      underTest.run();
+
+      verify(jdbc, times(2))
+          .query(anyString(), any(PreparedStatementSetter.class), any(PgFactExtractor.class));
+      verify(subscription).notifyElement(f1);
+      verify(subscription).notifyElement(f2);
+      verify(subscription).notifyElement(f3);
+      verify(postQueryMatcher, never()).test(any());
+    }
+
+    @SneakyThrows
+    @Test
+    void stopsOnEmptyPage() {
+      when(jdbc.query(anyString(), any(PreparedStatementSetter.class), any(PgFactExtractor.class)))
+          .thenReturn(Collections.emptyList());
+
+      underTest.run();
+
+      verify(jdbc, times(1))
+          .query(anyString(), any(PreparedStatementSetter.class), any(PgFactExtractor.class));
+      verifyNoInteractions(subscription);
+    }
+  }
+
+  @Nested
+  class WhenNotifying {
+
+    @SneakyThrows
+    @Test
+    void skipsPostQueryMatching() {
+      Fact testFact = new TestFact();
+      underTest.notifyElements(Lists.newArrayList(testFact), true);
+
+      verifyNoInteractions(postQueryMatcher);
+      verify(subscription).notifyElement(testFact);
+    }
+
+    @SneakyThrows
+    @Test
+    void filtersInPostQueryMatching() {
+      Fact testFact = new TestFact();
+      when(postQueryMatcher.test(testFact)).thenReturn(false);
+
+      underTest.notifyElements(Lists.newArrayList(testFact), false);
+
+      verifyNoInteractions(subscription);
+    }
+
+    @SneakyThrows
+    @Test
+    void notifiesTransformationException() {
+      Fact testFact = new TestFact();
+      when(postQueryMatcher.test(testFact)).thenReturn(true);
+      doThrow(TransformationException.class).when(subscription).notifyElement(testFact);
+
+      assertThatThrownBy(() -> underTest.notifyElements(Lists.newArrayList(testFact), false));
+
+      verify(subscription).notifyError(any());
+    }
+
+    @SneakyThrows
+    @Test
+    void closesOnRTException() {
+      Fact testFact = new TestFact();
+      when(postQueryMatcher.test(testFact)).thenReturn(true);
+      doThrow(RuntimeException.class).when(subscription).notifyElement(testFact);
+
+      assertThatThrownBy(() -> underTest.notifyElements(Lists.newArrayList(testFact), false));
+
+      verify(subscription).close();
+    }
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.parallel;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.factcast.core.Fact;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.observer.FactObserver;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupConnectionPool;
+import org.factcast.store.pgsql.internal.catchup.parallel.PgParallelCatchup.Chunk;
+import org.factcast.store.pgsql.internal.catchup.parallel.PgParallelCatchup.Row;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class PgParallelCatchupTest {
+
+  @Mock private @NonNull PgCatchupConnectionPool pool;
+  @Mock private @NonNull PgLatestSerialFetcher fetcher;
+  @Mock private @NonNull SubscriptionRequestTO req;
+  @Mock private @NonNull PgPostQueryMatcher postQueryMatcher;
+
+  private final PgConfigurationProperties props =
+      new PgConfigurationProperties()
+          .setCatchupParallelism(3)
+          .setCatchupParallelChunkSize(10)
+          .setCatchupParallelBufferSizeInMegabytes(1);
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  private final List<Fact> received = new CopyOnWriteArrayList<>();
+
+  private final AtomicLong serial = new AtomicLong(0);
+
+  private final SubscriptionImpl subscription =
+      spy(SubscriptionImpl.on((FactObserver) received::add));
+
+  private PgParallelCatchup underTest;
+
+  @BeforeEach
+  void setup() {
+    underTest =
+        new PgParallelCatchup(
+            pool, props, fetcher, executor, req, postQueryMatcher, subscription, serial);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static Fact factWithSerial(long ser) {
+    return Fact.builder().ns("ns").meta("_ser", String.valueOf(ser)).buildWithoutPayload();
+  }
+
+  @Nested
+  class WhenSplitting {
+
+    @Test
+    void splitsIntoChunksWithOpenEnd() {
+      List<Chunk> chunks = underTest.split(5, 30);
+
+      assertThat(chunks).extracting(Chunk::from).containsExactly(5L, 15L, 25L);
+      assertThat(chunks).extracting(Chunk::to).containsExactly(15L, 25L, null);
+    }
+
+    @Test
+    void usesSingleOpenChunkWhenUpToDate() {
+      List<Chunk> chunks = underTest.split(30, 30);
+
+      assertThat(chunks).extracting(Chunk::from).containsExactly(30L);
+      assertThat(chunks).extracting(Chunk::to).containsNull();
+    }
+  }
+
+  @Nested
+  class WhenRunning {
+
+    @BeforeEach
+    void setup() {
+      when(postQueryMatcher.canBeSkipped()).thenReturn(true);
+      when(fetcher.retrieveLatestSer()).thenReturn(45L);
+    }
+
+    @Test
+    void deliversChunksInOrderOfSerials() {
+      val uut = spy(underTest);
+      doAnswer(
+              i -> {
+                Chunk c = i.getArgument(0);
+                // later chunks finish first
+                Thread.sleep(Math.max(0, 50 - c.from()));
+                return fill(c, Integer.MAX_VALUE);
+              })
+          .when(uut)
+          .query(any(), any());
+
+      uut.run();
+
+      assertThat(received.stream().map(Fact::serial).collect(Collectors.toList()))
+          .containsExactlyElementsOf(
+              LongStream.rangeClosed(1, 50).boxed().collect(Collectors.toList()));
+      assertThat(serial.get()).isEqualTo(50);
+    }
+
+    @Test
+    void continuesPausedChunks() {
+      val uut = spy(underTest);
+      // as if the buffer was full after every 3 facts
+      doAnswer(i -> fill(i.getArgument(0), 3)).when(uut).query(any(), any());
+
+      uut.run();
+
+      assertThat(received.stream().map(Fact::serial).collect(Collectors.toList()))
+          .containsExactlyElementsOf(
+              LongStream.rangeClosed(1, 50).boxed().collect(Collectors.toList()));
+      verify(uut, atLeast(17)).query(any(), any());
+    }
+
+    @Test
+    void stopsOnFailingChunk() {
+      val uut = spy(underTest);
+      doAnswer(
+              i -> {
+                Chunk c = i.getArgument(0);
+                if (c.from() == 10) {
+                  throw new IllegalStateException("db gone");
+                }
+                return fill(c, Integer.MAX_VALUE);
+              })
+          .when(uut)
+          .query(any(), any());
+
+      uut.run();
+
+      assertThat(received).hasSize(10);
+      assertThat(serial.get()).isEqualTo(10);
+      verify(subscription).notifyError(any(IllegalStateException.class));
+    }
+
+    @Test
+    void keepsSerialOfLastDeliveredFactOnFailingChunk() {
+      val uut = spy(underTest);
+      doAnswer(
+              i -> {
+                Chunk c = i.getArgument(0);
+                if (c.from() == 10 && c.serial().get() > 10) {
+                  throw new IllegalStateException("db gone");
+                }
+                // pauses after 3 facts
+                return fill(c, 3);
+              })
+          .when(uut)
+          .query(any(), any());
+
+      uut.run();
+
+      assertThat(received.stream().map(Fact::serial).collect(Collectors.toList()))
+          .containsExactlyElementsOf(
+              LongStream.rangeClosed(1, 13).boxed().collect(Collectors.toList()));
+      assertThat(serial.get()).isEqualTo(13);
+      verify(subscription).notifyError(any(IllegalStateException.class));
+    }
+
+    /** adds up to max facts after the chunk's serial, up to 50 for the open-ended one */
+    private boolean fill(Chunk c, int max) {
+      long to = c.to() != null ? c.to() : 50;
+      for (int n = 0; n < max && c.hasRoom(); n++) {
+        long ser = c.serial().get() + 1;
+        if (ser > to) {
+          return true;
+        }
+        c.serial().set(ser);
+        c.add(factWithSerial(ser), ser);
+      }
+      return c.serial().get() >= to;
+    }
+  }
+
+  @Nested
+  class WhenBuffering {
+
+    @SneakyThrows
+    @Test
+    void limitsBufferBySize() {
+      Fact f = factWithSerial(1);
+      long size = f.jsonHeader().length() + f.jsonPayload().length();
+      Chunk c = new Chunk(0, 10L, 2 * size);
+
+      assertThat(c.startFetching()).isTrue();
+      c.add(f, 1);
+      assertThat(c.hasRoom()).isTrue();
+      c.add(factWithSerial(2), 2);
+      assertThat(c.hasRoom()).isFalse();
+      c.pause();
+      assertThat(c.startFetching()).isFalse();
+
+      Row r = c.poll(0);
+      assertThat(r.fact()).isSameAs(f);
+      assertThat(r.serial()).isEqualTo(1);
+      assertThat(c.hasRoom()).isTrue();
+      assertThat(c.startFetching()).isTrue();
+    }
+  }
+}
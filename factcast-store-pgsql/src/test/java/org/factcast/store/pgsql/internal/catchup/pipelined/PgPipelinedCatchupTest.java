@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.pipelined;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.NonNull;
+import org.factcast.core.Fact;
+import org.factcast.core.TestFact;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.TransformationException;
+import org.factcast.core.subscription.observer.FactObserver;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class PgPipelinedCatchupTest {
+
+  @Mock private @NonNull PgCatchupFactory delegate;
+  @Mock private @NonNull SubscriptionRequestTO req;
+  @Mock private @NonNull PgPostQueryMatcher postQueryMatcher;
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  private final List<Fact> received = new CopyOnWriteArrayList<>();
+
+  private final List<Fact> facts =
+      IntStream.range(0, 100).mapToObj(i -> new TestFact()).collect(Collectors.toList());
+
+  private final AtomicInteger catchupsRead = new AtomicInteger();
+
+  private final Semaphore pipelines = new Semaphore(1);
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private PgPipelinedCatchup createCatchup(SubscriptionImpl subscription) {
+    when(delegate.create(same(req), same(postQueryMatcher), any(), any()))
+        .thenAnswer(
+            i -> {
+              SubscriptionImpl stage = i.getArgument(2);
+              return (PgCatchup)
+                  () -> {
+                    try {
+                      for (Fact f : facts) {
+                        stage.notifyElement(f);
+                        catchupsRead.incrementAndGet();
+                      }
+                    } catch (IllegalStateException e) {
+                      // pipeline stopped, like the actual catchups, we just log that
+                    }
+                  };
+            });
+    return new PgPipelinedCatchup(
+        delegate, executor, pipelines, 2, req, postQueryMatcher, subscription, new AtomicLong());
+  }
+
+  @Test
+  void deliversAllFactsInOrder() {
+    SubscriptionImpl subscription = SubscriptionImpl.on((FactObserver) received::add);
+
+    createCatchup(subscription).run();
+
+    assertThat(received).containsExactlyElementsOf(facts);
+  }
+
+  @Test
+  void runsInCallingThreadIfNoPipelineIsAvailable() {
+    ExecutorService unused = mock(ExecutorService.class);
+    pipelines.acquireUninterruptibly();
+    SubscriptionImpl subscription = SubscriptionImpl.on((FactObserver) received::add);
+    createCatchup(subscription);
+
+    new PgPipelinedCatchup(
+            delegate, unused, pipelines, 2, req, postQueryMatcher, subscription, new AtomicLong())
+        .run();
+
+    assertThat(received).containsExactlyElementsOf(facts);
+    verifyNoInteractions(unused);
+  }
+
+  @Test
+  void releasesPipelineWhenDone() {
+    createCatchup(SubscriptionImpl.on((FactObserver) received::add)).run();
+
+    assertThat(pipelines.availablePermits()).isEqualTo(1);
+  }
+
+  @Test
+  void transformsInBetween() {
+    Fact transformed = new TestFact();
+    SubscriptionImpl subscription = SubscriptionImpl.on(received::add, f -> transformed);
+
+    createCatchup(subscription).run();
+
+    assertThat(received).hasSize(facts.size()).containsOnly(transformed);
+  }
+
+  @Test
+  void notifiesTransformationErrorAndStopsReading() {
+    FactObserver observer = mock(FactObserver.class);
+    TransformationException e = new TransformationException(new IllegalArgumentException("boom"));
+    SubscriptionImpl subscription =
+        SubscriptionImpl.on(
+            observer,
+            f -> {
+              throw e;
+            });
+
+    createCatchup(subscription).run();
+
+    verify(observer).onError(e);
+    verify(observer, never()).onNext(any());
+    assertThat(catchupsRead.get()).isLessThan(facts.size());
+  }
+
+  @Test
+  void closesOnExceptionFromSubscriberAndStopsReading() {
+    FactObserver observer = mock(FactObserver.class);
+    doThrow(new IllegalStateException("client gone")).when(observer).onNext(any());
+    SubscriptionImpl subscription = spy(SubscriptionImpl.on(observer));
+
+    createCatchup(subscription).run();
+
+    verify(subscription).close();
+    verify(observer, times(1)).onNext(any());
+    assertThat(catchupsRead.get()).isLessThan(facts.size());
+  }
+}
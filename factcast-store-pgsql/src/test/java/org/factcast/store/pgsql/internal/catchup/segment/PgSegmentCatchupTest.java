@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.catchup.segment;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.Lists;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import org.factcast.core.Fact;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.subscription.SubscriptionImpl;
+import org.factcast.core.subscription.SubscriptionRequestTO;
+import org.factcast.core.subscription.TransformationException;
+import org.factcast.store.pgsql.internal.PgPostQueryMatcher;
+import org.factcast.store.pgsql.internal.catchup.PgCatchup;
+import org.factcast.store.pgsql.internal.catchup.PgCatchupFactory;
+import org.factcast.store.pgsql.internal.segment.PgFactSegmentCache;
+import org.factcast.store.pgsql.internal.segment.PgFactSegmentCache.RecordVisitor;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class PgSegmentCatchupTest {
+
+  @Mock private @NonNull PgCatchupFactory delegate;
+  @Mock private @NonNull PgCatchup delegateCatchup;
+  @Mock private @NonNull PgFactSegmentCache cache;
+  @Mock private @NonNull SubscriptionRequestTO req;
+  @Mock private @NonNull PgPostQueryMatcher postQueryMatcher;
+  @Mock private @NonNull SubscriptionImpl subscription;
+
+  private final List<FactSpec> specs = Lists.newArrayList(FactSpec.ns("foo"));
+
+  private final AtomicLong serial = new AtomicLong();
+
+  private PgSegmentCatchup createCatchup(long ser) {
+    serial.set(ser);
+    return new PgSegmentCatchup(delegate, cache, req, postQueryMatcher, subscription, serial);
+  }
+
+  /** lets the cache return records of the given namespaces, with serials starting at 1 */
+  private void cached(String... namespaces) {
+    doAnswer(
+            i -> {
+              RecordVisitor visitor = i.getArgument(2);
+              long ser = 0;
+              for (String ns : namespaces) {
+                ser++;
+                if (ser <= (long) i.getArgument(0)) {
+                  continue;
+                }
+                byte[] header =
+                    ("{\"id\":\"" + UUID.randomUUID() + "\",\"ns\":\"" + ns + "\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                byte[] payload = ("{\"ser\":" + ser + "}").getBytes(StandardCharsets.UTF_8);
+                ByteBuffer b = ByteBuffer.allocate(header.length + payload.length + 3);
+                b.position(3);
+                b.put(header).put(payload);
+                if (!visitor.visit(ser, b, 3, header.length, payload.length)) {
+                  return true;
+                }
+              }
+              return true;
+            })
+        .when(cache)
+        .read(anyLong(), anyLong(), any());
+  }
+
+  @Test
+  void deliversMatchingCachedFactsAndLeavesTheRestToDelegate() throws Exception {
+    when(req.specs()).thenReturn(specs);
+    when(cache.coveredUpTo()).thenReturn(5L);
+    when(postQueryMatcher.canBeSkipped()).thenReturn(true);
+    when(delegate.create(same(req), same(postQueryMatcher), same(subscription), same(serial)))
+        .thenReturn(delegateCatchup);
+    cached("foo", "bar", "foo", "bar");
+
+    createCatchup(0).run();
+
+    ArgumentCaptor<Fact> facts = ArgumentCaptor.forClass(Fact.class);
+    verify(subscription, times(2)).notifyElement(facts.capture());
+    assertThat(facts.getAllValues())
+        .extracting(Fact::jsonPayload)
+        .containsExactly("{\"ser\":1}", "{\"ser\":3}");
+    assertThat(serial.get()).isEqualTo(5);
+    verify(delegateCatchup).run();
+  }
+
+  @Test
+  void appliesPostQueryMatcher() throws Exception {
+    when(req.specs()).thenReturn(specs);
+    when(cache.coveredUpTo()).thenReturn(2L);
+    when(postQueryMatcher.canBeSkipped()).thenReturn(false);
+    when(postQueryMatcher.test(any())).thenReturn(false);
+    when(delegate.create(any(), any(), any(), any())).thenReturn(delegateCatchup);
+    cached("foo", "foo");
+
+    createCatchup(0).run();
+
+    verify(subscription, never()).notifyElement(any());
+    assertThat(serial.get()).isEqualTo(2);
+  }
+
+  @Test
+  void skipsCacheWhenBehindSerial() {
+    when(cache.coveredUpTo()).thenReturn(5L);
+    when(delegate.create(any(), any(), any(), any())).thenReturn(delegateCatchup);
+
+    createCatchup(5).run();
+
+    verify(cache, never()).read(anyLong(), anyLong(), any());
+    verify(delegateCatchup).run();
+  }
+
+  @Test
+  void skipsCacheForNarrowSpecs() {
+    when(req.specs()).thenReturn(Lists.newArrayList(FactSpec.ns("foo").type("bar")));
+    when(cache.coveredUpTo()).thenReturn(5L);
+    when(delegate.create(any(), any(), any(), any())).thenReturn(delegateCatchup);
+
+    createCatchup(0).run();
+
+    verify(cache, never()).read(anyLong(), anyLong(), any());
+    verify(delegateCatchup).run();
+  }
+
+  @Test
+  void leavesAllToDelegateIfNoLongerCached() {
+    when(req.specs()).thenReturn(specs);
+    when(cache.coveredUpTo()).thenReturn(5L);
+    when(cache.read(anyLong(), anyLong(), any())).thenReturn(false);
+    when(delegate.create(any(), any(), any(), any())).thenReturn(delegateCatchup);
+
+    createCatchup(0).run();
+
+    assertThat(serial.get()).isEqualTo(0);
+    verify(delegateCatchup).run();
+  }
+
+  @Test
+  void notifiesErrorsReadingTheCache() {
+    when(req.specs()).thenReturn(specs);
+    when(cache.coveredUpTo()).thenReturn(5L);
+    IllegalStateException e = new IllegalStateException("corrupt");
+    when(cache.read(anyLong(), anyLong(), any())).thenThrow(e);
+
+    createCatchup(0).run();
+
+    verify(subscription).notifyError(e);
+    verifyNoInteractions(delegate);
+  }
+
+  @Test
+  void notifiesTransformationErrorsAndDoesNotDelegate() throws Exception {
+    when(req.specs()).thenReturn(specs);
+    when(cache.coveredUpTo()).thenReturn(2L);
+    when(postQueryMatcher.canBeSkipped()).thenReturn(true);
+    TransformationException e = new TransformationException(new IllegalArgumentException("boom"));
+    doThrow(e).when(subscription).notifyElement(any());
+    cached("foo", "foo");
+
+    createCatchup(0).run();
+
+    verify(subscription).notifyError(e);
+    assertThat(serial.get()).isEqualTo(0);
+    verifyNoInteractions(delegate);
+  }
+}
@@ -19,9 +19,9 @@
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
-import com.google.common.eventbus.EventBus;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.UUID;
 import lombok.val;
 import org.factcast.store.pgsql.PgConfigurationProperties;
 import org.factcast.store.pgsql.internal.PgConstants;
@@ -44,7 +44,7 @@ public class PgListenerTest {
 
   @Mock PgConnectionSupplier pgConnectionSupplier;
 
-  @Mock EventBus eventBus;
+  @Mock PgNotificationDispatcher dispatcher;
 
   @Mock(answer = Answers.RETURNS_DEEP_STUBS)
   PgConnection conn;
@@ -62,7 +62,7 @@ public class PgListenerTest {
   public void postgresListenersAreSetup() throws SQLException {
     when(conn.prepareStatement(anyString()).execute()).thenReturn(true);
 
-    PgListener pgListener = new PgListener(pgConnectionSupplier, eventBus, props, registry);
+    PgListener pgListener = new PgListener(pgConnectionSupplier, dispatcher, props, registry);
     pgListener.setupPostgresListeners(conn);
 
     verify(conn.prepareStatement(anyString()), times(2)).execute();
@@ -70,10 +70,10 @@ public void postgresListenersAreSetup() throws SQLException {
 
   @Test
   public void subscribersAreInformedViaInternalEvent() {
-    PgListener pgListener = new PgListener(pgConnectionSupplier, eventBus, props, registry);
+    PgListener pgListener = new PgListener(pgConnectionSupplier, dispatcher, props, registry);
     pgListener.informSubscribersAboutFreshConnection();
 
-    verify(eventBus, times(1)).post(factCaptor.capture());
+    verify(dispatcher, times(1)).post(factCaptor.capture());
     assertEquals("scheduled-poll", factCaptor.getAllValues().get(0).name());
   }
 
@@ -82,7 +82,7 @@ public void receivedNotificationsArePassedThrough() throws SQLException {
     // there are some notifications
     when(conn.getNotifications(anyInt()))
         .thenReturn(new PGNotification[] {new Notification("some notification", 1)});
-    PgListener pgListener = spy(new PgListener(pgConnectionSupplier, eventBus, props, registry));
+    PgListener pgListener = spy(new PgListener(pgConnectionSupplier, dispatcher, props, registry));
 
     PGNotification[] pgNotifications = pgListener.receiveNotifications(conn);
 
@@ -95,7 +95,7 @@ public void receivedNotificationsArePassedThrough() throws SQLException {
   @Test
   public void whenReceiveTimeoutExpiresHealthCheckIsExecuted() throws SQLException {
     // arrange
-    PgListener pgListener = spy(new PgListener(pgConnectionSupplier, eventBus, props, registry));
+    PgListener pgListener = spy(new PgListener(pgConnectionSupplier, dispatcher, props, registry));
     // no notifications received after timeout expired
     when(conn.getNotifications(anyInt())).thenReturn(null);
     // health check returned something
@@ -120,7 +120,7 @@ public void onSuccessfulHealthCheckNotificationsArePassedThrough() throws SQLExc
     when(conn.getNotifications(anyInt()))
         .thenReturn(new PGNotification[] {new Notification("some notification", 1)});
 
-    PgListener pgListener = new PgListener(pgConnectionSupplier, eventBus, props, registry);
+    PgListener pgListener = new PgListener(pgConnectionSupplier, dispatcher, props, registry);
     PGNotification[] pgNotifications = pgListener.checkDatabaseConnectionHealthy(conn);
 
     assertEquals(1, pgNotifications.length);
@@ -136,7 +136,7 @@ public void throwsSqlExceptionWhenNoRoundtripNotificationWasReceived() throws SQ
     Assertions.assertThrows(
         SQLException.class,
         () -> {
-          PgListener pgListener = new PgListener(pgConnectionSupplier, eventBus, props, registry);
+          PgListener pgListener = new PgListener(pgConnectionSupplier, dispatcher, props, registry);
           pgListener.checkDatabaseConnectionHealthy(conn);
         });
   }
@@ -148,13 +148,58 @@ public void subscribersAreOnlyInformedAboutNewFactsInDatabase() {
           new Notification("some notification", 1), new Notification("fact_insert", 1)
         };
 
-    PgListener pgListener = new PgListener(pgConnectionSupplier, eventBus, props, registry);
+    PgListener pgListener = new PgListener(pgConnectionSupplier, dispatcher, props, registry);
     pgListener.informSubscriberOfChannelNotifications(receivedNotifications);
 
-    verify(eventBus, times(1)).post(factCaptor.capture());
+    verify(dispatcher, times(1)).post(factCaptor.capture());
     assertEquals("fact_insert", factCaptor.getAllValues().get(0).name());
   }
 
+  @Test
+  public void subscribersAreInformedAboutInsertedFacts() {
+    PGNotification[] receivedNotifications =
+        new PGNotification[] {
+          new Notification(
+              "fact_insert",
+              1,
+              "{\"ser\":1,\"header\":{\"id\":\""
+                  + new UUID(0, 1)
+                  + "\",\"ns\":\"foo\",\"type\":\"bar\"}}"),
+          new Notification(
+              "fact_insert",
+              1,
+              "{\"ser\":2,\"header\":{\"id\":\"" + new UUID(0, 2) + "\",\"ns\":\"baz\"}}")
+        };
+
+    PgListener pgListener = new PgListener(pgConnectionSupplier, dispatcher, props, registry);
+    pgListener.informSubscriberOfChannelNotifications(receivedNotifications);
+
+    verify(dispatcher, times(1)).post(factCaptor.capture());
+    val facts = factCaptor.getValue().facts();
+    assertEquals(2, facts.size());
+    assertEquals("foo", facts.get(0).ns());
+    assertEquals("bar", facts.get(0).type());
+    assertEquals("baz", facts.get(1).ns());
+  }
+
+  @Test
+  public void insertedFactsAreUnknownIfAnyPayloadCannotBeParsed() {
+    PGNotification[] receivedNotifications =
+        new PGNotification[] {
+          new Notification(
+              "fact_insert",
+              1,
+              "{\"ser\":1,\"header\":{\"id\":\"" + new UUID(0, 1) + "\",\"ns\":\"foo\"}}"),
+          new Notification("fact_insert", 1, "garbage")
+        };
+
+    PgListener pgListener = new PgListener(pgConnectionSupplier, dispatcher, props, registry);
+    pgListener.informSubscriberOfChannelNotifications(receivedNotifications);
+
+    verify(dispatcher, times(1)).post(factCaptor.capture());
+    assertTrue(factCaptor.getValue().facts().isEmpty());
+  }
+
   @Test
   public void otherNotificationsAreIgnored() {
     PGNotification[] receivedNotifications =
@@ -162,10 +207,10 @@ public void otherNotificationsAreIgnored() {
           new Notification("some notification", 1), new Notification("some other notification", 1)
         };
 
-    PgListener pgListener = new PgListener(pgConnectionSupplier, eventBus, props, registry);
+    PgListener pgListener = new PgListener(pgConnectionSupplier, dispatcher, props, registry);
     pgListener.informSubscriberOfChannelNotifications(receivedNotifications);
 
-    verify(eventBus, never()).post(any(FactInsertionEvent.class));
+    verify(dispatcher, never()).post(any(FactInsertionEvent.class));
   }
 
   @Test
@@ -173,7 +218,7 @@ public void notificationLoopHandlesSqlException() throws SQLException {
     when(pgConnectionSupplier.get())
         .thenThrow(SQLException.class, RuntimeException.class, Error.class);
 
-    PgListener pgListener = new PgListener(pgConnectionSupplier, eventBus, props, registry);
+    PgListener pgListener = new PgListener(pgConnectionSupplier, dispatcher, props, registry);
     PgListener.NotificationReceiverLoop notificationReceiverLoop =
         pgListener.new NotificationReceiverLoop();
 
@@ -200,12 +245,12 @@ void testNotify() throws Exception {
             new PGNotification[] {},
             new PGNotification[] {});
 
-    PgListener pgListener = new PgListener(pgConnectionSupplier, eventBus, props, registry);
+    PgListener pgListener = new PgListener(pgConnectionSupplier, dispatcher, props, registry);
     pgListener.listen();
     sleep(500);
     pgListener.destroy();
 
-    verify(eventBus, atLeastOnce()).post(factCaptor.capture());
+    verify(dispatcher, atLeastOnce()).post(factCaptor.capture());
     val allEvents = factCaptor.getAllValues();
 
     // first event is the general wakeup to the subscribers after startup
@@ -224,7 +269,7 @@ void testConnectionIsStopped() throws Exception {
     when(pgConnectionSupplier.get()).thenReturn(conn);
     when(conn.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
 
-    PgListener pgListener = new PgListener(pgConnectionSupplier, eventBus, props, registry);
+    PgListener pgListener = new PgListener(pgConnectionSupplier, dispatcher, props, registry);
     pgListener.afterPropertiesSet();
     pgListener.destroy();
     sleep(150); // TODO flaky
@@ -233,7 +278,7 @@ void testConnectionIsStopped() throws Exception {
 
   @Test
   void testStopWithoutStarting() {
-    PgListener pgListener = new PgListener(pgConnectionSupplier, eventBus, props, registry);
+    PgListener pgListener = new PgListener(pgConnectionSupplier, dispatcher, props, registry);
     pgListener.destroy();
     verifyNoMoreInteractions(conn);
   }
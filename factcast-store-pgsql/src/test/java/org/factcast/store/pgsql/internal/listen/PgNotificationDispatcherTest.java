@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.listen;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.internal.PgMetrics;
+import org.factcast.store.pgsql.internal.PgMetrics.StoreMetrics.OP;
+import org.factcast.store.pgsql.internal.listen.PgListener.FactInsertionEvent;
+import org.factcast.store.pgsql.internal.listen.PgNotificationDispatcher.Listener;
+import org.junit.jupiter.api.*;
+
+class PgNotificationDispatcherTest {
+
+  private final PgMetrics metrics = new PgMetrics(new SimpleMeterRegistry());
+
+  private final List<Runnable> tasks = new ArrayList<>();
+
+  private final ScheduledExecutorService manual = mock(ScheduledExecutorService.class);
+
+  private final ScheduledExecutorService direct = mock(ScheduledExecutorService.class);
+
+  private static FactInsertionEvent event(int facts) {
+    List<Fact> list = new ArrayList<>();
+    for (int i = 0; i < facts; i++) {
+      list.add(Fact.builder().ns("ns").buildWithoutPayload());
+    }
+    return new FactInsertionEvent("fact_insert", list);
+  }
+
+  @BeforeEach
+  void setup() {
+    lenient().doAnswer(i -> tasks.add(i.getArgument(0))).when(manual).execute(any(Runnable.class));
+    lenient()
+        .doAnswer(
+            i -> {
+              ((Runnable) i.getArgument(0)).run();
+              return null;
+            })
+        .when(direct)
+        .execute(any(Runnable.class));
+  }
+
+  @Test
+  void passesEventsToAllListeners() {
+    PgNotificationDispatcher uut = new PgNotificationDispatcher(direct, metrics);
+    Listener l1 = mock(Listener.class);
+    Listener l2 = mock(Listener.class);
+    uut.register(l1);
+    uut.register(l2);
+    FactInsertionEvent ev = event(1);
+
+    uut.post(ev);
+
+    verify(l1).onEvent(ev);
+    verify(l2).onEvent(ev);
+    assertThat(metrics.timer(OP.NOTIFICATION_DISPATCH_LAG).count()).isEqualTo(2);
+  }
+
+  @Test
+  void doesNotPassEventsToUnregisteredListeners() {
+    PgNotificationDispatcher uut = new PgNotificationDispatcher(direct, metrics);
+    Listener l = mock(Listener.class);
+    uut.register(l);
+    uut.unregister(l);
+
+    uut.post(event(1));
+
+    verifyNoInteractions(l);
+  }
+
+  @Test
+  void coalescesEventsWhileListenerIsBusy() {
+    PgNotificationDispatcher uut = new PgNotificationDispatcher(manual, metrics);
+    List<FactInsertionEvent> received = new ArrayList<>();
+    uut.register(received::add);
+
+    uut.post(event(1));
+    uut.post(event(2));
+    uut.post(event(3));
+
+    assertThat(tasks).hasSize(1);
+    tasks.get(0).run();
+    assertThat(received).hasSize(1);
+    assertThat(received.get(0).facts()).hasSize(6);
+    assertThat(metrics.counter(OP.NOTIFICATION_COALESCED).count()).isEqualTo(2);
+  }
+
+  @Test
+  void schedulesAgainAfterRun() {
+    PgNotificationDispatcher uut = new PgNotificationDispatcher(manual, metrics);
+    List<FactInsertionEvent> received = new ArrayList<>();
+    uut.register(received::add);
+
+    uut.post(event(1));
+    tasks.get(0).run();
+    uut.post(event(1));
+
+    assertThat(tasks).hasSize(2);
+    tasks.get(1).run();
+    assertThat(received).hasSize(2);
+  }
+
+  @Test
+  void survivesFailingListener() {
+    PgNotificationDispatcher uut = new PgNotificationDispatcher(direct, metrics);
+    Listener failing = mock(Listener.class);
+    doThrow(IllegalStateException.class).when(failing).onEvent(any());
+    Listener l = mock(Listener.class);
+    uut.register(failing);
+    uut.register(l);
+
+    uut.post(event(1));
+    uut.post(event(1));
+
+    verify(failing, times(2)).onEvent(any());
+    verify(l, times(2)).onEvent(any());
+  }
+
+  @Test
+  void shutsDownExecutor() {
+    new PgNotificationDispatcher(manual, metrics).destroy();
+
+    verify(manual).shutdownNow();
+  }
+
+  @Nested
+  class WhenMerging {
+
+    @Test
+    void concatenatesFacts() {
+      FactInsertionEvent a = event(1);
+      FactInsertionEvent b = event(2);
+
+      List<Fact> facts = PgNotificationDispatcher.merge(a, b).facts();
+
+      assertThat(facts)
+          .containsExactlyElementsOf(
+              Lists.newArrayList(a.facts().get(0), b.facts().get(0), b.facts().get(1)));
+    }
+
+    @Test
+    void dropsFactsIfUnknownOnEitherSide() {
+      FactInsertionEvent unknown = new FactInsertionEvent("fact_insert", Collections.emptyList());
+
+      assertThat(PgNotificationDispatcher.merge(unknown, event(1)).facts()).isEmpty();
+      assertThat(PgNotificationDispatcher.merge(event(1), unknown).facts()).isEmpty();
+      assertThat(PgNotificationDispatcher.merge(unknown, event(1))).isSameAs(unknown);
+    }
+
+    @Test
+    void dropsFactsIfTooMany() {
+      FactInsertionEvent a = event(PgNotificationDispatcher.MAX_COALESCED_FACTS);
+
+      assertThat(PgNotificationDispatcher.merge(a, event(1)).facts()).isEmpty();
+    }
+  }
+}
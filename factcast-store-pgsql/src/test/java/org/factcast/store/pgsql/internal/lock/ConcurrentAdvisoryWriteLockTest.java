@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.lock;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.factcast.store.pgsql.internal.PgTestConfiguration;
+import org.factcast.store.pgsql.internal.query.PgHighWaterMarkFetcher;
+import org.factcast.store.test.IntegrationTest;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ContextConfiguration(classes = {PgTestConfiguration.class})
+@Sql(scripts = "/test_schema.sql", config = @SqlConfig(separator = "#"))
+@ExtendWith(SpringExtension.class)
+@IntegrationTest
+public class ConcurrentAdvisoryWriteLockTest {
+
+  @Autowired JdbcTemplate tpl;
+
+  @Autowired PlatformTransactionManager txManager;
+
+  ConcurrentAdvisoryWriteLock uut;
+
+  PgHighWaterMarkFetcher highWaterMark;
+
+  TransactionTemplate tx;
+
+  @BeforeEach
+  void setUp() {
+    uut = new ConcurrentAdvisoryWriteLock(tpl);
+    highWaterMark = new PgHighWaterMarkFetcher(tpl);
+    tx = new TransactionTemplate(txManager);
+  }
+
+  @Test
+  void highWaterMarkStopsBeforeFactStillInFlight() throws Exception {
+    long before = insertAndCommit();
+    assertThat(highWaterMark.retrieveLatestSer()).isEqualTo(before);
+
+    CountDownLatch inserted = new CountDownLatch(1);
+    CountDownLatch commit = new CountDownLatch(1);
+    CompletableFuture<Long> slow =
+        CompletableFuture.supplyAsync(
+            () ->
+                tx.execute(
+                    s -> {
+                      long ser = insert();
+                      inserted.countDown();
+                      await(commit);
+                      return ser;
+                    }));
+    assertThat(inserted.await(10, TimeUnit.SECONDS)).isTrue();
+
+    // a later fact commits first
+    long fast = insertAndCommit();
+    assertThat(maxSer()).isEqualTo(fast);
+
+    long hwm = highWaterMark.retrieveLatestSer();
+    assertThat(hwm).isEqualTo(before).isLessThan(fast);
+
+    commit.countDown();
+    long slowSer = slow.get(10, TimeUnit.SECONDS);
+    assertThat(slowSer).isGreaterThan(before).isLessThan(fast);
+
+    assertThat(highWaterMark.retrieveLatestSer()).isEqualTo(fast);
+  }
+
+  @Test
+  void highWaterMarkIgnoresRolledBackInserts() throws Exception {
+    long before = insertAndCommit();
+
+    tx.execute(
+        s -> {
+          insert();
+          s.setRollbackOnly();
+          return null;
+        });
+
+    assertThat(highWaterMark.retrieveLatestSer()).isEqualTo(before);
+    long after = insertAndCommit();
+    assertThat(highWaterMark.retrieveLatestSer()).isEqualTo(after);
+  }
+
+  @Test
+  void exclusiveLockWaitsForConcurrentInserts() throws Exception {
+    CountDownLatch inserted = new CountDownLatch(1);
+    CountDownLatch commit = new CountDownLatch(1);
+    CompletableFuture<Long> insert =
+        CompletableFuture.supplyAsync(
+            () ->
+                tx.execute(
+                    s -> {
+                      long ser = insert();
+                      inserted.countDown();
+                      await(commit);
+                      return ser;
+                    }));
+    assertThat(inserted.await(10, TimeUnit.SECONDS)).isTrue();
+
+    CompletableFuture<Long> exclusive =
+        CompletableFuture.supplyAsync(
+            () ->
+                tx.execute(
+                    s -> {
+                      uut.aquireExclusiveTXLock();
+                      return maxSer();
+                    }));
+
+    Thread.sleep(500);
+    assertThat(exclusive).isNotDone();
+
+    commit.countDown();
+    long ser = insert.get(10, TimeUnit.SECONDS);
+    assertThat(exclusive.get(10, TimeUnit.SECONDS)).isEqualTo(ser);
+  }
+
+  private long insertAndCommit() {
+    return tx.execute(s -> insert());
+  }
+
+  /** needs to run within a transaction */
+  private long insert() {
+    uut.aquireInsertTXLock();
+    tpl.update(
+        PgConstants.INSERT_FACT, "{\"id\":\"" + UUID.randomUUID() + "\",\"ns\":\"hwm\"}", "{}");
+    return tpl.queryForObject(
+        "SELECT currval('" + PgConstants.SEQUENCE_FACT_SER + "')", Long.class);
+  }
+
+  private long maxSer() {
+    return tpl.queryForObject(PgConstants.SELECT_LATEST_SER, Long.class);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
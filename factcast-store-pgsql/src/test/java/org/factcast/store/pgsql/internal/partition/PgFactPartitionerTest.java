@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.partition;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.factcast.store.pgsql.internal.PgMetrics;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class PgFactPartitionerTest {
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @Mock private PgMetrics pgMetrics;
+
+  @Nested
+  class WhenDisabled {
+
+    @Test
+    void doesNothing() {
+      PgFactPartitioner uut = new PgFactPartitioner(jdbcTemplate, pgMetrics, 0);
+
+      uut.afterPropertiesSet();
+      uut.createPartitions();
+
+      verifyNoInteractions(jdbcTemplate);
+    }
+  }
+
+  @Nested
+  class WhenEnabled {
+
+    @BeforeEach
+    void setup() {
+      doAnswer(
+              i -> {
+                ((Runnable) i.getArgument(1)).run();
+                return null;
+              })
+          .when(pgMetrics)
+          .time(any(), any(Runnable.class));
+    }
+
+    @Test
+    void convertsAndCreatesOnStartup() {
+      PgFactPartitioner uut = new PgFactPartitioner(jdbcTemplate, pgMetrics, 1000);
+
+      uut.afterPropertiesSet();
+
+      verify(jdbcTemplate)
+          .queryForObject(
+              eq(PgConstants.PARTITION_FACT_TABLE), eq(new Object[] {1000L}), eq(Boolean.class));
+      verify(jdbcTemplate)
+          .queryForObject(
+              eq(PgConstants.CREATE_FACT_PARTITIONS), eq(new Object[] {1000L}), eq(Integer.class));
+    }
+
+    @Test
+    void createsPartitions() {
+      PgFactPartitioner uut = new PgFactPartitioner(jdbcTemplate, pgMetrics, 1000);
+
+      uut.createPartitions();
+
+      verify(jdbcTemplate)
+          .queryForObject(
+              eq(PgConstants.CREATE_FACT_PARTITIONS), eq(new Object[] {1000L}), eq(Integer.class));
+      verifyNoMoreInteractions(jdbcTemplate);
+    }
+  }
+}
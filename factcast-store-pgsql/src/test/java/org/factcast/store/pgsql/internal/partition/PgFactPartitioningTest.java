@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.partition;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.factcast.core.Fact;
+import org.factcast.core.FactCast;
+import org.factcast.core.spec.FactSpec;
+import org.factcast.core.store.FactStore;
+import org.factcast.core.subscription.SubscriptionRequest;
+import org.factcast.store.pgsql.internal.PgMetrics;
+import org.factcast.store.pgsql.internal.PgTestConfiguration;
+import org.factcast.store.test.IntegrationTest;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ContextConfiguration(classes = {PgTestConfiguration.class})
+@Sql(
+    scripts = {"/test_schema.sql", "/db/changelog/factcast/partitioning/factPartitioning.sql"},
+    config = @SqlConfig(separator = "#"))
+@ExtendWith(SpringExtension.class)
+@IntegrationTest
+public class PgFactPartitioningTest {
+
+  static final int PARTITION_SIZE = 10;
+
+  @Autowired JdbcTemplate tpl;
+
+  @Autowired FactStore store;
+
+  @Autowired PgMetrics metrics;
+
+  FactCast fc;
+
+  PgFactPartitioner uut;
+
+  @BeforeEach
+  void setUp() {
+    fc = FactCast.from(store);
+    uut = new PgFactPartitioner(tpl, metrics, PARTITION_SIZE);
+  }
+
+  @Test
+  void partitionsPopulatedTable() {
+    List<Fact> before = publish(25);
+
+    uut.afterPropertiesSet();
+
+    assertThat(isPartitioned()).isTrue();
+    // fact_0 holds everything below 30, one more partition is created in advance
+    assertThat(partitions()).containsExactly("fact_0", "fact_30");
+
+    for (Fact f : before) {
+      assertThat(store.fetchById(f.id())).isPresent();
+      assertThat(store.serialOf(f.id())).isPresent();
+    }
+
+    List<Fact> after = publish(10);
+    for (Fact f : after) {
+      assertThat(store.fetchById(f.id()).get().serial()).isBetween(26L, 35L);
+    }
+
+    uut.createPartitions();
+    assertThat(partitions()).containsExactly("fact_0", "fact_30", "fact_40");
+
+    AtomicInteger count = new AtomicInteger();
+    fc.subscribe(
+            SubscriptionRequest.catchup(FactSpec.ns("partitioning")).fromScratch(),
+            f -> count.incrementAndGet())
+        .awaitComplete();
+    assertThat(count).hasValue(35);
+  }
+
+  @Test
+  void keepsIdsUniqueAcrossPartitions() {
+    List<Fact> before = publish(5);
+    uut.afterPropertiesSet();
+    List<Fact> after = publish(1);
+
+    // neither facts of the former table, nor of a new partition can be published again
+    assertThatThrownBy(() -> fc.publish(before.get(0)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> fc.publish(after.get(0))).isInstanceOf(IllegalArgumentException.class);
+    assertThat(tpl.queryForObject("SELECT count(*) FROM fact", Long.class)).isEqualTo(6);
+  }
+
+  @Test
+  void partitioningIsIdempotent() {
+    publish(3);
+    uut.afterPropertiesSet();
+    uut.afterPropertiesSet();
+
+    assertThat(partitions()).containsExactly("fact_0", "fact_10");
+    assertThat(tpl.queryForObject("SELECT count(*) FROM fact_id", Long.class)).isEqualTo(3);
+  }
+
+  private List<Fact> publish(int n) {
+    List<Fact> facts = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      Fact f = Fact.builder().ns("partitioning").type("test").build("{}");
+      fc.publish(f);
+      facts.add(f);
+    }
+    return facts;
+  }
+
+  private boolean isPartitioned() {
+    return tpl.queryForObject(
+        "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = 'fact'::regclass)",
+        Boolean.class);
+  }
+
+  private List<String> partitions() {
+    return tpl.queryForList(
+        "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+            + "WHERE i.inhparent = 'fact'::regclass ORDER BY c.relname",
+        String.class);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.query;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.google.common.collect.Lists;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+import org.factcast.core.Fact;
+import org.factcast.store.pgsql.internal.listen.PgListener.FactInsertionEvent;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class PgCachedLatestSerialFetcherTest {
+
+  @Mock JdbcTemplate jdbc;
+
+  @Mock PgLatestSerialFetcher delegate;
+
+  PgCachedLatestSerialFetcher uut;
+
+  @BeforeEach
+  void setup() {
+    uut = new PgCachedLatestSerialFetcher(jdbc, delegate);
+  }
+
+  private static Fact factWithSerial(long ser) {
+    return Fact.builder()
+        .ns("ns")
+        .id(UUID.randomUUID())
+        .meta("_ser", String.valueOf(ser))
+        .buildWithoutPayload();
+  }
+
+  @Test
+  void fetchesFromDelegateWhenUninitialized() {
+    when(delegate.retrieveLatestSer()).thenReturn(42L);
+
+    assertThat(uut.retrieveLatestSer()).isEqualTo(42);
+    assertThat(uut.retrieveLatestSer()).isEqualTo(42);
+
+    verify(delegate, times(1)).retrieveLatestSer();
+  }
+
+  @Test
+  void refreshNeverMovesBackwards() {
+    when(delegate.retrieveLatestSer()).thenReturn(42L, 0L);
+
+    assertThat(uut.refresh()).isEqualTo(42);
+    assertThat(uut.refresh()).isEqualTo(42);
+    assertThat(uut.retrieveLatestSer()).isEqualTo(42);
+  }
+
+  @Test
+  void delegatesUpperBound() {
+    LongSupplier bound = () -> 7;
+    when(delegate.upperBound()).thenReturn(bound);
+
+    assertThat(uut.upperBound()).isSameAs(bound);
+  }
+
+  @Nested
+  class WhenNotified {
+
+    @Test
+    void takesSerialsFromNotifiedFacts() {
+      uut.refresh();
+      uut.onEvent(
+          new FactInsertionEvent(
+              "fact_insert", Lists.newArrayList(factWithSerial(3), factWithSerial(5))));
+
+      assertThat(uut.retrieveLatestSer()).isEqualTo(5);
+    }
+
+    @Test
+    void ignoresFactsWithoutSerial() {
+      uut.refresh();
+      uut.onEvent(
+          new FactInsertionEvent(
+              "fact_insert",
+              Lists.newArrayList(Fact.builder().id(UUID.randomUUID()).buildWithoutPayload())));
+
+      assertThat(uut.retrieveLatestSer()).isEqualTo(0);
+    }
+
+    @Test
+    void ignoresNotificationsWhenBoundedByHighWaterMark() {
+      when(delegate.upperBound()).thenReturn(() -> 2);
+      uut.refresh();
+      uut.onEvent(new FactInsertionEvent("fact_insert", Lists.newArrayList(factWithSerial(5))));
+
+      assertThat(uut.retrieveLatestSer()).isEqualTo(0);
+    }
+  }
+}
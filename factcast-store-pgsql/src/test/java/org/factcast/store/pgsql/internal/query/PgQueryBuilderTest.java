@@ -25,6 +25,7 @@
 import lombok.SneakyThrows;
 import lombok.val;
 import org.assertj.core.util.Lists;
+import org.factcast.core.Fact;
 import org.factcast.core.spec.FactSpec;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.*;
@@ -58,22 +59,60 @@ void happyPath() {
 
       int index = 0;
       // first spec
-      verify(ps).setString(++index, "{\"ns\": \"ns1\"}");
-      verify(ps).setString(++index, "{\"type\": \"t1\"}");
-      verify(ps).setString(++index, "{\"aggIds\": [\"00000000-0000-0000-0000-000000000001\"]}");
+      verify(ps).setString(++index, "ns1");
+      verify(ps).setString(++index, "t1");
+      verify(ps).setString(++index, "00000000-0000-0000-0000-000000000001");
       verify(ps).setString(++index, "{\"meta\":{\"foo\":\"bar\"}}");
 
       // 2nd spec
-      verify(ps).setString(++index, "{\"ns\": \"ns2\"}");
-      verify(ps).setString(++index, "{\"type\": \"t2\"}");
+      verify(ps).setString(++index, "ns2");
+      verify(ps).setString(++index, "t2");
       verify(ps).setString(++index, "{\"meta\":{\"foo\":\"bar\"}}");
       // 3rd spec
-      verify(ps).setString(++index, "{\"ns\": \"ns3\"}");
+      verify(ps).setString(++index, "ns3");
 
       // ser>?
       verify(ps).setLong(++index, 120);
       verifyNoMoreInteractions(ps);
     }
+
+    @SneakyThrows
+    @Test
+    void appendsUpperBound() {
+      Mockito.when(serial.get()).thenReturn(120L);
+      val specs = Lists.newArrayList(FactSpec.ns("ns1"));
+      val underTest = new PgQueryBuilder(specs, () -> 200L);
+      val setter = underTest.createStatementSetter(serial);
+      val ps = mock(PreparedStatement.class);
+
+      setter.setValues(ps);
+
+      verify(ps).setString(1, "ns1");
+      // ser>?
+      verify(ps).setLong(2, 120);
+      // ser<=?
+      verify(ps).setLong(3, 200);
+      verifyNoMoreInteractions(ps);
+    }
+
+    @SneakyThrows
+    @Test
+    void appendsPageSize() {
+      Mockito.when(serial.get()).thenReturn(120L);
+      val specs = Lists.newArrayList(FactSpec.ns("ns1"));
+      val underTest = new PgQueryBuilder(specs, () -> 200L);
+      val setter = underTest.createPageStatementSetter(serial, 50);
+      val ps = mock(PreparedStatement.class);
+
+      setter.setValues(ps);
+
+      verify(ps).setString(1, "ns1");
+      verify(ps).setLong(2, 120);
+      verify(ps).setLong(3, 200);
+      // LIMIT ?
+      verify(ps).setInt(4, 50);
+      verifyNoMoreInteractions(ps);
+    }
   }
 
   @Nested
@@ -91,18 +130,43 @@ void happyPath() {
 
       // projection
       assertThat(sql)
-          .startsWith(
-              "SELECT ser, header, payload, header->>'id' AS id, header->>'aggIds' AS aggIds,"
-                  + " header->>'ns' AS ns, header->>'type' AS type, header->>'version' AS version FROM fact");
+          .startsWith("SELECT ser, header, payload, id, aggIds, ns, type, version FROM fact");
 
       // where clause for two specs
       val expectedSpec1 =
-          "(1=1 AND header @> ?::jsonb AND header @> ?::jsonb AND header @> ?::jsonb AND header @> ?::jsonb)";
-      val expectedSpec2 =
-          "(1=1 AND header @> ?::jsonb AND header @> ?::jsonb AND header @> ?::jsonb)"; // no aggid
+          "(1=1 AND ns=? AND type=? AND aggIds @> ARRAY[?::uuid] AND header @> ?::jsonb)";
+      val expectedSpec2 = "(1=1 AND ns=? AND type=? AND header @> ?::jsonb)"; // no aggid
       assertThat(sql).contains("( " + expectedSpec1 + " OR " + expectedSpec2 + " )");
       assertThat(sql).endsWith("AND ser>? ORDER BY ser ASC");
     }
+
+    @Test
+    void withUpperBound() {
+      val specs = Lists.newArrayList(FactSpec.ns("ns1"));
+      val underTest = new PgQueryBuilder(specs, () -> 200L);
+      val sql = underTest.createSQL();
+
+      assertThat(sql).endsWith("AND ser>? AND ser<=? ORDER BY ser ASC");
+    }
+
+    @Test
+    void limitedToPage() {
+      val specs = Lists.newArrayList(FactSpec.ns("ns1"));
+      val underTest = new PgQueryBuilder(specs);
+      val sql = underTest.createPageSQL();
+
+      assertThat(sql).isEqualTo(underTest.createSQL() + " LIMIT ?");
+    }
+
+    @Test
+    void selectingSerialsOnly() {
+      val specs = Lists.newArrayList(FactSpec.ns("ns1"));
+      val underTest = new PgQueryBuilder(specs, () -> 200L);
+      val sql = underTest.createSerialsSQL();
+
+      assertThat(sql).startsWith("SELECT ser FROM fact WHERE");
+      assertThat(sql).endsWith("AND ser>? AND ser<=? ORDER BY ser ASC");
+    }
   }
 
   @Nested
@@ -123,9 +187,8 @@ void happyPath() {
 
       // where clause for two specs
       val expectedSpec1 =
-          "(1=1 AND header @> ?::jsonb AND header @> ?::jsonb AND header @> ?::jsonb AND header @> ?::jsonb)";
-      val expectedSpec2 =
-          "(1=1 AND header @> ?::jsonb AND header @> ?::jsonb AND header @> ?::jsonb)"; // no aggid
+          "(1=1 AND ns=? AND type=? AND aggIds @> ARRAY[?::uuid] AND header @> ?::jsonb)";
+      val expectedSpec2 = "(1=1 AND ns=? AND type=? AND header @> ?::jsonb)"; // no aggid
       assertThat(sql).contains("( " + expectedSpec1 + " OR " + expectedSpec2 + " )");
       assertThat(sql).endsWith(" ORDER BY ser DESC LIMIT 1");
     }
@@ -149,10 +212,42 @@ void happyPath() {
 
       // where clause for two specs
       val expectedSpec1 =
-          "(1=1 AND header @> ?::jsonb AND header @> ?::jsonb AND header @> ?::jsonb AND header @> ?::jsonb)";
-      val expectedSpec2 =
-          "(1=1 AND header @> ?::jsonb AND header @> ?::jsonb AND header @> ?::jsonb)"; // no aggid
+          "(1=1 AND ns=? AND type=? AND aggIds @> ARRAY[?::uuid] AND header @> ?::jsonb)";
+      val expectedSpec2 = "(1=1 AND ns=? AND type=? AND header @> ?::jsonb)"; // no aggid
       assertThat(sql).contains("( " + expectedSpec1 + " OR " + expectedSpec2 + " )");
     }
   }
+
+  @Nested
+  class WhenCreatingPredicate {
+
+    @Test
+    void matchesLikeWhereClause() {
+      UUID aggId = new UUID(0, 1);
+      val spec1 = FactSpec.ns("ns1").type("t1").version(7).aggId(aggId).meta("foo", "bar");
+      val spec2 = FactSpec.ns("*").type("t2");
+      val underTest = new PgQueryBuilder(Lists.newArrayList(spec1, spec2));
+      val predicate = underTest.createPredicate();
+
+      Fact matching =
+          Fact.builder()
+              .ns("ns1")
+              .type("t1")
+              .version(1)
+              .aggId(aggId)
+              .meta("foo", "bar")
+              .build("{}");
+      Fact wrongMeta =
+          Fact.builder().ns("ns1").type("t1").aggId(aggId).meta("foo", "baz").build("{}");
+      Fact wrongAggId = Fact.builder().ns("ns1").type("t1").meta("foo", "bar").build("{}");
+      Fact anyNs = Fact.builder().ns("other").type("t2").build("{}");
+      Fact wrongType = Fact.builder().ns("other").type("t3").build("{}");
+
+      assertThat(predicate.test(matching)).isTrue();
+      assertThat(predicate.test(wrongMeta)).isFalse();
+      assertThat(predicate.test(wrongAggId)).isFalse();
+      assertThat(predicate.test(anyNs)).isTrue();
+      assertThat(predicate.test(wrongType)).isFalse();
+    }
+  }
 }
@@ -0,0 +1,300 @@
+/*
+ * Copyright © 2017-2020 factcast.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.factcast.store.pgsql.internal.segment;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import org.factcast.store.pgsql.PgConfigurationProperties;
+import org.factcast.store.pgsql.internal.PgConstants;
+import org.factcast.store.pgsql.internal.query.PgLatestSerialFetcher;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+@ExtendWith(MockitoExtension.class)
+class PgFactSegmentCacheTest {
+
+  @Mock private @NonNull JdbcTemplate jdbc;
+  @Mock private @NonNull PgLatestSerialFetcher fetcher;
+
+  private Path dir;
+
+  @BeforeEach
+  void setup(@TempDir Path dir) {
+    this.dir = dir;
+  }
+
+  private PgFactSegmentCache createCache() throws Exception {
+    return createCache(1024);
+  }
+
+  private PgFactSegmentCache createCache(long maxSizeInMegabytes) throws Exception {
+    PgConfigurationProperties props =
+        new PgConfigurationProperties()
+            .setFactSegmentCacheDirectory(dir.toString())
+            .setFactSegmentSizeInMegabytes(1)
+            .setFactSegmentCacheMaxSizeInMegabytes(maxSizeInMegabytes);
+    PgFactSegmentCache uut = new PgFactSegmentCache(jdbc, props, fetcher);
+    uut.afterPropertiesSet();
+    return uut;
+  }
+
+  private static byte[] header(UUID id) {
+    return ("{\"id\":\"" + id + "\",\"ns\":\"ns\"}").getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static List<Long> serials(PgFactSegmentCache uut, long after, long upTo) {
+    List<Long> serials = new ArrayList<>();
+    uut.read(
+        after,
+        upTo,
+        (ser, b, headerStart, headerLength, payloadLength) -> {
+          serials.add(ser);
+          return true;
+        });
+    return serials;
+  }
+
+  @Test
+  void isDisabledWithoutDirectory() {
+    PgFactSegmentCache uut = new PgFactSegmentCache(jdbc, new PgConfigurationProperties(), fetcher);
+
+    assertThat(uut.isEnabled()).isFalse();
+    uut.fill();
+
+    verifyNoInteractions(jdbc, fetcher);
+  }
+
+  @Test
+  void isDisabledInIntegrationTestMode() {
+    PgConfigurationProperties props =
+        new PgConfigurationProperties()
+            .setFactSegmentCacheDirectory(dir.toString())
+            .setIntegrationTestMode(true);
+
+    assertThat(new PgFactSegmentCache(jdbc, props, fetcher).isEnabled()).isFalse();
+  }
+
+  @Test
+  void readsAppendedRecordsInRange() throws Exception {
+    PgFactSegmentCache uut = createCache();
+    for (long ser = 1; ser <= 5; ser++) {
+      uut.append(ser, header(UUID.randomUUID()), ("{\"n\":" + ser + "}").getBytes());
+    }
+
+    assertThat(serials(uut, 0, 5)).containsExactly(1L, 2L, 3L, 4L, 5L);
+    assertThat(serials(uut, 2, 4)).containsExactly(3L, 4L);
+  }
+
+  @Test
+  void decodesHeaderAndPayload() throws Exception {
+    PgFactSegmentCache uut = createCache();
+    UUID id = UUID.randomUUID();
+    uut.append(1, header(id), "{\"ä\":1}".getBytes(StandardCharsets.UTF_8));
+    List<String> decoded = new ArrayList<>();
+
+    uut.read(
+        0,
+        1,
+        (ser, b, headerStart, headerLength, payloadLength) -> {
+          decoded.add(PgFactSegmentCache.decode(b, headerStart, headerLength));
+          decoded.add(PgFactSegmentCache.decode(b, headerStart + headerLength, payloadLength));
+          return true;
+        });
+
+    assertThat(decoded)
+        .containsExactly(new String(header(id), StandardCharsets.UTF_8), "{\"ä\":1}");
+  }
+
+  @Test
+  void startsNewSegmentWhenFull() throws Exception {
+    PgFactSegmentCache uut = createCache();
+    byte[] large = new byte[700 * 1024];
+
+    uut.append(1, header(UUID.randomUUID()), large);
+    uut.append(2, header(UUID.randomUUID()), large);
+    // larger than a segment
+    uut.append(3, header(UUID.randomUUID()), new byte[2 * 1024 * 1024]);
+
+    assertThat(dir.toFile().list()).hasSize(3);
+    assertThat(serials(uut, 1, 3)).containsExactly(2L, 3L);
+  }
+
+  @Test
+  void rejectsSegmentSizeNotFittingIntoBuffer() {
+    PgConfigurationProperties props =
+        new PgConfigurationProperties()
+            .setFactSegmentCacheDirectory(dir.toString())
+            .setFactSegmentSizeInMegabytes(2048);
+
+    assertThatThrownBy(() -> new PgFactSegmentCache(jdbc, props, fetcher))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void evictsOldestSegments() throws Exception {
+    PgFactSegmentCache uut = createCache(2);
+    byte[] large = new byte[700 * 1024];
+
+    uut.append(1, header(UUID.randomUUID()), large);
+    uut.append(2, header(UUID.randomUUID()), large);
+    uut.append(3, header(UUID.randomUUID()), large);
+
+    assertThat(dir.toFile().list()).hasSize(2);
+    assertThat(uut.coveredFrom()).isEqualTo(1);
+    assertThat(uut.read(0, 3, (ser, b, headerStart, headerLength, payloadLength) -> true))
+        .isFalse();
+    assertThat(serials(uut, 1, 3)).containsExactly(2L, 3L);
+  }
+
+  @Test
+  void reusesSegmentsMatchingTheDatabase() throws Exception {
+    PgFactSegmentCache uut = createCache();
+    UUID id = UUID.randomUUID();
+    uut.append(1, header(UUID.randomUUID()), "{}".getBytes());
+    uut.append(3, header(id), "{}".getBytes());
+    uut.destroy();
+    when(jdbc.queryForObject(PgConstants.SELECT_SER_BY_ID, Long.class, id)).thenReturn(3L);
+
+    PgFactSegmentCache restarted = createCache();
+
+    assertThat(restarted.coveredUpTo()).isEqualTo(3);
+    assertThat(serials(restarted, 0, 3)).containsExactly(1L, 3L);
+  }
+
+  @Test
+  void dropsSegmentsNotMatchingTheDatabase() throws Exception {
+    PgFactSegmentCache uut = createCache();
+    UUID id = UUID.randomUUID();
+    uut.append(1, header(id), "{}".getBytes());
+    uut.destroy();
+    when(jdbc.queryForObject(PgConstants.SELECT_SER_BY_ID, Long.class, id))
+        .thenThrow(new EmptyResultDataAccessException(1));
+
+    PgFactSegmentCache restarted = createCache();
+
+    assertThat(restarted.coveredUpTo()).isEqualTo(0);
+    assertThat(serials(restarted, 0, 1)).isEmpty();
+    assertThat(new File(dir.toFile(), String.format("segment-%019d", 1))).doesNotExist();
+  }
+
+  @Test
+  void fillsUpToUpperBound() throws Exception {
+    PgFactSegmentCache uut = createCache();
+    when(fetcher.retrieveLatestSer()).thenReturn(10L);
+    ResultSet rs = mock(ResultSet.class);
+    when(rs.getLong(PgConstants.COLUMN_SER)).thenReturn(4L, 7L);
+    when(rs.getString(PgConstants.COLUMN_HEADER))
+        .thenReturn(new String(header(UUID.randomUUID()), StandardCharsets.UTF_8));
+    when(rs.getString(PgConstants.COLUMN_PAYLOAD)).thenReturn("{}");
+    doAnswer(
+            i -> {
+              RowCallbackHandler handler = i.getArgument(1);
+              handler.processRow(rs);
+              handler.processRow(rs);
+              return null;
+            })
+        .when(jdbc)
+        .query(
+            eq(PgConstants.SELECT_FACTS_AFTER),
+            any(RowCallbackHandler.class),
+            eq(0L),
+            eq(10L),
+            eq(1000));
+
+    uut.fill();
+
+    assertThat(uut.coveredUpTo()).isEqualTo(10);
+    assertThat(serials(uut, 0, 10)).containsExactly(4L, 7L);
+  }
+
+  @Test
+  void startsInitialFillNearTheTail() throws Exception {
+    PgFactSegmentCache uut = createCache(1);
+    when(fetcher.retrieveLatestSer()).thenReturn(5000L);
+    // 1024 bytes per record, so that 1024 of them fit into 1MB
+    when(jdbc.queryForObject(PgConstants.SELECT_AVERAGE_FACT_SIZE, Double.class, 5000L, 1000))
+        .thenReturn(1024.0 - PgFactSegment.RECORD_OVERHEAD);
+
+    uut.fill();
+
+    verify(jdbc)
+        .query(
+            eq(PgConstants.SELECT_FACTS_AFTER),
+            any(RowCallbackHandler.class),
+            eq(3976L),
+            eq(5000L),
+            eq(1000));
+    assertThat(uut.coveredFrom()).isEqualTo(3976);
+    assertThat(uut.coveredUpTo()).isEqualTo(5000);
+  }
+
+  @Test
+  void limitsPagesPerFill() throws Exception {
+    PgFactSegmentCache uut = createCache();
+    uut.coveredUpTo(1);
+    when(fetcher.retrieveLatestSer()).thenReturn(Long.MAX_VALUE);
+    AtomicLong ser = new AtomicLong(1);
+    ResultSet rs = mock(ResultSet.class);
+    when(rs.getLong(PgConstants.COLUMN_SER)).thenAnswer(i -> ser.incrementAndGet());
+    when(rs.getString(PgConstants.COLUMN_HEADER)).thenReturn("{}");
+    when(rs.getString(PgConstants.COLUMN_PAYLOAD)).thenReturn("{}");
+    doAnswer(
+            i -> {
+              RowCallbackHandler handler = i.getArgument(1);
+              for (int n = 0; n < 1000; n++) {
+                handler.processRow(rs);
+              }
+              return null;
+            })
+        .when(jdbc)
+        .query(
+            eq(PgConstants.SELECT_FACTS_AFTER), any(RowCallbackHandler.class), any(), any(), any());
+
+    uut.fill();
+
+    verify(jdbc, times(100))
+        .query(
+            eq(PgConstants.SELECT_FACTS_AFTER), any(RowCallbackHandler.class), any(), any(), any());
+    assertThat(uut.coveredUpTo()).isEqualTo(100_001);
+  }
+
+  @Test
+  void doesNotFillWithoutNewFacts() throws Exception {
+    PgFactSegmentCache uut = createCache();
+    uut.coveredUpTo(10);
+    when(fetcher.retrieveLatestSer()).thenReturn(10L);
+
+    uut.fill();
+
+    verifyNoInteractions(jdbc);
+  }
+}
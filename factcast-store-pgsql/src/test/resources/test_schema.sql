@@ -6,8 +6,12 @@ DROP SEQUENCE IF EXISTS catchup_seq;
 DROP INDEX IF EXISTS idx_catchup_cid_ser;
 DROP INDEX IF EXISTS idx_fact_header;
 DROP INDEX IF EXISTS idx_fact_unique_id;
+DROP INDEX IF EXISTS idx_fact_id;
+DROP INDEX IF EXISTS idx_fact_ns_type;
+DROP INDEX IF EXISTS idx_fact_aggids;
 
 DROP TABLE IF EXISTS fact CASCADE;
+DROP TABLE IF EXISTS fact_id CASCADE;
 DROP TABLE IF EXISTS catchup CASCADE;
 
 DROP TABLE IF EXISTS schemastore cascade;
@@ -20,14 +24,41 @@ CREATE TABLE fact (
  ser SERIAL PRIMARY KEY,
  
  header JSONB NOT NULL,
- payload JSONB NOT NULL
+ payload JSONB NOT NULL,
 
+ id uuid,
+ ns varchar,
+ type varchar,
+ version int,
+ aggids uuid[]
 );
 
-CREATE UNIQUE INDEX idx_fact_unique_id ON fact( (header->'id') );
+CREATE UNIQUE INDEX idx_fact_id ON fact(id);
+CREATE INDEX idx_fact_ns_type ON fact(ns,type);
+CREATE INDEX idx_fact_aggids ON fact USING GIN(aggids);
 CREATE INDEX idx_fact_header ON fact USING GIN(header jsonb_path_ops);
 #
 
+CREATE OR REPLACE FUNCTION extractFactColumns() RETURNS trigger AS $$
+BEGIN
+  NEW.id := (NEW.header->>'id')::uuid;
+  NEW.ns := NEW.header->>'ns';
+  NEW.type := NEW.header->>'type';
+  NEW.version := (NEW.header->>'version')::int;
+  IF jsonb_typeof(NEW.header->'aggIds') = 'array' THEN
+    NEW.aggids := ARRAY(SELECT jsonb_array_elements_text(NEW.header->'aggIds')::uuid);
+  ELSE
+    NEW.aggids := '{}';
+  END IF;
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+#
+CREATE TRIGGER tr_fact_columns BEFORE INSERT OR UPDATE OF header ON fact FOR EACH ROW EXECUTE PROCEDURE extractFactColumns();
+
+#
+
 CREATE OR REPLACE FUNCTION notifyFactInsert() RETURNS trigger AS $$
 BEGIN
   PERFORM pg_notify('fact_insert', json_build_object(